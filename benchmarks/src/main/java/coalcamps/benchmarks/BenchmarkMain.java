@@ -0,0 +1,30 @@
+package coalcamps.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** 
+ * Runs the DAO benchmarks and writes the results to target/jmh-result.json, for comparing 
+ * runs before and after a change (ie. with jmh.morethan.io).  Accepts the usual jmh 
+ * command line options, such as a benchmark name pattern or -p rows=10000.
+ * 
+ * @author Mike Sheliga 
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.include(args.length > 0 && !args[0].startsWith("-") ? args[0] : "coalcamps.benchmarks.*")
+			.resultFormat(ResultFormatType.JSON)
+			.result("target/jmh-result.json")
+			.build();
+		new Runner(options).run();
+	} // end main
+
+} // end class BenchmarkMain
@@ -0,0 +1,94 @@
+package coalcamps.benchmarks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import coalcamps.classes.CoalCamp;
+
+/** 
+ * Single record save, getById, update and delete through BaseDAOImpl, using coal camps.
+ * 
+ * @author Mike Sheliga 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx6g"})
+public class CrudBenchmark {
+
+	/**
+	 * A camp read once per iteration and then updated repeatedly, so each update carries 
+	 * the current version.
+	 */
+	@State(Scope.Thread)
+	public static class UpdateState {
+		CoalCamp camp;
+
+		@Setup(Level.Iteration)
+		public void setUp(Dataset dataset) {
+			camp = dataset.campDao.getById(dataset.randomCampId());
+		}
+	} // end class UpdateState
+
+	/**
+	 * Camps saved before each iteration for the delete benchmark to remove.  The pool is 
+	 * topped up rather than replaced, so the table does not grow between iterations.
+	 */
+	@State(Scope.Thread)
+	public static class DeleteState {
+		static final int POOL_SIZE = 10000;
+		final Deque<CoalCamp> camps = new ArrayDeque<>();
+
+		@Setup(Level.Iteration)
+		public void setUp(Dataset dataset) {
+			List<CoalCamp> batch = new ArrayList<>();
+			for (int i = camps.size(); i < POOL_SIZE; i++) batch.add(new CoalCamp("Delete " + i, 1900, dataset.randomCompany()));
+			dataset.campDao.saveAll(batch);
+			camps.addAll(batch);
+		}
+	} // end class DeleteState
+
+	@Benchmark
+	public int save(Dataset dataset) {
+		return dataset.campDao.save(new CoalCamp("Saved", 1900, dataset.randomCompany()));
+	}
+
+	@Benchmark
+	public CoalCamp getById(Dataset dataset) {
+		return dataset.campDao.getById(dataset.randomCampId());
+	}
+
+	@Benchmark
+	public boolean update(Dataset dataset, UpdateState state) {
+		state.camp.setYearBuilt(1880 + (state.camp.getYearBuilt() + 1) % 60);
+		return dataset.campDao.updateIfCurrent(state.camp);
+	}
+
+	@Benchmark
+	public CoalCamp delete(Dataset dataset, DeleteState state) {
+		CoalCamp camp = state.camps.poll();
+		if (camp == null) {  // ran out of pre-saved camps, include a save rather than fail
+			camp = new CoalCamp("Delete", 1900, dataset.randomCompany());
+			dataset.campDao.save(camp);
+		}
+		dataset.campDao.delete(camp);
+		return camp;
+	} // end delete
+
+} // end class CrudBenchmark
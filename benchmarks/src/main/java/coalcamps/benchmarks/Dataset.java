@@ -0,0 +1,94 @@
+package coalcamps.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.context.ApplicationContext;
+
+import coalcamps.classes.BaseCCObject;
+import coalcamps.classes.CampLease;
+import coalcamps.classes.CoalCamp;
+import coalcamps.classes.CoalCompany;
+import coalcamps.dao.CampLeaseDAO;
+import coalcamps.dao.CoalCampDAO;
+import coalcamps.dao.CoalCompanyDAO;
+
+/** 
+ * Embedded H2 database (in MySQL mode) seeded with rows coal camps, one company for every 
+ * 100 camps and a lease for every second camp.  The schema is created by the migrations 
+ * of the main project, and the DAO beans are the ones from spring4.xml, with the settings 
+ * below overriding database.properties.
+ * <p>
+ * Each benchmark runs in its own forked jvm, so the spring context (a static singleton) 
+ * and the database are created once per benchmark and dataset size.
+ * 
+ * @author Mike Sheliga 
+ */
+@State(Scope.Benchmark)
+public class Dataset {
+
+	/** Number of coal camps.  Override with -p rows=... */
+	@Param({"10000", "1000000"})
+	public int rows;
+
+	/** Second level cache on or off.  Off measures the database, -p cacheEnabled=true,false compares. */
+	@Param({"false"})
+	public boolean cacheEnabled;
+
+	CoalCompanyDAO companyDao;
+	CoalCampDAO campDao;
+	CampLeaseDAO leaseDao;
+	List<CoalCompany> companies;
+	int[] campIds;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		System.setProperty("db.driver", "org.h2.Driver");
+		System.setProperty("db.url", "jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1");
+		System.setProperty("db.username", "sa");
+		System.setProperty("db.streamFetchSize", "1000");
+		System.setProperty("cache.enabled", String.valueOf(cacheEnabled));
+		System.setProperty("cache.statistics", "false");
+		System.setProperty("db.slowQuery.thresholdMillis", "60000");
+		ApplicationContext context = BaseCCObject.getApplicationContext();
+		companyDao = context.getBean("compDaoBean", CoalCompanyDAO.class);
+		campDao = context.getBean("campDaoBean", CoalCampDAO.class);
+		leaseDao = context.getBean("leaseDaoBean", CampLeaseDAO.class);
+		seed();
+	} // end setUp
+
+	private void seed() {
+		long start = System.nanoTime();
+		companies = new ArrayList<>();
+		for (int i = 0; i < Math.max(10, rows / 100); i++) companies.add(new CoalCompany("Company " + i, 1850 + i % 70));
+		companyDao.saveAll(companies);
+
+		List<CoalCamp> camps = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++) camps.add(new CoalCamp("Camp " + i, 1880 + i % 60, companies.get(i % companies.size())));
+		List<Integer> ids = campDao.saveAll(camps);
+		campIds = ids.stream().mapToInt(Integer::intValue).toArray();
+
+		List<CampLease> leases = new ArrayList<>(rows / 2);
+		for (int i = 0; i < rows; i += 2) {
+			leases.add(new CampLease(camps.get(i), companies.get((i + 1) % companies.size()), 1920 + i % 20, 1925 + i % 20));
+		}
+		leaseDao.saveAll(leases);
+		System.out.println("Seeded " + companies.size() + " companies, " + campIds.length + " camps and " + 
+			leases.size() + " leases in " + (System.nanoTime() - start) / 1000000 + "ms");
+	} // end seed
+
+	int randomCampId() {
+		return campIds[ThreadLocalRandom.current().nextInt(campIds.length)];
+	}
+
+	CoalCompany randomCompany() {
+		return companies.get(ThreadLocalRandom.current().nextInt(companies.size()));
+	}
+
+} // end class Dataset
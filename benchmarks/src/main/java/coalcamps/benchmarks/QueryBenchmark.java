@@ -0,0 +1,60 @@
+package coalcamps.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import coalcamps.classes.CampLease;
+import coalcamps.classes.CoalCamp;
+
+/** 
+ * Whole table reads and counts.  Each call reads every row of the dataset, so iterations 
+ * are longer and fewer than CrudBenchmark.
+ * 
+ * @author Mike Sheliga 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx6g"})
+public class QueryBenchmark {
+
+	@Benchmark
+	public List<CoalCamp> getCoalCampsLazy(Dataset dataset) {
+		return dataset.campDao.getCoalCamps(false);
+	}
+
+	@Benchmark
+	public List<CoalCamp> getCoalCampsEager(Dataset dataset) {
+		return dataset.campDao.getCoalCamps(true);
+	}
+
+	@Benchmark
+	public List<CampLease> getCampLeasesEager(Dataset dataset) {
+		return dataset.leaseDao.getCampLeases(true);
+	}
+
+	@Benchmark
+	public int getCoalCampCount(Dataset dataset) {
+		return dataset.campDao.getCoalCampCount();
+	}
+
+	@Benchmark
+	public int getCoalCompanyCount(Dataset dataset) {
+		return dataset.companyDao.getCoalCompanyCount();
+	}
+
+	@Benchmark
+	public int getCampLeaseCount(Dataset dataset) {
+		return dataset.leaseDao.getCampLeaseCount();
+	}
+
+} // end class QueryBenchmark
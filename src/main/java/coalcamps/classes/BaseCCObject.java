@@ -1,22 +1,34 @@
 package coalcamps.classes;
 
 import java.io.Serializable;
+import java.text.Normalizer;
 import java.time.ZonedDateTime;
+import java.util.Locale;
+import java.util.regex.Pattern;
 
 import javax.persistence.Column;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.proxy.HibernateProxy;
 
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
+import coalcamps.dao.UnitOfWork;
+
 /** 
  * Contains a POJO class annotated for ORM databases that represent a common base class for 
  * all other base coal camp object POJO classes. Such "company towns" were also known as coal
  * camps. This class consists of properties that will be common to all pojo classes in the 
  * database such as the date created, the date last modified and a primary key ID.
+ * A version number is used for optimistic locking, so an update of a record that was 
+ * changed by someone else after it was read fails instead of overwriting their change.
  * 
  * @author Mike Sheliga 4.11.18
  *
@@ -24,34 +36,108 @@ import org.springframework.context.support.ClassPathXmlApplicationContext;
 @MappedSuperclass  // Child classes will include fields in their hibernate table
 public abstract class BaseCCObject implements Serializable {
 	
-	private static ApplicationContext applicationContext = 
-		new ClassPathXmlApplicationContext("spring4.xml");	
 	static final long serialVersionUID = 1L;
 	
 	/**
-	 * If application context is null, initialize it.  Otherwise simply return it.
+	 * Holds the single application context.  The JVM initializes a nested class only on 
+	 * first use and does so exactly once, even with many threads, so spring (and the 
+	 * SessionFactory) start on the first database call rather than whenever an entity 
+	 * class is loaded, for example by hibernate itself.
+	 */
+	private static class ContextHolder {
+		static final ApplicationContext CONTEXT = createApplicationContext();
+	}
+	
+	/**
+	 * Returns the application context, creating it on first use.
 	 * 
 	 * @return the application context obtained from an xml file such as appContext.xml
 	 */
 	public static ApplicationContext getApplicationContext() {
-		if (applicationContext == null) {
-			applicationContext = new ClassPathXmlApplicationContext("spring4.xml");
-		}
-		return applicationContext;
+		return ContextHolder.CONTEXT;
 	}	
 
+	/**
+	 * Runs work, such as saving a company and its camps, in one session and transaction.
+	 * The save, update and delete routines called by work join the transaction rather 
+	 * than committing separately, and all of them are rolled back if any of them fails.
+	 * 
+	 * @param work  the database routines to run together
+	 * @return true if the work was committed, false if it was rolled back.
+	 */
+	public static boolean inUnitOfWork(Runnable work) {
+		return getApplicationContext().getBean("unitOfWork", UnitOfWork.class).run(work);
+	}
+
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+	private static final Pattern SPACES = Pattern.compile("\\s+");
+
+	/**
+	 * Returns the search key of a name: accents removed, runs of white space replaced by 
+	 * one space, trimmed and lower case, so "SLICKville", "slickville " and "Slíckville" 
+	 * all have the key "slickville".  Name keys are stored in indexed columns for searches.
+	 * 
+	 * @param name  a camp or company name, may be null
+	 * @return the normalized key of name, or null if name is null
+	 */
+	public static String normalizeName(String name) {
+		if (name == null) return null;
+		String key = MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+		return SPACES.matcher(key.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+	} // end normalizeName
+
+	/**
+	 * Returns the id of ccObj without initializing it if it is a lazy hibernate proxy, 
+	 * such as the campLeased of a CampLease loaded without fetching it.
+	 * 
+	 * @param ccObj  a coal camp object or proxy, may be null
+	 * @return the primary key of ccObj, or 0 if ccObj is null
+	 */
+	public static int idOf(BaseCCObject ccObj) {
+		if (ccObj == null) return 0;
+		if (ccObj instanceof HibernateProxy) {
+			return (Integer) ((HibernateProxy) ccObj).getHibernateLazyInitializer().getIdentifier();
+		}
+		return ccObj.getId();
+	} // end idOf
+
+	/**
+	 * Creates the application context from spring4.xml.  Time spent creating individual 
+	 * slow beans is output by the BeanStartupTimer bean.
+	 * 
+	 * @return a refreshed application context
+	 */
+	private static ApplicationContext createApplicationContext() {
+		ClassPathXmlApplicationContext context = 
+			new ClassPathXmlApplicationContext(new String[] {"spring4.xml"}, false);
+		context.refresh();  // creates the dataSource, SessionFactory and DAO beans
+		context.registerShutdownHook();
+		return context;
+	} // end createApplicationContext
+
 	// ============ Instance Members ============
 	@Id
 	@Column
-	@GeneratedValue(strategy = GenerationType.AUTO) 
-	// IDENTITY Wont work in hib5 unless pk is autoIncremented??? At least sometimes.
-	// @GenericGenerator(name="gen",strategy="increment")
-    // @GeneratedValue(generator="gen")
+	// @GeneratedValue(strategy = GenerationType.AUTO) used native (auto increment) ids, which 
+	// forces an insert per save and stops JDBC insert batching. Pooled table ids are assigned 
+	// in memory. SchemaMigrator seeds cc_id_sequences for existing databases, see LegacySchemaUpgrade
+	@GeneratedValue(strategy = GenerationType.TABLE, generator = "ccIdGenerator")
+	@GenericGenerator(name = "ccIdGenerator", strategy = "coalcamps.classes.PooledIdGenerator", 
+		parameters = {
+			@Parameter(name = "table_name", value = "cc_id_sequences"),
+			@Parameter(name = "prefer_entity_table_as_segment_value", value = "true"),
+			@Parameter(name = "optimizer", value = "pooled"),
+			@Parameter(name = "increment_size", value = "50") })
 	private int id;
-	@Column
+	@Column(updatable=false)  // never rewritten so update does not need to read it first
 	private ZonedDateTime dateCreated;
 	@Column
 	private ZonedDateTime dateModified;
+	@Version  // incremented by hibernate on every update, checked in the update where clause
+	@Column
+	private int version;
+	@Column  // change feed position, set on every insert and update and replaced at commit (see ModStamp)
+	private long modStamp;  // negative (pending) in an object written but not read back since
 	
 	// ------------ Constructors ----------------
 	/**
@@ -120,6 +206,12 @@ public abstract class BaseCCObject implements Serializable {
 	public ZonedDateTime getDateModified() {return dateModified;}	
 	public void setDateModified(ZonedDateTime dateModified) {this.dateModified = dateModified;}
 	
+	public int getVersion() {return version;}
+	public void setVersion(int version) {this.version = version;}
+	
+	public long getModStamp() {return modStamp;}
+	public void setModStamp(long modStamp) {this.modStamp = modStamp;}
+	
 	/**
 	 * Returns all base coal camp object info including the companyBuilding if initializede. 
 	 * If the foreign key company building is not set (likely due to lazy initialization),
@@ -2,14 +2,23 @@ package coalcamps.classes;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import coalcamps.dao.AsyncCampLeaseDAO;
+import coalcamps.dao.ChangeCursor;
+import coalcamps.dao.ChangeSet;
 import coalcamps.dao.CampLeaseDAO;
+import coalcamps.dao.SortOrder;
 
 /** 
  * Contains a POJO class annotated for ORM databases that represent a lease of a coal camp. 
@@ -26,11 +35,24 @@ import coalcamps.dao.CampLeaseDAO;
  * @author Mike Sheliga 3.15.18
  */
 @Entity
+@Cacheable  // second level cache region configured in ehcache.xml
+@Cache(usage=CacheConcurrencyStrategy.READ_WRITE, region="coalcamps.CampLease")
 @Table(name="Camp_Lease")
 public class CampLease extends BaseCCObject implements Serializable {
 	
 	static final long serialVersionUID = 1L;
 	
+	/**
+	 * Holds the CampLeaseDAO beans, looked up once on first use instead of on every call.
+	 */
+	private static class DaoHolder {
+		static final CampLeaseDAO DAO = getApplicationContext().getBean("leaseDaoBean", CampLeaseDAO.class);
+		static final AsyncCampLeaseDAO ASYNC_DAO = getApplicationContext().getBean("leaseDaoAsync", AsyncCampLeaseDAO.class);
+	}
+	
+	private static CampLeaseDAO getCampLeaseDAO() {return DaoHolder.DAO;}
+	private static AsyncCampLeaseDAO getAsyncCampLeaseDAO() {return DaoHolder.ASYNC_DAO;}
+	
 	// @Id
 	@Column
 	// @GeneratedValue(strategy=GenerationType.AUTO)  // Identity may give a hib5 exception. 
@@ -69,7 +91,7 @@ public class CampLease extends BaseCCObject implements Serializable {
 	 * Saves the camp lease to the database by fetching the CampLeaseDAO and calling the generic save.
 	 */
 	public void save() {
-		CampLeaseDAO leaseDao = (CampLeaseDAO) getApplicationContext().getBean("leaseDaoBean", CampLeaseDAO.class);
+		CampLeaseDAO leaseDao = getCampLeaseDAO();
 		leaseDao.save(this);
 	}
 			
@@ -80,7 +102,7 @@ public class CampLease extends BaseCCObject implements Serializable {
 	 * @return a CampLease or null if the camp could not be found.
 	 */
 	public static CampLease getById(int ID) {
-		CampLeaseDAO leaseDao = (CampLeaseDAO) getApplicationContext().getBean("leaseDaoBean", CampLeaseDAO.class);
+		CampLeaseDAO leaseDao = getCampLeaseDAO();
 		return leaseDao.getById(ID);
 	} // end getById(int ID)	
 	
@@ -90,7 +112,7 @@ public class CampLease extends BaseCCObject implements Serializable {
 	 * @return a list of camp leases using the default fetching strategy for companyBuilding
 	 */
 	public static List<CampLease> getCampLeases() {
-		CampLeaseDAO leaseDao = (CampLeaseDAO) getApplicationContext().getBean("leaseDaoBean", CampLeaseDAO.class);
+		CampLeaseDAO leaseDao = getCampLeaseDAO();
 		return leaseDao.getCampLeases();
 	} // end getCampLeases()
 	
@@ -101,17 +123,89 @@ public class CampLease extends BaseCCObject implements Serializable {
 	 * @return a list of camp leases either with or without the buildingCompany fetched.
 	 */
 	public static List<CampLease> getCampLeases(boolean eager) {
-		CampLeaseDAO leaseDao = (CampLeaseDAO) getApplicationContext().getBean("leaseDaoBean", CampLeaseDAO.class);
+		CampLeaseDAO leaseDao = getCampLeaseDAO();
 		return leaseDao.getCampLeases(eager);
 	} // end getCampLeases(eager)
 	
+	/**
+	 * Gets the camp leases on a DaoExecutor thread, so other queries can run at the same time.
+	 * 
+	 * @param eager indicates if eager fetching of the camp and company should occur. 
+	 * @return a future list of camp leases either with or without the camp and company fetched.
+	 */
+	public static CompletableFuture<List<CampLease>> getCampLeasesAsync(boolean eager) {
+		return getAsyncCampLeaseDAO().getCampLeases(eager);
+	} // end getCampLeasesAsync
+	
+	/**
+	 * Gets one page of camp leases in id order using keyset paging.
+	 * 
+	 * @param afterId  the last id of the previous page, or 0 for the first page
+	 * @param limit    the maximum number of leases to return
+	 * @param sort     ascending or descending id order
+	 * @param eager    indicates if campLeased and companyLeasing should be fetched. 
+	 * @return a list of at most limit camp leases, empty after the last page.
+	 */
+	public static List<CampLease> getCampLeasePage(int afterId, int limit, SortOrder sort, boolean eager) {
+		CampLeaseDAO leaseDao = getCampLeaseDAO();
+		return leaseDao.getCampLeasePage(afterId, limit, sort, eager);
+	} // end getCampLeasePage
+	
+	/**
+	 * Gets the camp leases saved, updated or deleted since cursor, for keeping a copy in sync.
+	 * 
+	 * @param cursor  the next cursor of the previous ChangeSet, or ChangeCursor.START
+	 * @param limit   the maximum number of changes to return
+	 * @return the changed camp leases, the ids of the deleted ones and the next cursor.
+	 */
+	public static ChangeSet<CampLease> getModifiedSince(ChangeCursor cursor, int limit) {
+		CampLeaseDAO leaseDao = getCampLeaseDAO();
+		return leaseDao.getModifiedSince(cursor, limit);
+	} // end getModifiedSince
+	
+	/**
+	 * Gets a summary of every camp lease, including the names of the camp and the leasing 
+	 * company, without loading any CampLease, CoalCamp or CoalCompany.  Intended for list views.
+	 * 
+	 * @return a list of camp lease summaries in id order.
+	 */
+	public static List<CampLeaseSummary> getCampLeaseSummaries() {
+		CampLeaseDAO leaseDao = getCampLeaseDAO();
+		return leaseDao.getCampLeaseSummaries();
+	} // end getCampLeaseSummaries
+	
+	/**
+	 * Gets one page of camp lease summaries in id order using keyset paging.
+	 * 
+	 * @param afterId  the last id of the previous page, or 0 for the first page
+	 * @param limit    the maximum number of summaries to return
+	 * @param sort     ascending or descending id order
+	 * @return a list of at most limit summaries, empty after the last page.
+	 */
+	public static List<CampLeaseSummary> getCampLeaseSummaryPage(int afterId, int limit, SortOrder sort) {
+		CampLeaseDAO leaseDao = getCampLeaseDAO();
+		return leaseDao.getCampLeaseSummaryPage(afterId, limit, sort);
+	} // end getCampLeaseSummaryPage
+	
+	/**
+	 * Gets the leases of a coal camp in effect during a year, such as who leased Slickville in 1923.
+	 * 
+	 * @param camp  the CoalCamp of interest
+	 * @param year  the year of interest
+	 * @return the leases whose years include year, in beginYear order.
+	 */
+	public static List<LeaseOccupancy> getLeasesInYear(CoalCamp camp, int year) {
+		CampLeaseDAO leaseDao = getCampLeaseDAO();
+		return leaseDao.getLeasesInYear(idOf(camp), year);
+	} // end getLeasesInYear
+	
 	/**
 	 * Retrieves the number of camp leases in the database using the applicationContext CampLeaseDAO bean.
 	 * 
 	 * @return a list of camp leases either with or without the buildingCompany fetched.
 	 */
 	public static int getCampLeaseCount( ) {
-		CampLeaseDAO leaseDao = (CampLeaseDAO) getApplicationContext().getBean("leaseDaoBean", CampLeaseDAO.class);
+		CampLeaseDAO leaseDao = getCampLeaseDAO();
 		return leaseDao.getCampLeaseCount();
 	} // end getCampLeaseCount()
 
@@ -119,7 +213,7 @@ public class CampLease extends BaseCCObject implements Serializable {
 	 * Updates the camp lease in the database by fetching the CampLeaseDAO and calling the generic update.
 	 */
 	public void update() {
-		CampLeaseDAO leaseDao = (CampLeaseDAO) getApplicationContext().getBean("leaseDaoBean", CampLeaseDAO.class);
+		CampLeaseDAO leaseDao = getCampLeaseDAO();
 		leaseDao.update(this);  // routine now uses leaseDao to get CampLease class
 	}
 	
@@ -127,7 +221,7 @@ public class CampLease extends BaseCCObject implements Serializable {
 	 * Deletes the camp lease to the database by fetching the CampLeaseDAO and calling the generic delete.
 	 */
 	public void delete() {
-		CampLeaseDAO leaseDao = (CampLeaseDAO) getApplicationContext().getBean("leaseDaoBean", CampLeaseDAO.class);
+		CampLeaseDAO leaseDao = getCampLeaseDAO();
 		leaseDao.delete(this);
 	}	
 	
@@ -0,0 +1,52 @@
+package coalcamps.classes;
+
+import java.io.Serializable;
+
+/** 
+ * Immutable summary of a CampLease for list views: the id and years of the lease and the 
+ * names of the camp leased and the company leasing it.  Summaries are created directly 
+ * by "SELECT new" queries, so they are never managed by a hibernate session, hold no 
+ * proxies and cost no dirty checking snapshots.
+ * 
+ * @author Mike Sheliga 
+ */
+public final class CampLeaseSummary implements Serializable {
+
+	static final long serialVersionUID = 1L;
+
+	private final int id;
+	private final String campName;
+	private final String companyName;
+	private final int beginYear;
+	private final int endYear;
+
+	/**
+	 * Constructor used by hql "SELECT new coalcamps.classes.CampLeaseSummary(...)" queries.
+	 * 
+	 * @param id           the primary key of the camp lease
+	 * @param campName     the name of the CoalCamp that was leased
+	 * @param companyName  the name of the CoalCompany that leased the camp
+	 * @param beginYear    the year the lease began
+	 * @param endYear      the year the lease ended
+	 */
+	public CampLeaseSummary(int id, String campName, String companyName, int beginYear, int endYear) {
+		this.id = id;
+		this.campName = campName;
+		this.companyName = companyName;
+		this.beginYear = beginYear;
+		this.endYear = endYear;
+	} // end CampLeaseSummary constructor
+
+	public int getId() {return id;}
+	public String getCampName() {return campName;}
+	public String getCompanyName() {return companyName;}
+	public int getBeginYear() {return beginYear;}
+	public int getEndYear() {return endYear;}
+
+	@Override
+	public String toString() {
+		return "CampLeaseSummary: ID=" + id + " Camp " + campName + " Leased by " + companyName + 
+			" (" + beginYear + " - " + endYear + ")";
+	}
+	
+} // end class CampLeaseSummary
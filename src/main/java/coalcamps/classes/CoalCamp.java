@@ -2,14 +2,24 @@ package coalcamps.classes;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
+import javax.persistence.Index;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import coalcamps.dao.AsyncCoalCampDAO;
+import coalcamps.dao.ChangeCursor;
+import coalcamps.dao.ChangeSet;
 import coalcamps.dao.CoalCampDAO;
+import coalcamps.dao.SortOrder;
 
 /** 
  * Contains a POJO class annotated for ORM databases that represent a town built by a coal company for 
@@ -23,15 +33,30 @@ import coalcamps.dao.CoalCampDAO;
  *
  */
 @Entity
-@Table(name="Coal_Camp")
+@Cacheable  // second level cache region configured in ehcache.xml
+@Cache(usage=CacheConcurrencyStrategy.READ_WRITE, region="coalcamps.CoalCamp")
+@Table(name="Coal_Camp", indexes=@Index(name="ix_coal_camp_name_key", columnList="campNameKey"))
 // @FetchProfiles({ @FetchProfile(name = "camp_builder", fetchOverrides = 
 // 	{ @FetchProfile.FetchOverride(entity = CoalCamp.class, association = "companyBuilding", mode = FetchMode.JOIN ) }) })
 public class CoalCamp extends BaseCCObject implements Serializable {
 	
 	static final long serialVersionUID = 1L;
+	
+	/**
+	 * Holds the CoalCampDAO beans, looked up once on first use instead of on every call.
+	 */
+	private static class DaoHolder {
+		static final CoalCampDAO DAO = getApplicationContext().getBean("campDaoBean", CoalCampDAO.class);
+		static final AsyncCoalCampDAO ASYNC_DAO = getApplicationContext().getBean("campDaoAsync", AsyncCoalCampDAO.class);
+	}
+	
+	private static CoalCampDAO getCoalCampDAO() {return DaoHolder.DAO;}
+	private static AsyncCoalCampDAO getAsyncCoalCampDAO() {return DaoHolder.ASYNC_DAO;}
 
 	@Column 
 	private String campName; 
+	@Column(length=190)  // normalized campName for searches, short enough to index in utf8mb4
+	private String campNameKey;
 	private int yearBuilt;
 	@ManyToOne(fetch=FetchType.LAZY, optional=false)  // optional=false
 	private CoalCompany companyBuilding;  // foreign key in DB
@@ -50,7 +75,7 @@ public class CoalCamp extends BaseCCObject implements Serializable {
 	 * @param companyBuilding  the CoalCompany that built the coal camp 
 	 */
 	public CoalCamp(String campName, int yearBuilt, CoalCompany companyBuilding) {
-		this.campName = campName;
+		setCampName(campName);
 		this.yearBuilt = yearBuilt;
 		this.companyBuilding = companyBuilding;
 	}
@@ -61,7 +86,7 @@ public class CoalCamp extends BaseCCObject implements Serializable {
 	 * Saves the coal camp to the database by fetching the CoalCampDAO and calling the generic save.
 	 */
 	public void save() {
-		CoalCampDAO campDao = (CoalCampDAO) getApplicationContext().getBean("campDaoBean", CoalCampDAO.class);
+		CoalCampDAO campDao = getCoalCampDAO();
 		campDao.save(this);
 	}
 			
@@ -72,7 +97,7 @@ public class CoalCamp extends BaseCCObject implements Serializable {
 	 * @return a CoalCamp or null if the camp could not be found.
 	 */
 	public static CoalCamp getById(int ID) {
-		CoalCampDAO campDao = (CoalCampDAO) getApplicationContext().getBean("campDaoBean", CoalCampDAO.class);
+		CoalCampDAO campDao = getCoalCampDAO();
 		return campDao.getById(ID);
 	} // end getById(int ID)	
 	
@@ -82,7 +107,7 @@ public class CoalCamp extends BaseCCObject implements Serializable {
 	 * @return a list of coal camps using the default fetching strategy for companyBuilding
 	 */
 	public static List<CoalCamp> getCoalCamps() {
-		CoalCampDAO campDao = (CoalCampDAO) getApplicationContext().getBean("campDaoBean", CoalCampDAO.class);
+		CoalCampDAO campDao = getCoalCampDAO();
 		return campDao.getCoalCamps();
 	} // end getCoalCamps()
 	
@@ -93,15 +118,111 @@ public class CoalCamp extends BaseCCObject implements Serializable {
 	 * @return a list of coal camps either with or without the buildingCompany fetched.
 	 */
 	public static List<CoalCamp> getCoalCamps(boolean eager) {
-		CoalCampDAO campDao = (CoalCampDAO) getApplicationContext().getBean("campDaoBean", CoalCampDAO.class);
+		CoalCampDAO campDao = getCoalCampDAO();
 		return campDao.getCoalCamps(eager);
 	} // end getCoalCamps(eager)
 	
+	/**
+	 * Gets the coal camps on a DaoExecutor thread, so other queries can run at the same time.
+	 * 
+	 * @param eager indicates if eager fetching of buildingCompany should occur. 
+	 * @return a future list of coal camps either with or without the buildingCompany fetched.
+	 */
+	public static CompletableFuture<List<CoalCamp>> getCoalCampsAsync(boolean eager) {
+		return getAsyncCoalCampDAO().getCoalCamps(eager);
+	} // end getCoalCampsAsync
+	
+	/**
+	 * Gets one page of coal camps in id order using keyset paging.
+	 * 
+	 * @param afterId  the last id of the previous page, or 0 for the first page
+	 * @param limit    the maximum number of camps to return
+	 * @param sort     ascending or descending id order
+	 * @param eager    indicates if eager fetching of buildingCompany should occur. 
+	 * @return a list of at most limit coal camps, empty after the last page.
+	 */
+	public static List<CoalCamp> getCoalCampPage(int afterId, int limit, SortOrder sort, boolean eager) {
+		CoalCampDAO campDao = getCoalCampDAO();
+		return campDao.getCoalCampPage(afterId, limit, sort, eager);
+	} // end getCoalCampPage
+	
+	/**
+	 * Gets the coal camps saved, updated or deleted since cursor, for keeping a copy in sync.
+	 * 
+	 * @param cursor  the next cursor of the previous ChangeSet, or ChangeCursor.START
+	 * @param limit   the maximum number of changes to return
+	 * @return the changed coal camps, the ids of the deleted ones and the next cursor.
+	 */
+	public static ChangeSet<CoalCamp> getModifiedSince(ChangeCursor cursor, int limit) {
+		CoalCampDAO campDao = getCoalCampDAO();
+		return campDao.getModifiedSince(cursor, limit);
+	} // end getModifiedSince
+	
+	/**
+	 * Gets the coal camps with a name, ignoring case, accents and extra spaces, so 
+	 * "slickville" also finds "SLICKville".
+	 * 
+	 * @param name  the camp name to find
+	 * @return the matching coal camps
+	 */
+	public static List<CoalCamp> searchByName(String name) {
+		CoalCampDAO campDao = getCoalCampDAO();
+		return campDao.searchByName(name);
+	} // end searchByName
+	
+	/**
+	 * Gets up to limit coal camps whose name starts with prefix.
+	 * 
+	 * @param prefix  the start of the camp name
+	 * @param limit   the maximum number of camps to return
+	 * @return the matching coal camps in name order
+	 */
+	public static List<CoalCamp> searchByNamePrefix(String prefix, int limit) {
+		CoalCampDAO campDao = getCoalCampDAO();
+		return campDao.searchByNamePrefix(prefix, limit);
+	} // end searchByNamePrefix
+	
+	/**
+	 * Gets the ids and names of up to limit camps whose name starts with prefix, for typeahead.
+	 * 
+	 * @param prefix  the start of the camp name as typed
+	 * @param limit   the maximum number of suggestions
+	 * @return the matching ids and names in name order
+	 */
+	public static List<NameSuggestion> suggestNames(String prefix, int limit) {
+		CoalCampDAO campDao = getCoalCampDAO();
+		return campDao.suggestNames(prefix, limit);
+	} // end suggestNames
+	
+	/**
+	 * Gets a summary of every coal camp, including the name of the company that built it, 
+	 * without loading any CoalCamp or CoalCompany.  Intended for list views.
+	 * 
+	 * @return a list of coal camp summaries in id order.
+	 */
+	public static List<CoalCampSummary> getCoalCampSummaries() {
+		CoalCampDAO campDao = getCoalCampDAO();
+		return campDao.getCoalCampSummaries();
+	} // end getCoalCampSummaries
+	
+	/**
+	 * Gets one page of coal camp summaries in id order using keyset paging.
+	 * 
+	 * @param afterId  the last id of the previous page, or 0 for the first page
+	 * @param limit    the maximum number of summaries to return
+	 * @param sort     ascending or descending id order
+	 * @return a list of at most limit summaries, empty after the last page.
+	 */
+	public static List<CoalCampSummary> getCoalCampSummaryPage(int afterId, int limit, SortOrder sort) {
+		CoalCampDAO campDao = getCoalCampDAO();
+		return campDao.getCoalCampSummaryPage(afterId, limit, sort);
+	} // end getCoalCampSummaryPage
+	
 	/**
 	 * Updates the coal camp in the database by fetching the CoalCampDAO and calling the generic update.
 	 */
 	public void update() {
-		CoalCampDAO campDao = (CoalCampDAO) getApplicationContext().getBean("campDaoBean", CoalCampDAO.class);
+		CoalCampDAO campDao = getCoalCampDAO();
 		campDao.update(this);  // uses campDao to get CoalCamp class for getById
 	}
 	
@@ -109,7 +230,7 @@ public class CoalCamp extends BaseCCObject implements Serializable {
 	 * Deletes the coal camp to the database by fetching the CoalCampDAO and calling the generic delete.
 	 */
 	public void delete() {
-		CoalCampDAO campDao = (CoalCampDAO) getApplicationContext().getBean("campDaoBean", CoalCampDAO.class);
+		CoalCampDAO campDao = getCoalCampDAO();
 		campDao.delete(this);
 	}
 	
@@ -118,7 +239,11 @@ public class CoalCamp extends BaseCCObject implements Serializable {
 	// public void setId(int id) {this.id = id;}
 	
 	public String getCampName() {return campName;}
-	public void setCampName(String campName) {this.campName = campName;}
+	public void setCampName(String campName) {  // also sets the search key
+		this.campName = campName;
+		this.campNameKey = normalizeName(campName);
+	}
+	public String getCampNameKey() {return campNameKey;}
 
 	public int getYearBuilt() {return yearBuilt;}	
 	public void setYearBuilt(int yearBuilt) {this.yearBuilt = yearBuilt;}
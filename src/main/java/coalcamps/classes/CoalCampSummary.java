@@ -0,0 +1,48 @@
+package coalcamps.classes;
+
+import java.io.Serializable;
+
+/** 
+ * Immutable summary of a CoalCamp for list views: the id, name and year built of the camp 
+ * and the name of the company that built it.  Summaries are created directly by 
+ * "SELECT new" queries, so they are never managed by a hibernate session, hold no 
+ * proxies and cost no dirty checking snapshots.
+ * 
+ * @author Mike Sheliga 
+ */
+public final class CoalCampSummary implements Serializable {
+
+	static final long serialVersionUID = 1L;
+
+	private final int id;
+	private final String campName;
+	private final int yearBuilt;
+	private final String companyName;
+
+	/**
+	 * Constructor used by hql "SELECT new coalcamps.classes.CoalCampSummary(...)" queries.
+	 * 
+	 * @param id           the primary key of the coal camp
+	 * @param campName     the common name of the town
+	 * @param yearBuilt    the year the town was built
+	 * @param companyName  the name of the CoalCompany that built the camp
+	 */
+	public CoalCampSummary(int id, String campName, int yearBuilt, String companyName) {
+		this.id = id;
+		this.campName = campName;
+		this.yearBuilt = yearBuilt;
+		this.companyName = companyName;
+	} // end CoalCampSummary constructor
+
+	public int getId() {return id;}
+	public String getCampName() {return campName;}
+	public int getYearBuilt() {return yearBuilt;}
+	public String getCompanyName() {return companyName;}
+
+	@Override
+	public String toString() {
+		return "CoalCampSummary: ID=" + id + " Name=" + campName + " Year Built=" + yearBuilt + 
+			" Company Building=" + companyName;
+	}
+	
+} // end class CoalCampSummary
@@ -2,12 +2,22 @@ package coalcamps.classes;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import coalcamps.dao.AsyncCoalCompanyDAO;
+import coalcamps.dao.ChangeCursor;
+import coalcamps.dao.ChangeSet;
 import coalcamps.dao.CoalCompanyDAO;
+import coalcamps.dao.SortOrder;
 
 /** 
  * Contains a POJO class annotated for ORM databases that represent a coal mining company.
@@ -17,19 +27,37 @@ import coalcamps.dao.CoalCompanyDAO;
  * an overridden toString routine. 
  * The standard getters and setters and toString have no side effects and are not further 
  * commented for purposes of brevity.
+ * <p>
+ * Companies are mostly reference data.  They use a read-write second level cache region 
+ * so they can still be updated, and are only cached when cache.enabled is true.
  * 
  * @author Mike Sheliga 3.15.18
  */
 
 @Entity
-@Table(name="Coal_Company")
+@Cacheable  // second level cache region configured in ehcache.xml
+@Cache(usage=CacheConcurrencyStrategy.READ_WRITE, region="coalcamps.CoalCompany")  // companies are versioned and may be updated
+@Table(name="Coal_Company", indexes=@Index(name="ix_coal_company_name_key", columnList="companyNameKey"))
 public class CoalCompany extends BaseCCObject implements Serializable {
 	    
 	// private static ApplicationContext applicationContext = new ClassPathXmlApplicationContext("spring4.xml");
 	static final long serialVersionUID = 1L;
+	
+	/**
+	 * Holds the CoalCompanyDAO beans, looked up once on first use instead of on every call.
+	 */
+	private static class DaoHolder {
+		static final CoalCompanyDAO DAO = getApplicationContext().getBean("compDaoBean", CoalCompanyDAO.class);
+		static final AsyncCoalCompanyDAO ASYNC_DAO = getApplicationContext().getBean("compDaoAsync", AsyncCoalCompanyDAO.class);
+	}
+	
+	private static CoalCompanyDAO getCoalCompanyDAO() {return DaoHolder.DAO;}
+	private static AsyncCoalCompanyDAO getAsyncCoalCompanyDAO() {return DaoHolder.ASYNC_DAO;}
 
 	@Column  
 	private String companyName; 
+	@Column(length=190)  // normalized companyName for searches, short enough to index in utf8mb4
+	private String companyNameKey;
 	private int yearFounded; 
 	    
 	// ----------------- Constructors --------------------------------------
@@ -46,7 +74,7 @@ public class CoalCompany extends BaseCCObject implements Serializable {
 	 * @param yearFounded  an int indicating the year the company was incorporated.
 	 */
 	public CoalCompany(String companyName, int yearFounded) {
-	    this.companyName = companyName;
+	    setCompanyName(companyName);
 	    this.yearFounded = yearFounded;
 	}
 	    
@@ -56,7 +84,7 @@ public class CoalCompany extends BaseCCObject implements Serializable {
 	 * Saves the coal company to the database using the CoalCompanyDAO appContext bean.
 	 */
 	public void save() {
-	    CoalCompanyDAO companyDao = (CoalCompanyDAO) getApplicationContext().getBean("compDaoBean");
+	    CoalCompanyDAO companyDao = getCoalCompanyDAO();
 	    companyDao.save(this);
 	} // end save
 	    
@@ -67,7 +95,7 @@ public class CoalCompany extends BaseCCObject implements Serializable {
      * @return a coal company with the given ID from the database, or null if not present
      */
 	public static CoalCompany getById(int ID) {
-		CoalCompanyDAO companyDao = (CoalCompanyDAO) getApplicationContext().getBean("compDaoBean");
+		CoalCompanyDAO companyDao = getCoalCompanyDAO();
 		return companyDao.getById(ID);  // uses companyDao to get CoalCompany.class
 		// return companyDao.getCoalCompanyById(ID);
 	} // end getById
@@ -78,17 +106,86 @@ public class CoalCompany extends BaseCCObject implements Serializable {
 	 * @return a list of all coal companies in the database
 	 */
 	public static List<CoalCompany> getCoalCompanies() {
-		CoalCompanyDAO companyDao = (CoalCompanyDAO) getApplicationContext().getBean("compDaoBean");
+		CoalCompanyDAO companyDao = getCoalCompanyDAO();
 	    return companyDao.getCoalCompanies();
 	} // end getCoalCompanies
 	
+	/**
+	 * Retrieve all coal companies on a DaoExecutor thread, so other queries can run at the same time.
+	 * 
+	 * @return a future list of all coal companies in the database
+	 */
+	public static CompletableFuture<List<CoalCompany>> getCoalCompaniesAsync() {
+		return getAsyncCoalCompanyDAO().getCoalCompanies();
+	} // end getCoalCompaniesAsync
+	
+	/**
+	 * Retrieve one page of coal companies in id order using keyset paging.
+	 * 
+	 * @param afterId  the last id of the previous page, or 0 for the first page
+	 * @param limit    the maximum number of companies to return
+	 * @param sort     ascending or descending id order
+	 * @return a list of at most limit coal companies, empty after the last page.
+	 */
+	public static List<CoalCompany> getCoalCompanyPage(int afterId, int limit, SortOrder sort) {
+		CoalCompanyDAO companyDao = getCoalCompanyDAO();
+		return companyDao.getCoalCompanyPage(afterId, limit, sort);
+	} // end getCoalCompanyPage
+	
+	/**
+	 * Retrieve the coal companies saved, updated or deleted since cursor, for keeping a copy in sync.
+	 * 
+	 * @param cursor  the next cursor of the previous ChangeSet, or ChangeCursor.START
+	 * @param limit   the maximum number of changes to return
+	 * @return the changed coal companies, the ids of the deleted ones and the next cursor.
+	 */
+	public static ChangeSet<CoalCompany> getModifiedSince(ChangeCursor cursor, int limit) {
+		CoalCompanyDAO companyDao = getCoalCompanyDAO();
+		return companyDao.getModifiedSince(cursor, limit);
+	} // end getModifiedSince
+	
+	/**
+	 * Retrieve the coal companies with a name, ignoring case, accents and extra spaces.
+	 * 
+	 * @param name  the company name to find
+	 * @return the matching coal companies
+	 */
+	public static List<CoalCompany> searchByName(String name) {
+		CoalCompanyDAO companyDao = getCoalCompanyDAO();
+		return companyDao.searchByName(name);
+	} // end searchByName
+	
+	/**
+	 * Retrieve up to limit coal companies whose name starts with prefix.
+	 * 
+	 * @param prefix  the start of the company name
+	 * @param limit   the maximum number of companies to return
+	 * @return the matching coal companies in name order
+	 */
+	public static List<CoalCompany> searchByNamePrefix(String prefix, int limit) {
+		CoalCompanyDAO companyDao = getCoalCompanyDAO();
+		return companyDao.searchByNamePrefix(prefix, limit);
+	} // end searchByNamePrefix
+	
+	/**
+	 * Retrieve the ids and names of up to limit companies whose name starts with prefix, for typeahead.
+	 * 
+	 * @param prefix  the start of the company name as typed
+	 * @param limit   the maximum number of suggestions
+	 * @return the matching ids and names in name order
+	 */
+	public static List<NameSuggestion> suggestNames(String prefix, int limit) {
+		CoalCompanyDAO companyDao = getCoalCompanyDAO();
+		return companyDao.suggestNames(prefix, limit);
+	} // end suggestNames
+	
 	/**
      * Retrieve the number of database coal companies using the CoalCompanyDAO appContext bean.
      * 
      * @return the number of coal companies in the database
      */
 	public static int getCoalCompanyCount() {
-		CoalCompanyDAO companyDao = (CoalCompanyDAO) getApplicationContext().getBean("compDaoBean");
+		CoalCompanyDAO companyDao = getCoalCompanyDAO();
 		return companyDao.getCoalCompanyCount();
 	} // end getCoalCompanyCount
 	    
@@ -96,7 +193,7 @@ public class CoalCompany extends BaseCCObject implements Serializable {
 	 * Updates the coal company in the database using the CoalCompanyDAO appContext bean.
 	 */
 	public void update() {
-	    CoalCompanyDAO companyDao = (CoalCompanyDAO) getApplicationContext().getBean("compDaoBean");
+	    CoalCompanyDAO companyDao = getCoalCompanyDAO();
 	    companyDao.update(this);  // uses companyDao to get CoalCompany.class
 	 } // end update
 	    
@@ -104,7 +201,7 @@ public class CoalCompany extends BaseCCObject implements Serializable {
 	 * Deletes the coal company from the database using the CoalCompanyDAO appContext bean.
 	 */
 	public void delete() {
-	    CoalCompanyDAO companyDao = (CoalCompanyDAO) getApplicationContext().getBean("compDaoBean");
+	    CoalCompanyDAO companyDao = getCoalCompanyDAO();
 	    companyDao.delete(this);
 	} // end delete
 	    
@@ -116,7 +213,11 @@ public class CoalCompany extends BaseCCObject implements Serializable {
 	// ------ Standard Getters and Setters (no side effects, not javaDoced) -------
 
 	    public String getCompanyName() {return companyName;}
-	    public void setCompanyName(String companyName) {this.companyName = companyName;}
+	    public void setCompanyName(String companyName) {  // also sets the search key
+	    	this.companyName = companyName;
+	    	this.companyNameKey = normalizeName(companyName);
+	    }
+	    public String getCompanyNameKey() {return companyNameKey;}
 
 	    public int getYearFounded() {return yearFounded;}
 	    public void setYearFounded(int yearFounded) {this.yearFounded = yearFounded;}
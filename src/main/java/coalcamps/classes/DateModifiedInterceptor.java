@@ -0,0 +1,82 @@
+package coalcamps.classes;
+
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Hibernate;
+import org.hibernate.type.Type;
+
+import coalcamps.monitor.StatementBudget;
+
+/** 
+ * Hibernate interceptor that stamps dateModified on every coal camp object just before 
+ * hibernate flushes an update for it.  Together with dateCreated being non-updatable 
+ * this lets an update be a single UPDATE statement without first reading the record.
+ * It also sets the change feed modStamp on every insert and update, to the pending stamp 
+ * of the transaction when BaseDAOImpl restamps its writes at commit (see ModStamp), and 
+ * counts entity loads for StatementBudget.
+ * Registered as the entityInterceptor of the session factory bean in spring4.xml.
+ * 
+ * @author Mike Sheliga 
+ */
+public class DateModifiedInterceptor extends EmptyInterceptor {
+
+	static final long serialVersionUID = 1L;
+
+	/**
+	 * Counts the load for StatementBudget.  The loaded state is not changed.
+	 * 
+	 * @return false, the state was not modified.
+	 */
+	@Override
+	public boolean onLoad(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		StatementBudget.onEntityLoad();
+		return false;
+	} // end onLoad
+
+	/**
+	 * Sets modStamp in both the object and the state hibernate is about to insert.
+	 * 
+	 * @return true if the state was modified, which is the case for all coal camp objects.
+	 */
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		if (!(entity instanceof BaseCCObject)) return false;
+		return setModStamp((BaseCCObject) entity, state, propertyNames);
+	} // end onSave
+
+	/**
+	 * Sets dateModified to now, and modStamp, in both the object and the state hibernate is about to write.
+	 * 
+	 * @return true if the state was modified, which is the case for all coal camp objects.
+	 */
+	@Override
+	public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, 
+			Object[] previousState, String[] propertyNames, Type[] types) {
+		if (!(entity instanceof BaseCCObject)) return false;
+		boolean modified = setModStamp((BaseCCObject) entity, currentState, propertyNames);
+		for (int i = 0; i < propertyNames.length; i++) {
+			if ("dateModified".equals(propertyNames[i])) {
+				ZonedDateTime now = ZonedDateTime.now();
+				currentState[i] = now;
+				((BaseCCObject) entity).setDateModified(now);
+				return true;
+			}
+		} // end for
+		return modified;
+	} // end onFlushDirty
+
+	private static boolean setModStamp(BaseCCObject entity, Object[] state, String[] propertyNames) {
+		for (int i = 0; i < propertyNames.length; i++) {
+			if ("modStamp".equals(propertyNames[i])) {
+				long stamp = ModStamp.forWrite(Hibernate.getClass(entity).getName());
+				state[i] = stamp;
+				entity.setModStamp(stamp);
+				return true;
+			}
+		} // end for
+		return false;
+	} // end setModStamp
+
+} // end class DateModifiedInterceptor
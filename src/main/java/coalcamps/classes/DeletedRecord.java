@@ -0,0 +1,68 @@
+package coalcamps.classes;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/** 
+ * Tombstone written in the same transaction as each delete, so the change feed 
+ * (BaseDAO.getModifiedSince) can report deleted records as well as changed ones. 
+ * The id is an IDENTITY column so bulk deletes can add their tombstones with one 
+ * INSERT ... SELECT statement.
+ * 
+ * @author Mike Sheliga 
+ */
+@Entity
+@Table(name="cc_deleted_record")
+public class DeletedRecord implements Serializable {
+
+	static final long serialVersionUID = 1L;
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private long id;
+	@Column(length=64, nullable=false)
+	private String entityName;  // simple class name, such as CoalCamp
+	@Column(nullable=false)
+	private int entityId;
+	@Column(nullable=false)
+	private long modStamp;
+
+	// ------------ Constructors ----------------
+	public DeletedRecord() {}
+
+	/**
+	 * @param entityName  the simple class name of the deleted record, such as CoalCamp
+	 * @param entityId    the id of the deleted record
+	 * @param modStamp    the modification stamp of the delete, see ModStamp
+	 */
+	public DeletedRecord(String entityName, int entityId, long modStamp) {
+		this.entityName = entityName;
+		this.entityId = entityId;
+		this.modStamp = modStamp;
+	}
+
+	// ------ standard getters and setters --------
+	public long getId() {return id;}
+	public void setId(long id) {this.id = id;}
+
+	public String getEntityName() {return entityName;}
+	public void setEntityName(String entityName) {this.entityName = entityName;}
+
+	public int getEntityId() {return entityId;}
+	public void setEntityId(int entityId) {this.entityId = entityId;}
+
+	public long getModStamp() {return modStamp;}
+	public void setModStamp(long modStamp) {this.modStamp = modStamp;}
+
+	@Override
+	public String toString() {
+		return "DeletedRecord: " + entityName + " ID=" + entityId + " Stamp=" + modStamp;
+	}
+
+} // end class DeletedRecord
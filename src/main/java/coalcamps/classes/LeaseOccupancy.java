@@ -0,0 +1,72 @@
+package coalcamps.classes;
+
+import java.io.Serializable;
+
+/** 
+ * Immutable record of which company occupied a coal camp between two years, inclusive. 
+ * Used by the lease occupancy index and created directly by "SELECT new" queries.
+ * 
+ * @author Mike Sheliga 
+ */
+public final class LeaseOccupancy implements Serializable {
+
+	static final long serialVersionUID = 1L;
+
+	private final int leaseId;
+	private final int campId;
+	private final int companyId;
+	private final int beginYear;
+	private final int endYear;
+
+	/**
+	 * Constructor with all fields.
+	 * 
+	 * @param leaseId    the primary key of the CampLease
+	 * @param campId     the primary key of the CoalCamp leased
+	 * @param companyId  the primary key of the CoalCompany leasing the camp
+	 * @param beginYear  the year the lease began
+	 * @param endYear    the year the lease ended
+	 */
+	public LeaseOccupancy(int leaseId, int campId, int companyId, int beginYear, int endYear) {
+		this.leaseId = leaseId;
+		this.campId = campId;
+		this.companyId = companyId;
+		this.beginYear = beginYear;
+		this.endYear = endYear;
+	} // end LeaseOccupancy constructor
+
+	/**
+	 * Returns the occupancy of a lease, without initializing lazy camp or company proxies.
+	 * 
+	 * @param lease  a saved CampLease
+	 * @return the occupancy recorded by lease
+	 */
+	public static LeaseOccupancy of(CampLease lease) {
+		return new LeaseOccupancy(lease.getId(), BaseCCObject.idOf(lease.getCampLeased()), 
+			BaseCCObject.idOf(lease.getCompanyLeasing()), lease.getBeginYear(), lease.getEndYear());
+	}
+
+	public int getLeaseId() {return leaseId;}
+	public int getCampId() {return campId;}
+	public int getCompanyId() {return companyId;}
+	public int getBeginYear() {return beginYear;}
+	public int getEndYear() {return endYear;}
+
+	/**
+	 * Returns true if this lease shares at least one year with fromYear to toYear.
+	 * 
+	 * @param fromYear  the first year of the range
+	 * @param toYear    the last year of the range
+	 * @return true if the years overlap
+	 */
+	public boolean overlaps(int fromYear, int toYear) {
+		return beginYear <= toYear && endYear >= fromYear;
+	}
+
+	@Override
+	public String toString() {
+		return "LeaseOccupancy: Lease=" + leaseId + " Camp=" + campId + " Company=" + companyId + 
+			" (" + beginYear + " - " + endYear + ")";
+	}
+	
+} // end class LeaseOccupancy
@@ -0,0 +1,145 @@
+package coalcamps.classes;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.Transaction;
+
+/** 
+ * Issues modification stamps for the change feed (see BaseDAO.getModifiedSince).  A stamp 
+ * is the time in epoch milliseconds, but never less than the last stamp issued, so stamps 
+ * do not go backwards when the system clock is set back.  Records written in the same 
+ * millisecond, or by other servers, may share a stamp; the change cursor orders them by id.
+ * <p>
+ * A record is stamped when its transaction commits, not when it is written, so a long 
+ * transaction (a large saveAll, a bulk load chunk or a slow unit of work) can not commit 
+ * records with stamps below a cursor a consumer already holds.  While the transaction runs 
+ * its records hold a pending stamp: a random negative number, unique to the transaction, 
+ * which the change feed never returns.  Just before the commit BaseDAOImpl (or the 
+ * CsvBulkLoader) replaces it with next() in one UPDATE per table.  Only the time between 
+ * that UPDATE and the commit, normally a few milliseconds, must stay within the change 
+ * feed settle time (db.changeFeed.settleMillis).
+ * <p>
+ * Stamps only increase within one JVM.  Each server stamps from its own clock, so a 
+ * server whose clock is behind another's by more than the change feed settle time 
+ * can write stamps below a cursor a consumer already holds, and the consumer never sees 
+ * those changes.  Keep the servers' clocks synchronized (ie. NTP) to well within the 
+ * settle time.
+ * 
+ * @author Mike Sheliga 
+ */
+public final class ModStamp {
+
+	private static final AtomicLong last = new AtomicLong();
+	// pending writes of the transactions begun on each thread, the latest first
+	private static final ThreadLocal<Deque<PendingWrites>> pendingWrites = ThreadLocal.withInitial(ArrayDeque::new);
+
+	private ModStamp() {}
+
+	/**
+	 * @return the current time in epoch milliseconds, or the last stamp if that is later
+	 */
+	public static long next() {
+		long now = System.currentTimeMillis();
+		return last.accumulateAndGet(now, Math::max);
+	}
+
+	/**
+	 * @return a random negative stamp for records that are restamped before they commit
+	 */
+	public static long newPendingStamp() {
+		return -1 - ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+	}
+
+	// ------ Pending writes of the current thread's transaction ------
+	/**
+	 * Records written by one transaction with its pending stamp, which must be replaced 
+	 * before the transaction commits.
+	 */
+	public static final class PendingWrites {
+		private final Transaction transaction;
+		private final long pendingStamp = newPendingStamp();
+		private final Set<String> entities = new HashSet<>();    // class names of the entities with pending records
+		private final Set<String> tombstones = new HashSet<>();  // entity names with pending DeletedRecords
+
+		private PendingWrites(Transaction transaction) {this.transaction = transaction;}
+
+		public long getPendingStamp() {return pendingStamp;}
+		public Set<String> getEntities() {return Collections.unmodifiableSet(entities);}
+		public Set<String> getTombstones() {return Collections.unmodifiableSet(tombstones);}
+	} // end class PendingWrites
+
+	/**
+	 * Starts stamping the records the current thread writes at the commit of transaction, 
+	 * until endPendingWrites.  Writes go to the latest transaction begun on the thread. 
+	 * Pending writes left by transactions that are no longer active are discarded.
+	 * 
+	 * @param transaction  the hibernate transaction of the session writing the records
+	 * @return true if the caller must restamp the pending writes before transaction commits 
+	 *         and then call endPendingWrites, false if it was already begun.
+	 */
+	public static boolean beginPendingWrites(Transaction transaction) {
+		Deque<PendingWrites> stack = pendingWrites.get();
+		for (PendingWrites pending : stack) {
+			if (pending.transaction == transaction) return false;
+		}
+		stack.removeIf(pending -> !pending.transaction.isActive());
+		stack.push(new PendingWrites(transaction));
+		return true;
+	} // end beginPendingWrites
+
+	/**
+	 * @param transaction  a transaction passed to beginPendingWrites
+	 * @return the pending writes of transaction, or null if it has none
+	 */
+	public static PendingWrites getPendingWrites(Transaction transaction) {
+		for (PendingWrites pending : pendingWrites.get()) {
+			if (pending.transaction == transaction) return pending;
+		}
+		return null;
+	} // end getPendingWrites
+
+	/**
+	 * Stops stamping writes at the commit of transaction, after it ended.
+	 * 
+	 * @param transaction  a transaction passed to beginPendingWrites
+	 */
+	public static void endPendingWrites(Transaction transaction) {
+		Deque<PendingWrites> stack = pendingWrites.get();
+		stack.removeIf(pending -> pending.transaction == transaction);
+		if (stack.isEmpty()) pendingWrites.remove();
+	} // end endPendingWrites
+
+	/**
+	 * Returns the stamp for a record being inserted or updated: the pending stamp of the 
+	 * latest transaction begun on the current thread, or next() if none is stamped at commit.
+	 * 
+	 * @param entityName  the entity name of the record, such as CoalCamp
+	 * @return the stamp to write
+	 */
+	public static long forWrite(String entityName) {
+		PendingWrites pending = pendingWrites.get().peek();
+		if (pending == null) return next();
+		pending.entities.add(entityName);
+		return pending.pendingStamp;
+	} // end forWrite
+
+	/**
+	 * Returns the stamp for the DeletedRecord of a deleted record, as forWrite does.
+	 * 
+	 * @param entityName  the entity name of the deleted record, such as CoalCamp
+	 * @return the stamp to write
+	 */
+	public static long forTombstone(String entityName) {
+		PendingWrites pending = pendingWrites.get().peek();
+		if (pending == null) return next();
+		pending.tombstones.add(entityName);
+		return pending.pendingStamp;
+	} // end forTombstone
+
+} // end class ModStamp
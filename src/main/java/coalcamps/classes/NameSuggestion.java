@@ -0,0 +1,28 @@
+package coalcamps.classes;
+
+import java.io.Serializable;
+
+/** 
+ * Immutable id and name of a camp or company, returned by typeahead name suggestions.
+ * 
+ * @author Mike Sheliga 
+ */
+public final class NameSuggestion implements Serializable {
+
+	static final long serialVersionUID = 1L;
+
+	private final int id;
+	private final String name;
+
+	public NameSuggestion(int id, String name) {
+		this.id = id;
+		this.name = name;
+	}
+
+	public int getId() {return id;}
+	public String getName() {return name;}
+
+	@Override
+	public String toString() {return name + " (" + id + ")";}
+	
+} // end class NameSuggestion
@@ -0,0 +1,41 @@
+package coalcamps.classes;
+
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/** 
+ * Table based id generator with a pooled optimizer used by all coal camp objects. 
+ * Each entity has its own row (segment) in the id table, and each trip to that table 
+ * reserves a block of allocation size ids which are then handed out from memory.  
+ * Since ids are known before the insert, hibernate can batch inserts, which it cannot 
+ * do with identity (auto increment) ids.
+ * <p>
+ * The allocation size defaults to the increment_size annotation parameter and can be 
+ * changed without recompiling with the coalcamps.id.allocation_size hibernate property.
+ * 
+ * @author Mike Sheliga 
+ */
+public class PooledIdGenerator extends TableGenerator {
+
+	/**
+	 *  Hibernate property that overrides the increment_size (allocation size) parameter.
+	 */
+	public static final String ALLOCATION_SIZE_SETTING = "coalcamps.id.allocation_size";
+
+	@Override
+	public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) 
+			throws MappingException {
+		String allocationSize = serviceRegistry.getService(ConfigurationService.class)
+			.getSetting(ALLOCATION_SIZE_SETTING, String.class, null);
+		if (allocationSize != null && !allocationSize.trim().isEmpty()) {
+			params.setProperty(INCREMENT_PARAM, allocationSize.trim());
+		}
+		super.configure(type, params, serviceRegistry);
+	} // end configure
+
+} // end class PooledIdGenerator
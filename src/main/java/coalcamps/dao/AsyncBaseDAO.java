@@ -0,0 +1,50 @@
+package coalcamps.dao;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import coalcamps.classes.BaseCCObject;
+
+/** 
+ * Asynchronous version of the BaseDAO routines.  Each routine runs the BaseDAO routine of
+ * the same name on a DaoExecutor thread and returns at once, so several queries can run at
+ * the same time:
+ * <pre>
+ *   CompletableFuture&lt;List&lt;CoalCamp&gt;&gt; camps = asyncCampDao.getCoalCamps(true);
+ *   CompletableFuture&lt;List&lt;CampLease&gt;&gt; leases = asyncLeaseDao.getCampLeases(true);
+ *   CompletableFuture.allOf(camps, leases).join();
+ * </pre>
+ * A future completes with the value the BaseDAO routine returned, so a failed routine that
+ * returns null or -1 still completes normally.  It completes exceptionally if the routine
+ * threw, took longer than the executor timeout or the executor queue was full.
+ * 
+ * @author Mike Sheliga
+ */
+public interface AsyncBaseDAO<T extends BaseCCObject> {
+
+	// ------ Database routines (in CRUD order) ------
+	public CompletableFuture<Integer> save(T e);
+
+	public CompletableFuture<List<Integer>> saveAll(Collection<T> e);
+
+	public CompletableFuture<T> getById(int ID);
+
+	public CompletableFuture<Void> update(T e);
+
+	public CompletableFuture<Boolean> updateIfCurrent(T e);
+
+	public CompletableFuture<Void> delete(T e);
+
+	// ------ Set based (bulk) routines. The entity alias is e, ie. "e.endYear < :year" ------
+	public CompletableFuture<Integer> updateWhere(String assignments, String condition, Map<String, Object> params);
+
+	public CompletableFuture<Integer> deleteWhere(String condition, Map<String, Object> params);
+
+	// ------ Change feed ------
+	public CompletableFuture<ChangeSet<T>> getModifiedSince(ChangeCursor cursor, int limit);
+
+	public CompletableFuture<Integer> purgeTombstonesBefore(long modStamp);
+
+} // end interface AsyncBaseDAO
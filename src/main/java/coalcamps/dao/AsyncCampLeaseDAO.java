@@ -0,0 +1,28 @@
+package coalcamps.dao;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import coalcamps.classes.CampLease;
+import coalcamps.classes.CampLeaseSummary;
+import coalcamps.classes.LeaseOccupancy;
+
+/** 
+ * Asynchronous version of the CampLeaseDAO routines.  See AsyncBaseDAO.
+ * 
+ * @author Mike Sheliga
+ */
+public interface AsyncCampLeaseDAO extends AsyncBaseDAO<CampLease> {
+
+	// ------ Database routines ------
+	public CompletableFuture<List<CampLease>> getCampLeases();
+	public CompletableFuture<List<CampLease>> getCampLeases(boolean eager);
+	public CompletableFuture<Integer> getCampLeaseCount();
+	public CompletableFuture<List<CampLease>> getCampLeasePage(int afterId, int limit, SortOrder sort, boolean eager);
+	public CompletableFuture<List<CampLeaseSummary>> getCampLeaseSummaries();
+	public CompletableFuture<List<CampLeaseSummary>> getCampLeaseSummaryPage(int afterId, int limit, SortOrder sort);
+	public CompletableFuture<Integer> deleteLeasesEndingBefore(int year);
+	public CompletableFuture<List<LeaseOccupancy>> getLeasesInYear(int campId, int year);
+	public CompletableFuture<List<LeaseOccupancy>> getLeasesOverlapping(int campId, int fromYear, int toYear);
+
+} // end interface AsyncCampLeaseDAO
@@ -0,0 +1,30 @@
+package coalcamps.dao;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import coalcamps.classes.CoalCamp;
+import coalcamps.classes.CoalCampSummary;
+import coalcamps.classes.CoalCompany;
+import coalcamps.classes.NameSuggestion;
+
+/** 
+ * Asynchronous version of the CoalCampDAO routines.  See AsyncBaseDAO.
+ * 
+ * @author Mike Sheliga
+ */
+public interface AsyncCoalCampDAO extends AsyncBaseDAO<CoalCamp> {
+
+	// ------ Database methods ------
+	public CompletableFuture<List<CoalCamp>> getCoalCamps();
+	public CompletableFuture<List<CoalCamp>> getCoalCamps(boolean eager);
+	public CompletableFuture<Integer> getCoalCampCount();
+	public CompletableFuture<List<CoalCamp>> getCoalCampPage(int afterId, int limit, SortOrder sort, boolean eager);
+	public CompletableFuture<List<CoalCamp>> searchByName(String name);
+	public CompletableFuture<List<CoalCamp>> searchByNamePrefix(String prefix, int limit);
+	public CompletableFuture<List<NameSuggestion>> suggestNames(String prefix, int limit);
+	public CompletableFuture<List<CoalCampSummary>> getCoalCampSummaries();
+	public CompletableFuture<List<CoalCampSummary>> getCoalCampSummaryPage(int afterId, int limit, SortOrder sort);
+	public CompletableFuture<Integer> reassignCoalCamps(CoalCompany fromCompany, CoalCompany toCompany);
+
+} // end interface AsyncCoalCampDAO
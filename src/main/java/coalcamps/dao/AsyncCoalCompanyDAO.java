@@ -0,0 +1,24 @@
+package coalcamps.dao;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import coalcamps.classes.CoalCompany;
+import coalcamps.classes.NameSuggestion;
+
+/** 
+ * Asynchronous version of the CoalCompanyDAO routines.  See AsyncBaseDAO.
+ * 
+ * @author Mike Sheliga
+ */
+public interface AsyncCoalCompanyDAO extends AsyncBaseDAO<CoalCompany> {
+
+	// ------ Database methods ------
+	public CompletableFuture<List<CoalCompany>> getCoalCompanies();
+	public CompletableFuture<Integer> getCoalCompanyCount();
+	public CompletableFuture<List<CoalCompany>> getCoalCompanyPage(int afterId, int limit, SortOrder sort);
+	public CompletableFuture<List<CoalCompany>> searchByName(String name);
+	public CompletableFuture<List<CoalCompany>> searchByNamePrefix(String prefix, int limit);
+	public CompletableFuture<List<NameSuggestion>> suggestNames(String prefix, int limit);
+
+} // end interface AsyncCoalCompanyDAO
@@ -2,6 +2,11 @@ package coalcamps.dao;
 
 import coalcamps.classes.BaseCCObject; 
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
 /** 
  * Contains database routines that are implemented by all 
  * coal camp objects. It is limited to a few basic CRUD 
@@ -17,10 +22,38 @@ public interface BaseDAO<T extends BaseCCObject> {
 		
 	public int save(T e);
 	
+	// bulk saves share one session and transaction, flushing every batchSize records
+	public List<Integer> saveAll(Collection<T> e);
+	
+	public List<Integer> saveAll(Stream<T> e);
+	
 	public T getById(int ID);  // no longer pass in Class<> pojoClass
 	
+	// forward only cursor over every record. Must be closed (ie. try with resources).
+	public Stream<T> streamAll();
+	
 	public void update(T e);  // no longer pass in Class<> pojoClass
+	
+	// false if the record was changed or deleted by someone else since it was read
+	public boolean updateIfCurrent(T e);
 
 	public void delete(T e);
+	
+	// ------ Set based (bulk) routines. The entity alias is e, ie. "e.endYear < :year" ------
+	public int updateWhere(String assignments, String condition, Map<String, Object> params);
+	
+	public int deleteWhere(String condition, Map<String, Object> params);
+
+	// ------ Change feed. Records saved, updated or deleted after cursor, at most limit of them ------
+	public ChangeSet<T> getModifiedSince(ChangeCursor cursor, int limit);
+
+	// removes tombstones of deleted records stamped before modStamp, which cursors older than it miss
+	public int purgeTombstonesBefore(long modStamp);
+
+	// ------ Listeners notified after records are written ------
+	public void addWriteListener(WriteListener<T> listener);
+
+	// tells the listeners that records were written without this DAO, ie. by a bulk loader
+	public void notifyBulkChange();
 			
 } // end interface BaseDao
\ No newline at end of file
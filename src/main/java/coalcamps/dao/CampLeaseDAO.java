@@ -1,6 +1,8 @@
 package coalcamps.dao;
 
 import coalcamps.classes.CampLease;
+import coalcamps.classes.CampLeaseSummary;
+import coalcamps.classes.LeaseOccupancy;
 import java.util.List; 
 
 /** 
@@ -21,9 +23,19 @@ public interface CampLeaseDAO extends BaseDAO<CampLease> {
 	// Return all campLeases with either lazy or eager fetching  
 	public List<CampLease> getCampLeases(boolean eager);
 	public int getCampLeaseCount( );
+	// keyset paging on id. Pass afterId=0 for the first page, then the last id of each page.
+	public List<CampLease> getCampLeasePage(int afterId, int limit, SortOrder sort);
+	public List<CampLease> getCampLeasePage(int afterId, int limit, SortOrder sort, boolean eager);
+	// id, years, camp name and company name only, without loading any entities
+	public List<CampLeaseSummary> getCampLeaseSummaries();
+	public List<CampLeaseSummary> getCampLeaseSummaryPage(int afterId, int limit, SortOrder sort);
 		
 	// public void updateCampLease(CampLease e);
 
 	// public void deleteCampLease(CampLease e);
+	public int deleteLeasesEndingBefore(int year);
+	// who leased a camp in a year, or during a range of years (inclusive)
+	public List<LeaseOccupancy> getLeasesInYear(int campId, int year);
+	public List<LeaseOccupancy> getLeasesOverlapping(int campId, int fromYear, int toYear);
 			
 } // end interface CampLeaseDao
\ No newline at end of file
@@ -0,0 +1,67 @@
+package coalcamps.dao;
+
+/** 
+ * Position in the change feed of one kind of record, returned by BaseDAO.getModifiedSince 
+ * and passed back to get the next changes.  Changes are ordered by modification stamp 
+ * and then id, so records sharing a stamp are neither skipped nor repeated between calls.
+ * A consumer can store the cursor with toString and read it back with parse.
+ * 
+ * @author Mike Sheliga 
+ */
+public final class ChangeCursor {
+
+	/** Cursor before the first change, used for a full first sync. */
+	public static final ChangeCursor START = new ChangeCursor(0L, 0);
+
+	private final long modStamp;
+	private final int id;
+
+	/**
+	 * @param modStamp  stamp of the last change read
+	 * @param id        id of the last record read with that stamp
+	 */
+	public ChangeCursor(long modStamp, int id) {
+		this.modStamp = modStamp;
+		this.id = id;
+	}
+
+	public long getModStamp() {return modStamp;}
+	public int getId() {return id;}
+
+	/**
+	 * Orders positions by stamp and then id.
+	 * 
+	 * @return true if modStamp and id come after this cursor
+	 */
+	public boolean isBefore(long modStamp, int id) {
+		return modStamp > this.modStamp || (modStamp == this.modStamp && id > this.id);
+	}
+
+	/**
+	 * Reads a cursor written by toString.
+	 * 
+	 * @param text  a cursor such as "1523887200000:42", or null or blank for START
+	 * @return the cursor
+	 */
+	public static ChangeCursor parse(String text) {
+		if (text == null || text.trim().isEmpty()) return START;
+		int colon = text.indexOf(':');
+		if (colon < 0) throw new IllegalArgumentException("Not a change cursor: " + text);
+		return new ChangeCursor(Long.parseLong(text.substring(0, colon).trim()), 
+			Integer.parseInt(text.substring(colon + 1).trim()));
+	} // end parse
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof ChangeCursor)) return false;
+		ChangeCursor cursor = (ChangeCursor) other;
+		return modStamp == cursor.modStamp && id == cursor.id;
+	}
+
+	@Override
+	public int hashCode() {return Long.hashCode(modStamp) * 31 + id;}
+
+	@Override
+	public String toString() {return modStamp + ":" + id;}
+
+} // end class ChangeCursor
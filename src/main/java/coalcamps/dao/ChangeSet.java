@@ -0,0 +1,46 @@
+package coalcamps.dao;
+
+import java.util.Collections;
+import java.util.List;
+
+import coalcamps.classes.BaseCCObject;
+
+/** 
+ * One batch of the change feed returned by BaseDAO.getModifiedSince: the records saved 
+ * or updated and the ids of the records deleted since a cursor, and the cursor to pass 
+ * to the next call.  A record changed several times since the cursor is returned once, 
+ * as it is now.
+ * 
+ * @author Mike Sheliga 
+ */
+public final class ChangeSet<T extends BaseCCObject> {
+
+	private final List<T> changed;
+	private final List<Integer> deletedIds;
+	private final ChangeCursor next;
+	private final boolean more;
+
+	public ChangeSet(List<T> changed, List<Integer> deletedIds, ChangeCursor next, boolean more) {
+		this.changed = Collections.unmodifiableList(changed);
+		this.deletedIds = Collections.unmodifiableList(deletedIds);
+		this.next = next;
+		this.more = more;
+	}
+
+	/** @return the records saved or updated, in change order */
+	public List<T> getChanged() {return changed;}
+	/** @return the ids of the deleted records, in change order */
+	public List<Integer> getDeletedIds() {return deletedIds;}
+	/** @return the cursor to pass to the next getModifiedSince call */
+	public ChangeCursor getNext() {return next;}
+	/** @return true if the limit was reached and more changes may be waiting */
+	public boolean hasMore() {return more;}
+	public boolean isEmpty() {return changed.isEmpty() && deletedIds.isEmpty();}
+
+	@Override
+	public String toString() {
+		return "ChangeSet: changed=" + changed.size() + " deleted=" + deletedIds + " next=" + next + 
+			(more ? " (more)" : "");
+	}
+
+} // end class ChangeSet
@@ -2,6 +2,9 @@ package coalcamps.dao;
 
 import java.util.*; 
 import coalcamps.classes.CoalCamp;
+import coalcamps.classes.NameSuggestion;
+import coalcamps.classes.CoalCampSummary;
+import coalcamps.classes.CoalCompany;
 
 /** 
  * Interface that must be implemented for a CoalCamp to 
@@ -21,9 +24,21 @@ public interface CoalCampDAO extends BaseDAO<CoalCamp> {
 	public List<CoalCamp> getCoalCamps();
 	public List<CoalCamp> getCoalCamps(boolean eager);		
 	public int getCoalCampCount( );	
+	// keyset paging on id. Pass afterId=0 for the first page, then the last id of each page.
+	public List<CoalCamp> getCoalCampPage(int afterId, int limit, SortOrder sort);
+	public List<CoalCamp> getCoalCampPage(int afterId, int limit, SortOrder sort, boolean eager);
+	// name searches ignore case, accents and extra spaces
+	public List<CoalCamp> searchByName(String name);
+	public List<CoalCamp> searchByNamePrefix(String prefix, int limit);
+	// typeahead ids and names, from memory when a name index is configured
+	public List<NameSuggestion> suggestNames(String prefix, int limit);
+	// id, name, year built and company name only, without loading any entities
+	public List<CoalCampSummary> getCoalCampSummaries();
+	public List<CoalCampSummary> getCoalCampSummaryPage(int afterId, int limit, SortOrder sort);
 
 	// public void updateCoalCamp(CoalCamp camp);
 
 	// public void deleteCoalCamp(CoalCamp camp);
+	public int reassignCoalCamps(CoalCompany fromCompany, CoalCompany toCompany);
 			
 } // end class CoalCampDAO
@@ -1,7 +1,8 @@
 package coalcamps.dao;
 
 import java.util.List;
-import coalcamps.classes.CoalCompany; 
+import coalcamps.classes.CoalCompany;
+import coalcamps.classes.NameSuggestion; 
 
 /** 
  * Interface that must be implemented for a CoalCompany 
@@ -20,6 +21,13 @@ public interface CoalCompanyDAO extends BaseDAO<CoalCompany> {
 	public List<CoalCompany> getCoalCompanies();
 	public List<CoalCompany> getCoalCompaniesWRONG();
 	public int getCoalCompanyCount( );	
+	// keyset paging on id. Pass afterId=0 for the first page, then the last id of each page.
+	public List<CoalCompany> getCoalCompanyPage(int afterId, int limit, SortOrder sort);
+	// name searches ignore case, accents and extra spaces
+	public List<CoalCompany> searchByName(String name);
+	public List<CoalCompany> searchByNamePrefix(String prefix, int limit);
+	// typeahead ids and names, from memory when a name index is configured
+	public List<NameSuggestion> suggestNames(String prefix, int limit);
 
 	// public void updateCoalCompany(CoalCompany e);
 
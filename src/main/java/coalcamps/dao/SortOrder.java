@@ -0,0 +1,11 @@
+package coalcamps.dao;
+
+/** 
+ * Sort direction on primary key id used by the keyset paged DAO routines, 
+ * such as getCoalCampPage.
+ * 
+ * @author Mike Sheliga 
+ */
+public enum SortOrder {
+	ASCENDING, DESCENDING;
+} // end enum SortOrder
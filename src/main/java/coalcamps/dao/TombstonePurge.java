@@ -0,0 +1,73 @@
+package coalcamps.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/** 
+ * Removes the change feed tombstones (DeletedRecord rows) older than retentionDays from 
+ * each DAO, every purgeIntervalHours.  Without it cc_deleted_record grows by one row per 
+ * record ever deleted.  A change feed consumer that has not read for longer than the 
+ * retention misses the deletes purged since, so it must start again from ChangeCursor.START.
+ * 
+ * @author Mike Sheliga 
+ */
+public class TombstonePurge implements InitializingBean, DisposableBean {
+
+	// ============ Instance variables and getter-setters ============
+	private List<BaseDAO<?>> daos = new ArrayList<>();
+	private int retentionDays = 30;
+	private int purgeIntervalHours = 24;
+	private ScheduledExecutorService purger;
+
+	public void setDaos(List<BaseDAO<?>> daos) {this.daos = new ArrayList<>(daos);}
+	public List<BaseDAO<?>> getDaos() {return daos;}
+
+	/** Days a tombstone is kept after the delete. */
+	public void setRetentionDays(int retentionDays) {this.retentionDays = retentionDays;}
+	public int getRetentionDays() {return retentionDays;}
+
+	/** Hours between purges, 0 for none. */
+	public void setPurgeIntervalHours(int hours) {this.purgeIntervalHours = hours;}
+	public int getPurgeIntervalHours() {return purgeIntervalHours;}
+
+	// ------ Bean lifecycle ------
+	@Override
+	public void afterPropertiesSet() {
+		if (retentionDays <= 0) throw new IllegalArgumentException("retentionDays must be positive: " + retentionDays);
+		if (purgeIntervalHours <= 0) return;
+		purger = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "tombstone-purge");
+			thread.setDaemon(true);
+			return thread;
+		});
+		purger.scheduleWithFixedDelay(this::purge, purgeIntervalHours, purgeIntervalHours, TimeUnit.HOURS);
+	} // end afterPropertiesSet
+
+	@Override
+	public void destroy() {
+		if (purger != null) purger.shutdownNow();
+	}
+
+	/**
+	 * Removes the tombstones older than retentionDays from every DAO now.
+	 * 
+	 * @return the number of tombstones removed, not counting DAOs whose purge failed
+	 */
+	public int purge() {
+		long before = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays);
+		int purged = 0;
+		for (BaseDAO<?> dao : daos) {
+			int count = dao.purgeTombstonesBefore(before);
+			if (count > 0) purged += count;
+		}
+		if (purged > 0) System.out.println("Purged " + purged + " change feed tombstones older than " + retentionDays + " days");
+		return purged;
+	} // end purge
+
+} // end class TombstonePurge
@@ -0,0 +1,65 @@
+package coalcamps.dao;
+
+import java.util.function.Supplier;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import coalcamps.monitor.StatementBudget;
+
+/** 
+ * Runs several DAO routines in one Session and one transaction.  While the work runs 
+ * the Session is bound to the current thread and each DAO routine joins it instead of 
+ * opening its own, so the work is committed once at the end.  If any routine fails 
+ * the whole unit of work is rolled back.
+ * <pre>
+ *   unitOfWork.run(() -&gt; { company.save(); camp.save(); lease.save(); });
+ * </pre>
+ * Units of work may be nested; an inner unit joins the outer one.
+ * 
+ * @author Mike Sheliga 
+ */
+public class UnitOfWork {
+
+	/**
+	 *  HibernateTransactionManager bean from applicationContext.xml.  Set via dependency injection.
+	 */
+	private PlatformTransactionManager transactionManager;
+
+	public void setTransactionManager(PlatformTransactionManager transactionManager) {
+		this.transactionManager = transactionManager;
+	}
+	public PlatformTransactionManager getTransactionManager() {return transactionManager;}
+
+	/**
+	 * Runs work in a single transaction and returns its result.
+	 * 
+	 * @param work  the DAO routines to run
+	 * @return the result of work, or null if the unit of work was rolled back.
+	 */
+	public <R> R execute(Supplier<R> work) {
+		R result = null;
+		StatementBudget.enterRequest("unit of work");
+		try {
+			result = new TransactionTemplate(transactionManager).execute(status -> work.get());
+		} catch (Exception ex) {
+			result = null;
+			System.out.println("Unit of work was rolled back. " + 
+				" ---- Exception Name ---- " + ex.toString() + " " + ex.getMessage() );
+		} finally {
+			StatementBudget.exitRequest();
+		} // end try-catch-finally
+		return result;
+	} // end execute
+
+	/**
+	 * Runs work in a single transaction.
+	 * 
+	 * @param work  the DAO routines to run
+	 * @return true if the work was committed, false if it was rolled back.
+	 */
+	public boolean run(Runnable work) {
+		return execute(() -> { work.run(); return Boolean.TRUE; }) != null;
+	} // end run
+	
+} // end class UnitOfWork
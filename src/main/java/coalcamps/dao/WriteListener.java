@@ -0,0 +1,24 @@
+package coalcamps.dao;
+
+import coalcamps.classes.BaseCCObject;
+
+/** 
+ * Notified by a DAO after records are written, so in-memory structures such as indexes 
+ * can be kept current.  Within a unit of work listeners are notified only once the unit 
+ * of work commits; they are never notified of rolled back writes.
+ * 
+ * @author Mike Sheliga 
+ */
+public interface WriteListener<T extends BaseCCObject> {
+
+	public void onSaved(T e);
+	
+	public void onUpdated(T e);
+	
+	public void onDeleted(T e);
+	
+	// set based routines (and saveAll) change records that were not loaded, so the 
+	// listener must reload whatever it needs
+	public void onBulkChange();
+	
+} // end interface WriteListener
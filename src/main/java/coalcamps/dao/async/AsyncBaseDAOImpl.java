@@ -0,0 +1,86 @@
+package coalcamps.dao.async;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import coalcamps.classes.BaseCCObject;
+import coalcamps.dao.AsyncBaseDAO;
+import coalcamps.dao.BaseDAO;
+import coalcamps.dao.ChangeCursor;
+import coalcamps.dao.ChangeSet;
+
+/** 
+ * Implements the asynchronous DAO routines common to all coal camp objects by running the
+ * matching routine of a synchronous DAO bean on a DaoExecutor.
+ * 
+ * @author Mike Sheliga
+ */
+public abstract class AsyncBaseDAOImpl<T extends BaseCCObject, D extends BaseDAO<T>> implements AsyncBaseDAO<T> {
+
+	// ============ Instance variables and getter-setters ============
+	/**
+	 *  DAO bean whose routines are run, and the executor that runs them.  Set via dependency injection.
+	 */
+	private D dao;
+	private DaoExecutor executor;
+
+	public void setDao(D dao) {this.dao = dao;}
+	public D getDao() {return dao;}
+	public void setExecutor(DaoExecutor executor) {this.executor = executor;}
+	public DaoExecutor getExecutor() {return executor;}
+
+	/**
+	 * Runs a routine of the DAO on the executor.
+	 * 
+	 * @param call  the routine, ie. dao -&gt; dao.getById(ID)
+	 * @return the future result of call
+	 */
+	protected <R> CompletableFuture<R> submit(Function<D, R> call) {
+		return executor.submit(() -> call.apply(dao));
+	}
+
+	// ------ Database routines (in CRUD order) ------
+	@Override
+	public CompletableFuture<Integer> save(T e) {return submit(dao -> dao.save(e));}
+
+	@Override
+	public CompletableFuture<List<Integer>> saveAll(Collection<T> e) {return submit(dao -> dao.saveAll(e));}
+
+	@Override
+	public CompletableFuture<T> getById(int ID) {return submit(dao -> dao.getById(ID));}
+
+	@Override
+	public CompletableFuture<Void> update(T e) {return submit(dao -> {dao.update(e); return null;});}
+
+	@Override
+	public CompletableFuture<Boolean> updateIfCurrent(T e) {return submit(dao -> dao.updateIfCurrent(e));}
+
+	@Override
+	public CompletableFuture<Void> delete(T e) {return submit(dao -> {dao.delete(e); return null;});}
+
+	// ------ Set based (bulk) routines ------
+	@Override
+	public CompletableFuture<Integer> updateWhere(String assignments, String condition, Map<String, Object> params) {
+		return submit(dao -> dao.updateWhere(assignments, condition, params));
+	}
+
+	@Override
+	public CompletableFuture<Integer> deleteWhere(String condition, Map<String, Object> params) {
+		return submit(dao -> dao.deleteWhere(condition, params));
+	}
+
+	// ------ Change feed ------
+	@Override
+	public CompletableFuture<ChangeSet<T>> getModifiedSince(ChangeCursor cursor, int limit) {
+		return submit(dao -> dao.getModifiedSince(cursor, limit));
+	}
+
+	@Override
+	public CompletableFuture<Integer> purgeTombstonesBefore(long modStamp) {
+		return submit(dao -> dao.purgeTombstonesBefore(modStamp));
+	}
+
+} // end class AsyncBaseDAOImpl
@@ -0,0 +1,55 @@
+package coalcamps.dao.async;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import coalcamps.classes.CampLease;
+import coalcamps.classes.CampLeaseSummary;
+import coalcamps.classes.LeaseOccupancy;
+import coalcamps.dao.AsyncCampLeaseDAO;
+import coalcamps.dao.CampLeaseDAO;
+import coalcamps.dao.SortOrder;
+
+/** 
+ * Runs the CampLeaseDAO routines on a DaoExecutor.
+ * 
+ * @author Mike Sheliga
+ */
+public class AsyncCampLeaseDAOImpl extends AsyncBaseDAOImpl<CampLease, CampLeaseDAO> implements AsyncCampLeaseDAO {
+
+	@Override
+	public CompletableFuture<List<CampLease>> getCampLeases() {return submit(dao -> dao.getCampLeases());}
+
+	@Override
+	public CompletableFuture<List<CampLease>> getCampLeases(boolean eager) {return submit(dao -> dao.getCampLeases(eager));}
+
+	@Override
+	public CompletableFuture<Integer> getCampLeaseCount() {return submit(dao -> dao.getCampLeaseCount());}
+
+	@Override
+	public CompletableFuture<List<CampLease>> getCampLeasePage(int afterId, int limit, SortOrder sort, boolean eager) {
+		return submit(dao -> dao.getCampLeasePage(afterId, limit, sort, eager));
+	}
+
+	@Override
+	public CompletableFuture<List<CampLeaseSummary>> getCampLeaseSummaries() {return submit(dao -> dao.getCampLeaseSummaries());}
+
+	@Override
+	public CompletableFuture<List<CampLeaseSummary>> getCampLeaseSummaryPage(int afterId, int limit, SortOrder sort) {
+		return submit(dao -> dao.getCampLeaseSummaryPage(afterId, limit, sort));
+	}
+
+	@Override
+	public CompletableFuture<Integer> deleteLeasesEndingBefore(int year) {return submit(dao -> dao.deleteLeasesEndingBefore(year));}
+
+	@Override
+	public CompletableFuture<List<LeaseOccupancy>> getLeasesInYear(int campId, int year) {
+		return submit(dao -> dao.getLeasesInYear(campId, year));
+	}
+
+	@Override
+	public CompletableFuture<List<LeaseOccupancy>> getLeasesOverlapping(int campId, int fromYear, int toYear) {
+		return submit(dao -> dao.getLeasesOverlapping(campId, fromYear, toYear));
+	}
+
+} // end class AsyncCampLeaseDAOImpl
@@ -0,0 +1,61 @@
+package coalcamps.dao.async;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import coalcamps.classes.CoalCamp;
+import coalcamps.classes.CoalCampSummary;
+import coalcamps.classes.CoalCompany;
+import coalcamps.classes.NameSuggestion;
+import coalcamps.dao.AsyncCoalCampDAO;
+import coalcamps.dao.CoalCampDAO;
+import coalcamps.dao.SortOrder;
+
+/** 
+ * Runs the CoalCampDAO routines on a DaoExecutor.
+ * 
+ * @author Mike Sheliga
+ */
+public class AsyncCoalCampDAOImpl extends AsyncBaseDAOImpl<CoalCamp, CoalCampDAO> implements AsyncCoalCampDAO {
+
+	@Override
+	public CompletableFuture<List<CoalCamp>> getCoalCamps() {return submit(dao -> dao.getCoalCamps());}
+
+	@Override
+	public CompletableFuture<List<CoalCamp>> getCoalCamps(boolean eager) {return submit(dao -> dao.getCoalCamps(eager));}
+
+	@Override
+	public CompletableFuture<Integer> getCoalCampCount() {return submit(dao -> dao.getCoalCampCount());}
+
+	@Override
+	public CompletableFuture<List<CoalCamp>> getCoalCampPage(int afterId, int limit, SortOrder sort, boolean eager) {
+		return submit(dao -> dao.getCoalCampPage(afterId, limit, sort, eager));
+	}
+
+	@Override
+	public CompletableFuture<List<CoalCamp>> searchByName(String name) {return submit(dao -> dao.searchByName(name));}
+
+	@Override
+	public CompletableFuture<List<CoalCamp>> searchByNamePrefix(String prefix, int limit) {
+		return submit(dao -> dao.searchByNamePrefix(prefix, limit));
+	}
+
+	@Override
+	public CompletableFuture<List<NameSuggestion>> suggestNames(String prefix, int limit) {
+		return submit(dao -> dao.suggestNames(prefix, limit));
+	}
+
+	@Override
+	public CompletableFuture<List<CoalCampSummary>> getCoalCampSummaries() {return submit(dao -> dao.getCoalCampSummaries());}
+
+	@Override
+	public CompletableFuture<List<CoalCampSummary>> getCoalCampSummaryPage(int afterId, int limit, SortOrder sort) {
+		return submit(dao -> dao.getCoalCampSummaryPage(afterId, limit, sort));
+	}
+
+	@Override
+	public CompletableFuture<Integer> reassignCoalCamps(CoalCompany fromCompany, CoalCompany toCompany) {
+		return submit(dao -> dao.reassignCoalCamps(fromCompany, toCompany));
+	}
+
+} // end class AsyncCoalCampDAOImpl
@@ -0,0 +1,43 @@
+package coalcamps.dao.async;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import coalcamps.classes.CoalCompany;
+import coalcamps.classes.NameSuggestion;
+import coalcamps.dao.AsyncCoalCompanyDAO;
+import coalcamps.dao.CoalCompanyDAO;
+import coalcamps.dao.SortOrder;
+
+/** 
+ * Runs the CoalCompanyDAO routines on a DaoExecutor.
+ * 
+ * @author Mike Sheliga
+ */
+public class AsyncCoalCompanyDAOImpl extends AsyncBaseDAOImpl<CoalCompany, CoalCompanyDAO> implements AsyncCoalCompanyDAO {
+
+	@Override
+	public CompletableFuture<List<CoalCompany>> getCoalCompanies() {return submit(dao -> dao.getCoalCompanies());}
+
+	@Override
+	public CompletableFuture<Integer> getCoalCompanyCount() {return submit(dao -> dao.getCoalCompanyCount());}
+
+	@Override
+	public CompletableFuture<List<CoalCompany>> getCoalCompanyPage(int afterId, int limit, SortOrder sort) {
+		return submit(dao -> dao.getCoalCompanyPage(afterId, limit, sort));
+	}
+
+	@Override
+	public CompletableFuture<List<CoalCompany>> searchByName(String name) {return submit(dao -> dao.searchByName(name));}
+
+	@Override
+	public CompletableFuture<List<CoalCompany>> searchByNamePrefix(String prefix, int limit) {
+		return submit(dao -> dao.searchByNamePrefix(prefix, limit));
+	}
+
+	@Override
+	public CompletableFuture<List<NameSuggestion>> suggestNames(String prefix, int limit) {
+		return submit(dao -> dao.suggestNames(prefix, limit));
+	}
+
+} // end class AsyncCoalCompanyDAOImpl
@@ -0,0 +1,146 @@
+package coalcamps.dao.async;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import coalcamps.routing.ReadRouting;
+
+/**
+ * Runs DAO routines on a fixed number of threads and returns their results as
+ * CompletableFutures, so independent queries run at the same time.  Each running routine
+ * holds a pooled connection, so threads is set to the pool size (db.pool.maxSize); more
+ * threads would only wait for connections.  Calls beyond the threads wait in a bounded
+ * queue, and calls beyond that fail at once with a RejectedExecutionException instead of
+ * piling up.
+ * <p>
+ * A call not finished within its timeout completes with a TimeoutException.  A call
+ * still in the queue then never runs; one already running finishes in the background and
+ * returns its connection.  Calls see the caller's recent writes (see ReadRouting) but do
+ * not join the caller's unit of work, since they run on another thread.
+ *
+ * @author Mike Sheliga
+ */
+public class DaoExecutor implements InitializingBean, DisposableBean {
+
+	// ============ Instance variables and getter-setters ============
+	private int threads = 10;
+	private int queueCapacity = 100;
+	private long timeoutMillis = 30000;
+
+	private ThreadPoolExecutor executor;
+	private ScheduledExecutorService timer;
+	private final LongAdder timeoutCount = new LongAdder();
+	private final LongAdder rejectedCount = new LongAdder();
+
+	/** Threads running DAO routines, normally the connection pool size. */
+	public void setThreads(int threads) {this.threads = threads;}
+	public int getThreads() {return threads;}
+	/** Calls waiting for a thread.  Calls beyond this are rejected. */
+	public void setQueueCapacity(int queueCapacity) {this.queueCapacity = queueCapacity;}
+	public int getQueueCapacity() {return queueCapacity;}
+	/** Default time a call may wait and run, 0 for none. */
+	public void setTimeoutMillis(long timeoutMillis) {this.timeoutMillis = timeoutMillis;}
+	public long getTimeoutMillis() {return timeoutMillis;}
+
+	// ------ Bean lifecycle ------
+	@Override
+	public void afterPropertiesSet() {
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<>(queueCapacity), daemonThreads("dao-async-"));
+		executor.allowCoreThreadTimeOut(true);
+		timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("dao-async-timeout-"));
+	} // end afterPropertiesSet
+
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+		timer.shutdownNow();
+	}
+
+	private static ThreadFactory daemonThreads(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread thread = new Thread(r, prefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	} // end daemonThreads
+
+	// ------ Submitting calls ------
+	/**
+	 * Runs a DAO routine on one of the threads, with the default timeout.
+	 *
+	 * @param call  the routine, ie. () -&gt; campDao.getCoalCamps(true)
+	 * @return a future completed with the result of call, or exceptionally if call threw,
+	 *         took longer than timeoutMillis or the queue was full
+	 */
+	public <R> CompletableFuture<R> submit(Supplier<R> call) {
+		return submit(call, timeoutMillis);
+	}
+
+	/**
+	 * Runs a DAO routine on one of the threads.
+	 *
+	 * @param call           the routine
+	 * @param timeoutMillis  time the call may wait and run before its future times out, 0 for none
+	 * @return a future completed with the result of call, or exceptionally if call threw,
+	 *         timed out or the queue was full
+	 */
+	public <R> CompletableFuture<R> submit(Supplier<R> call, long timeoutMillis) {
+		CompletableFuture<R> result = new CompletableFuture<>();
+		ReadRouting.Snapshot routing = ReadRouting.capture();
+		Future<?> task;
+		try {
+			task = executor.submit(() -> {
+				try {
+					result.complete(ReadRouting.runAs(routing, call));
+				} catch (Throwable ex) {
+					result.completeExceptionally(ex);
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			rejectedCount.increment();
+			result.completeExceptionally(ex);
+			return result;
+		} // end try-catch
+		if (timeoutMillis > 0) {
+			ScheduledFuture<?> timeout = timer.schedule(() -> {
+				if (result.completeExceptionally(new TimeoutException("DAO call did not finish within " + timeoutMillis + "ms"))) {
+					timeoutCount.increment();
+					if (task.cancel(false)) executor.remove((Runnable) task);  // frees its place in the queue
+				}
+			}, timeoutMillis, TimeUnit.MILLISECONDS);
+			result.whenComplete((r, ex) -> timeout.cancel(false));
+		}
+		return result;
+	} // end submit
+
+	// ------ Statistics ------
+	public int getActiveCount() {return executor.getActiveCount();}
+	public int getQueuedCount() {return executor.getQueue().size();}
+	public long getCompletedCount() {return executor.getCompletedTaskCount();}
+	public long getTimeoutCount() {return timeoutCount.sum();}
+	public long getRejectedCount() {return rejectedCount.sum();}
+
+	@Override
+	public String toString() {
+		return String.format("Async DAO calls: threads=%d active=%d queued=%d completed=%d timeouts=%d rejected=%d",
+			threads, getActiveCount(), getQueuedCount(), getCompletedCount(), getTimeoutCount(), getRejectedCount());
+	}
+
+} // end class DaoExecutor
@@ -1,14 +1,41 @@
 package coalcamps.dao.hibernateImpls;
 
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.hibernate5.SessionHolder;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import coalcamps.classes.BaseCCObject;
+import coalcamps.classes.DeletedRecord;
+import coalcamps.classes.ModStamp;
 import coalcamps.dao.BaseDAO;
+import coalcamps.dao.ChangeCursor;
+import coalcamps.dao.ChangeSet;
+import coalcamps.dao.SortOrder;
+import coalcamps.dao.WriteListener;
+import coalcamps.monitor.DaoMetrics;
+import coalcamps.monitor.StatementBudget;
+import coalcamps.routing.ReadRouting;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.persistence.TypedQuery;
 
 /** 
  * Implements common coal camp database access interface using hibernate.
@@ -21,6 +48,9 @@ import java.time.ZonedDateTime;
  */
 public abstract class BaseDAOImpl<T extends BaseCCObject> implements BaseDAO<T> { 
 	
+	// replaced in the tombstone INSERT of deleteWhere by the stamp of the transaction
+	private static final String TOMBSTONE_STAMP = ":tombstoneStamp";
+
 	// ============ Instance variables and getter-setters ============		
 	/*
 	 *  This is the bean from the applicationContext xml file. Set using Dependency Injection.
@@ -51,6 +81,64 @@ public abstract class BaseDAOImpl<T extends BaseCCObject> implements BaseDAO<T>
 	}  
 	*/
 
+	/**
+	 *  Number of records saved between each flush and clear in saveAll. Should match 
+	 *  hibernate.jdbc.batch_size so that each flush sends one JDBC batch per table.
+	 */
+	private int batchSize = 50;
+
+	/**
+	 * Set the bulk save batch size.  Values less than one are ignored.
+	 * 
+	 * @param batchSize  the number of records to save between each flush and clear.
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize > 0) this.batchSize = batchSize;
+	}
+
+	/**
+	 * Return the bulk save batch size.
+	 * 
+	 * @return the number of records saved between each flush and clear.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 *  JDBC fetch size used by streamAll. Integer.MIN_VALUE makes MySQL Connector/J stream 
+	 *  rows one at a time from the server instead of reading the whole result into memory.
+	 *  Other databases need a positive value such as 1000.
+	 */
+	private int streamFetchSize = Integer.MIN_VALUE;
+
+	public void setStreamFetchSize(int streamFetchSize) {this.streamFetchSize = streamFetchSize;}
+	public int getStreamFetchSize() {return streamFetchSize;}
+
+	/**
+	 *  getModifiedSince only returns changes with a stamp at least this old, so a transaction 
+	 *  that took its stamp before a later one committed is not skipped.  Records are stamped 
+	 *  just before their transaction commits (see ModStamp), so this need only cover the time 
+	 *  from that stamp to the commit, and the clock difference between servers.  A commit 
+	 *  delayed longer than this, ie. by a lock wait, can still be missed.
+	 */
+	private long changeFeedSettleMillis = 2000;
+
+	public void setChangeFeedSettleMillis(long millis) {
+		if (millis < 0) throw new IllegalArgumentException("changeFeedSettleMillis must not be negative: " + millis);
+		this.changeFeedSettleMillis = millis;
+	}
+	public long getChangeFeedSettleMillis() {return changeFeedSettleMillis;}
+
+	/**
+	 *  Notified after records are written, such as indexes kept in memory.
+	 */
+	private final List<WriteListener<T>> writeListeners = new CopyOnWriteArrayList<>();
+
+	public void addWriteListener(WriteListener<T> listener) {writeListeners.add(listener);}
+	public void setWriteListeners(List<WriteListener<T>> listeners) {writeListeners.addAll(listeners);}  // adds
+	public List<WriteListener<T>> getWriteListeners() {return writeListeners;}
+
 	// ------ Abstract Methods ------
 	/**
 	 *  Returns the parameterized type of the derivedDAO such as Class-CoalCompany for CoalCompanyDAOImpl
@@ -60,32 +148,277 @@ public abstract class BaseDAOImpl<T extends BaseCCObject> implements BaseDAO<T>
 	public abstract Class<T> getParameterizedClass();
 	public abstract SessionFactory getSessionFactory();
 	
+	// ------ Session and transaction handling ------
+	/**
+	 * Returns the session of the current unit of work if there is one, otherwise opens a 
+	 * new session.  Routines must release the session with closeSession.  A new session 
+	 * starts a request, whose statements are counted by StatementBudget.
+	 * 
+	 * @return the Session a routine should use.
+	 */
+	protected Session openSession() {
+		if (getSessionHolder() != null) {
+			return getSessionFactory().getCurrentSession();  // bound by HibernateTransactionManager
+		}
+		Session session = getSessionFactory().openSession();
+		StatementBudget.enterRequest(getClass().getSimpleName());
+		return session;
+	} // end openSession
+
+	/**
+	 * Opens a session for a read only routine.  Its connection comes from a replica when 
+	 * the dataSource is a ReadWriteRoutingDataSource, and objects it loads are read-only, 
+	 * so no dirty checking snapshots are kept.  Inside a unit of work the unit's session 
+	 * is returned so the routine reads the unit's own writes.  Routines must release the 
+	 * session with closeReadSession.
+	 * 
+	 * @return the Session a read only routine should use.
+	 */
+	protected Session openReadSession() {
+		if (getSessionHolder() != null) return openSession();
+		ReadRouting.enterRead();
+		try {
+			Session session = getSessionFactory().openSession();
+			session.setDefaultReadOnly(true);
+			StatementBudget.enterRequest(getClass().getSimpleName());
+			return session;
+		} catch (RuntimeException ex) {
+			ReadRouting.exitRead();
+			throw ex;
+		} // end try-catch
+	} // end openReadSession
+
+	/**
+	 * Closes a session returned by openReadSession.
+	 * 
+	 * @param session  a session returned by openReadSession
+	 */
+	protected void closeReadSession(Session session) {
+		if (isJoined(session)) return;
+		ReadRouting.exitRead();
+		try {
+			session.close();
+		} finally {
+			StatementBudget.exitRequest();
+		} // end try-finally
+	} // end closeReadSession
+
+	/**
+	 * Begins a transaction on session.  If session belongs to a unit of work its transaction 
+	 * is already active, so a JoinedTransaction is returned whose commit only flushes and 
+	 * whose rollback marks the unit of work for rollback.  Either way the records written 
+	 * get the pending stamp of the session's transaction, replaced when it commits (see ModStamp).
+	 * 
+	 * @param session  a session returned by openSession
+	 * @return the Transaction a routine should commit or roll back.
+	 */
+	protected Transaction beginTransaction(Session session) {
+		SessionHolder holder = getSessionHolder();
+		Transaction tx;
+		if (holder != null && holder.getSession() == session) {
+			tx = new JoinedTransaction(session, holder);
+		} else {
+			tx = session.beginTransaction();
+		}
+		stampAtCommit(session);
+		return tx;
+	} // end beginTransaction
+
+	/**
+	 * Registers a CommitStamper with the session's transaction, unless one already is.
+	 */
+	private static void stampAtCommit(Session session) {
+		Transaction tx = session.getTransaction();
+		if (!ModStamp.beginPendingWrites(tx)) return;
+		try {
+			tx.registerSynchronization(new CommitStamper(session, tx));
+		} catch (RuntimeException ex) {
+			ModStamp.endPendingWrites(tx);
+			throw ex;
+		}
+	} // end stampAtCommit
+
+	/**
+	 * Closes session unless it belongs to a unit of work, which closes it when it ends.
+	 * 
+	 * @param session  a session returned by openSession
+	 */
+	protected void closeSession(Session session) {
+		if (isJoined(session)) return;
+		try {
+			session.close();
+		} finally {
+			StatementBudget.exitRequest();
+		} // end try-finally
+	} // end closeSession
+
+	/**
+	 * Returns true if session belongs to the unit of work of the current thread.
+	 * 
+	 * @param session  a session returned by openSession
+	 * @return true if session is the unit of work's session.
+	 */
+	protected boolean isJoined(Session session) {
+		SessionHolder holder = getSessionHolder();
+		return holder != null && holder.getSession() == session;
+	} // end isJoined
+
+	private SessionHolder getSessionHolder() {
+		return (SessionHolder) TransactionSynchronizationManager.getResource(getSessionFactory());
+	}
+	
+	/**
+	 * Passes a write to every WriteListener.  Inside a unit of work listeners are only 
+	 * notified once it commits, so they never see writes that are rolled back.  A failing 
+	 * listener does not affect the write or the other listeners.
+	 * 
+	 * @param event  the listener routine to call, such as l -&gt; l.onSaved(ccObj)
+	 */
+	protected void notifyWriteListeners(Consumer<WriteListener<T>> event) {
+		if (writeListeners.isEmpty()) return;
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {fireWriteListeners(event);}
+			});
+		} else {
+			fireWriteListeners(event);
+		}
+	} // end notifyWriteListeners
+
+	/**
+	 * Passes onBulkChange to every WriteListener, for records written without this DAO such 
+	 * as by the CsvBulkLoader.  Call it after those records are committed.
+	 */
+	public void notifyBulkChange() {
+		notifyWriteListeners(l -> l.onBulkChange());
+	} // end notifyBulkChange
+
+	private void fireWriteListeners(Consumer<WriteListener<T>> event) {
+		for (WriteListener<T> listener : writeListeners) {
+			try {
+				event.accept(listener);
+			} catch (Exception ex) {
+				System.out.println("Write listener " + listener + " failed. " + 
+					" ---- Exception Name ---- " + ex.toString() + " " + ex.getMessage() );
+			} // end try-catch
+		} // end for
+	} // end fireWriteListeners
+	
+	/**
+	 * Called by save and updateIfCurrent inside their transaction, before ccObj is written, 
+	 * so a subclass can check it against the database and refuse the write.  Rows locked 
+	 * here stay locked until the transaction, or the unit of work it joined, ends.
+	 * 
+	 * @param session  the session the write will use
+	 * @param ccObj    the object about to be saved or updated
+	 * @return true to write ccObj, false to refuse it.  The default allows every write.
+	 */
+	protected boolean isWriteAllowed(Session session, T ccObj) {
+		return true;
+	} // end isWriteAllowed
+
+	/**
+	 * Ends the transaction of a write refused by isWriteAllowed.  A unit of work it 
+	 * joined carries on without the write instead of being marked for rollback.
+	 */
+	private void endRefusedWrite(Session session, Transaction tx) {
+		if (isJoined(session)) tx.commit();  // only flushes
+		else tx.rollback();
+	} // end endRefusedWrite
+	
 	// ------ Hibernate Database Methods ------
 	/**
 	 * Save a database record to the coal camp database using save (not persist).
 	 * 
 	 * @param ccObj  a coal camp object that is to be saved in the hibernate database
-	 * @return   an int representing the primary key of the saved object.
+	 * @return   an int representing the primary key of the saved object, or 0 if it 
+	 *           was not saved.
 	 */	
 	public int save(T ccObj) {
 		int result = 0;
 		Session session = null;
 		Transaction tx = null;
 		try {
-			session = getSessionFactory().openSession();
-			tx = session.beginTransaction();
+			session = openSession();
+			tx = beginTransaction(session);
+			if (!isWriteAllowed(session, ccObj)) {
+				endRefusedWrite(session, tx);
+				return 0;
+			}
 			result = (Integer) session.save(ccObj);
 			tx.commit();
+			notifyWriteListeners(l -> l.onSaved(ccObj));
 		} catch (Exception ex) {
+			DaoMetrics.markFailure();
 			if (tx != null) tx.rollback();
 			System.out.println("Could not generically save " + ccObj + 
 					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
 		} finally {
-			if (session != null) session.close();
+			if (session != null) closeSession(session);
 		} // end try-catch-finally
 		return result;
 	} // end save
 	
+	/**
+	 * Save a collection of records using a single session and transaction. 
+	 * 
+	 * @param ccObjs  the coal camp objects that are to be saved in the hibernate database
+	 * @return   a List of the generated primary keys in the same order as ccObjs, or an 
+	 *           empty list if the save failed and was rolled back.
+	 */
+	public List<Integer> saveAll(Collection<T> ccObjs) {
+		return saveAll(ccObjs.stream());
+	} // end saveAll(Collection)
+
+	/**
+	 * Save a stream of records using a single session and transaction.  The session is 
+	 * flushed and cleared every batchSize records so inserts are sent as JDBC batches and 
+	 * the persistence context does not grow with the number of records saved.  
+	 * Inside a unit of work the session is only flushed, since clearing it would 
+	 * detach the other objects of the unit of work.
+	 * 
+	 * @param ccObjs  the coal camp objects that are to be saved in the hibernate database
+	 * @return   a List of the generated primary keys in encounter order, or an empty 
+	 *           list if the save failed and was rolled back.
+	 */
+	public List<Integer> saveAll(Stream<T> ccObjs) {
+		List<Integer> result = new ArrayList<>();
+		Session session = null;
+		Transaction tx = null;
+		Integer sessionBatchSize = null;
+		int count = 0;
+		try {
+			session = openSession();
+			sessionBatchSize = session.getJdbcBatchSize();  // a joined unit of work session keeps its own
+			session.setJdbcBatchSize(batchSize);
+			tx = beginTransaction(session);
+			Iterator<T> it = ccObjs.iterator();
+			while (it.hasNext()) {
+				result.add((Integer) session.save(it.next()));
+				if (++count % batchSize == 0) {
+					session.flush();  // executes the JDBC batch
+					if (!isJoined(session)) session.clear();  // release saved objects from the first level cache
+				}
+			} // end while
+			tx.commit();
+			notifyWriteListeners(l -> l.onBulkChange());  // records may be cleared, so not passed one by one
+		} catch (Exception ex) {
+			DaoMetrics.markFailure();
+			if (tx != null) tx.rollback();
+			result.clear();
+			System.out.println("Could not generically save all. Failed after " + count + " records " + 
+					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
+		} finally {
+			if (session != null) {
+				session.setJdbcBatchSize(sessionBatchSize);
+				closeSession(session);
+			}
+			ccObjs.close();
+		} // end try-catch-finally
+		return result;
+	} // end saveAll(Stream)
+	
 	/** 
 	 * Returns an object extending BaseCCObject based upon primary key ID and the class type 
 	 * 
@@ -102,47 +435,340 @@ public abstract class BaseDAOImpl<T extends BaseCCObject> implements BaseDAO<T>
 			// "this", but this is of type CoalCompanyDAOImpl MJS 4.12.18	
 			// According to stackOverflow public class Foo<T extends Bar>{} will let you get Bar, 
 			// but not at the subtype of Bar you are actually using. It doesn't work, sorry.
-			session = getSessionFactory().openSession();
-			tx = session.beginTransaction();
+			session = openReadSession();
+			tx = beginTransaction(session);
 			result = (T) session.get(objectClass, ID);
 		} catch (Exception ex) {
+			DaoMetrics.markFailure();
 			if (tx != null) tx.rollback();
 			System.out.println(objectClass.getSimpleName() + "Could not be retrieved by ID(" + ID + 
 				"). Maybe it does not exist? " + " ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
 		} finally {
-			if (session != null) session.close();
+			if (session != null) closeReadSession(session);
 		}
 		return result;
 	} // end getById
 	
 	/**
-	 * Updates a database record for the coal camp database.
+	 * Returns every record as a Stream backed by a forward only database cursor.  Records 
+	 * are read as the stream is consumed and the session is cleared every batchSize 
+	 * records, so memory use does not grow with the size of the table.  Records are 
+	 * loaded read-only, bypass the second level cache and are read from a replica if 
+	 * one is configured.
+	 * <p>
+	 * The stream holds an open session and connection until it is closed, so it must be 
+	 * used in a try with resources block.  Records are detached once the session is 
+	 * cleared so lazy foreign keys should not be accessed, and no other query may use 
+	 * the connection while a MySQL streaming result is open.
+	 * 
+	 * @return a Stream of all records in primary key order, or an empty Stream if the 
+	 *         query could not be started.
+	 */
+	public Stream<T> streamAll() {
+		Session session = null;
+		Transaction tx = null;
+		Class<T> objectClass = this.getParameterizedClass();
+		try {
+			ReadRouting.enterRead();  // only while the connection is taken, not while the stream is read
+			try {
+				session = getSessionFactory().openSession();
+				session.setDefaultReadOnly(true);  // no dirty checking snapshots
+				session.setCacheMode(CacheMode.IGNORE);
+				tx = session.beginTransaction();
+			} finally {
+				ReadRouting.exitRead();
+			} // end try-finally
+			ScrollableResults results = session.createQuery("FROM " + objectClass.getSimpleName() + 
+					" e ORDER BY e.id", objectClass)
+				.setFetchSize(streamFetchSize)
+				.setReadOnly(true)
+				.scroll(ScrollMode.FORWARD_ONLY);
+			final Session streamSession = session;
+			final Transaction streamTx = tx;
+			Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, 
+					Spliterator.ORDERED | Spliterator.NONNULL) {
+				private long count = 0;
+				@Override
+				public boolean tryAdvance(Consumer<? super T> action) {
+					if (!results.next()) return false;
+					action.accept(objectClass.cast(results.get(0)));
+					if (++count % batchSize == 0) streamSession.clear();
+					return true;
+				}
+			}; // end spliterator
+			return StreamSupport.stream(rows, false).onClose(() -> {
+				try {
+					results.close();
+					if (streamTx.isActive()) streamTx.commit();
+				} catch (Exception ex) {
+					System.out.println("Could not close stream of " + objectClass.getSimpleName() + 
+						" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
+				} finally {
+					streamSession.close();
+				}
+			}); // end onClose
+		} catch (Exception ex) {
+			DaoMetrics.markFailure();
+			if (tx != null) tx.rollback();
+			if (session != null) session.close();
+			System.out.println("Could not stream " + objectClass.getSimpleName() + 
+				" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
+			return Stream.empty();
+		} // end try-catch
+	} // end streamAll
+	
+	/**
+	 * Returns one page of records using keyset (seek) paging on the primary key. Rather 
+	 * than skipping rows with an OFFSET, the query starts directly after afterId using 
+	 * the primary key index, so a deep page costs the same as the first page.
+	 * 
+	 * @param selectFrom  the hql select and from clauses, such as "SELECT camp FROM CoalCamp camp". 
+	 *                    May include join fetches but not a where clause.
+	 * @param alias       the alias of the paged entity in selectFrom, such as "camp"
+	 * @param afterId     the last id of the previous page, or 0 (or less) for the first page
+	 * @param limit       the maximum number of records to return
+	 * @param sort        the order of ids within and between pages
+	 * @return a List of at most limit records, empty after the last page or null if an error occurred.
+	 */
+	protected List<T> getPage(String selectFrom, String alias, int afterId, int limit, SortOrder sort) {
+		return getPage(selectFrom, alias, getParameterizedClass(), afterId, limit, sort);
+	} // end getPage
+
+	/**
+	 * Returns one page of query results, such as "SELECT new" summaries, using keyset paging 
+	 * on the primary key of the entity with the given alias.  
+	 * 
+	 * @param selectFrom   the hql select and from clauses, such as 
+	 *                     "SELECT new coalcamps.classes.CoalCampSummary(camp.id, ...) FROM CoalCamp camp JOIN ..."
+	 * @param alias        the alias of the paged entity in selectFrom, such as "camp"
+	 * @param resultClass  the class of each result, such as CoalCampSummary
+	 * @param afterId      the last id of the previous page, or 0 (or less) for the first page
+	 * @param limit        the maximum number of results to return, or 0 (or less) for all of them
+	 * @param sort         the order of ids within and between pages
+	 * @return a List of at most limit results, empty after the last page or null if an error occurred.
+	 */
+	protected <R> List<R> getPage(String selectFrom, String alias, Class<R> resultClass, 
+			int afterId, int limit, SortOrder sort) {
+		Session session = null;
+		Transaction tx = null;
+		List<R> list = null;
+		boolean ascending = (sort != SortOrder.DESCENDING);
+		String hql = selectFrom + " WHERE " + alias + ".id " + (ascending ? ">" : "<") + " :afterId" + 
+			" ORDER BY " + alias + ".id " + (ascending ? "ASC" : "DESC");
+		if (!ascending && afterId <= 0) afterId = Integer.MAX_VALUE;
+		try {
+			session = openReadSession();
+			tx = beginTransaction(session);
+			TypedQuery<R> query = session.createQuery(hql, resultClass);
+			query.setParameter("afterId", afterId);
+			if (limit > 0) query.setMaxResults(limit);
+			list = query.getResultList();
+			tx.commit();
+		} catch (Exception ex) {
+			DaoMetrics.markFailure();
+			if (tx != null) tx.rollback();
+			System.out.println("Could not get page of " + resultClass.getSimpleName() + 
+				" after id " + afterId + " ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
+		} finally {
+			if (session != null) closeReadSession(session);
+		} // end try-catch-finally
+		return list;
+	} // end getPage(resultClass)
+	
+	/**
+	 * Returns the records whose normalized name key equals, or starts with, the normalized 
+	 * name.  Keys are stored in an indexed column, so a prefix search is an index range scan 
+	 * rather than the table scan of a LIKE '%x%'.
+	 * 
+	 * @param keyProperty  the name key property, such as "campNameKey"
+	 * @param name         the name, or start of the name, as typed
+	 * @param prefix       true to match keys starting with name, false for equal keys
+	 * @param limit        the maximum number of records to return, or 0 (or less) for all of them
+	 * @return matching records in name order, or null if an error occurred.
+	 */
+	protected List<T> searchByKey(String keyProperty, String name, boolean prefix, int limit) {
+		Session session = null;
+		Transaction tx = null;
+		List<T> list = null;
+		String key = BaseCCObject.normalizeName(name);
+		if (key == null) return new ArrayList<>();
+		String hql = "FROM " + getParameterizedClass().getSimpleName() + " e WHERE e." + keyProperty + 
+			(prefix ? " LIKE :key ESCAPE '!'" : " = :key") + " ORDER BY e." + keyProperty + ", e.id";
+		try {
+			session = openReadSession();
+			tx = beginTransaction(session);
+			TypedQuery<T> query = session.createQuery(hql, getParameterizedClass());
+			query.setParameter("key", prefix ? key.replaceAll("([!%_])", "!$1") + "%" : key);
+			if (limit > 0) query.setMaxResults(limit);
+			list = query.getResultList();
+			tx.commit();
+		} catch (Exception ex) {
+			DaoMetrics.markFailure();
+			if (tx != null) tx.rollback();
+			System.out.println("Could not search " + getParameterizedClass().getSimpleName() + " for " + name + 
+				" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
+		} finally {
+			if (session != null) closeReadSession(session);
+		} // end try-catch-finally
+		return list;
+	} // end searchByKey
+
+	/**
+	 * Returns the records saved or updated, and the ids of the records deleted, after cursor. 
+	 * Both are read with an index range scan on (modStamp, id), so a consumer that keeps the 
+	 * returned cursor reads only what changed since its last call.  Changes are read from the 
+	 * primary, as a lagging replica could hide a change the cursor has already passed.
+	 * <p>
+	 * Stamps are taken just before the writing transaction commits, from the clock of the 
+	 * server that wrote the record, not from the database.  A change is only certain to be 
+	 * returned if it commits within changeFeedSettleMillis of its stamp and, with several 
+	 * servers, their clocks differ by less than that (see ModStamp).
+	 * <p>
+	 * Tombstones of deleted records are kept until purgeTombstonesBefore removes them.  A 
+	 * consumer whose cursor is older than the purge must start again from ChangeCursor.START.
+	 * 
+	 * @param cursor  the cursor returned by the previous call, or ChangeCursor.START
+	 * @param limit   the maximum number of changes (saves, updates and deletes) to return
+	 * @return the changes in (modStamp, id) order and the next cursor, or null if an error occurred.
+	 */
+	public ChangeSet<T> getModifiedSince(ChangeCursor cursor, int limit) {
+		Session session = null;
+		Transaction tx = null;
+		ChangeSet<T> result = null;
+		if (cursor == null) cursor = ChangeCursor.START;
+		String entityName = getParameterizedClass().getSimpleName();
+		long horizon = System.currentTimeMillis() - changeFeedSettleMillis;
+		try {
+			session = openReadSession();
+			final Session readSession = session;
+			tx = ReadRouting.onPrimary(() -> beginTransaction(readSession));  // takes the connection
+			// modStamp >= :stamp is the index range, the OR only filters the rows sharing that stamp
+			List<T> changed = session.createQuery("FROM " + entityName + " e WHERE e.modStamp >= :stamp " + 
+					"AND (e.modStamp > :stamp OR e.id > :id) AND e.modStamp <= :horizon " + 
+					"ORDER BY e.modStamp, e.id", getParameterizedClass())
+				.setParameter("stamp", cursor.getModStamp())
+				.setParameter("id", cursor.getId())
+				.setParameter("horizon", horizon)
+				.setMaxResults(limit)
+				.getResultList();
+			List<DeletedRecord> deleted = session.createQuery("FROM DeletedRecord d " + 
+					"WHERE d.entityName = :entity AND d.modStamp >= :stamp " + 
+					"AND (d.modStamp > :stamp OR d.entityId > :id) AND d.modStamp <= :horizon " + 
+					"ORDER BY d.modStamp, d.entityId", DeletedRecord.class)
+				.setParameter("entity", entityName)
+				.setParameter("stamp", cursor.getModStamp())
+				.setParameter("id", cursor.getId())
+				.setParameter("horizon", horizon)
+				.setMaxResults(limit)
+				.getResultList();
+			tx.commit();
+			result = mergeChanges(cursor, changed, deleted, limit);
+		} catch (Exception ex) {
+			DaoMetrics.markFailure();
+			if (tx != null) tx.rollback();
+			System.out.println("Could not get " + entityName + " changes after " + cursor + 
+				" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
+		} finally {
+			if (session != null) closeReadSession(session);
+		} // end try-catch-finally
+		return result;
+	} // end getModifiedSince
+
+	/**
+	 * Merges changed and deleted records, each in (modStamp, id) order, keeping the first limit.
+	 */
+	private ChangeSet<T> mergeChanges(ChangeCursor cursor, List<T> changed, List<DeletedRecord> deleted, int limit) {
+		List<T> changes = new ArrayList<>();
+		List<Integer> deletedIds = new ArrayList<>();
+		ChangeCursor next = cursor;
+		int c = 0, d = 0;
+		while (changes.size() + deletedIds.size() < limit && (c < changed.size() || d < deleted.size())) {
+			boolean takeChanged = d >= deleted.size() || (c < changed.size() && 
+				new ChangeCursor(changed.get(c).getModStamp(), changed.get(c).getId())
+					.isBefore(deleted.get(d).getModStamp(), deleted.get(d).getEntityId()));
+			if (takeChanged) {
+				T record = changed.get(c++);
+				changes.add(record);
+				next = new ChangeCursor(record.getModStamp(), record.getId());
+			} else {
+				DeletedRecord tombstone = deleted.get(d++);
+				deletedIds.add(tombstone.getEntityId());
+				next = new ChangeCursor(tombstone.getModStamp(), tombstone.getEntityId());
+			}
+		} // end while
+		boolean more = changes.size() + deletedIds.size() >= limit;
+		return new ChangeSet<>(changes, deletedIds, next, more);
+	} // end mergeChanges
+
+	/**
+	 * Updates a database record for the coal camp database. This is a single UPDATE 
+	 * statement: dateCreated is not updatable so it no longer needs to be read back 
+	 * from the database first, and dateModified is set by the DateModifiedInterceptor.
+	 * If the record was changed by someone else since ccObj was read the update is 
+	 * not made and a message is output.  Use updateIfCurrent to detect this.
 	 * 
 	 * @param ccObj  A coal camp object that is to be updated in the hibernate database.
 	 */	
 	public void update(T ccObj) { // no longer pass in pojoClass
+		updateIfCurrent(ccObj);
+	} // end update
+
+	/**
+	 * Updates a database record only if it has not been changed since ccObj was read. 
+	 * The version of ccObj is checked in the where clause of the UPDATE, so no lock is 
+	 * held between the read and the update.  On success the version of ccObj is incremented.
+	 * 
+	 * @param ccObj  A coal camp object that is to be updated in the hibernate database.
+	 * @return true if the record was updated, false if it was changed or deleted by 
+	 *         another updater, was refused by isWriteAllowed (or could not be updated for 
+	 *         any other reason).
+	 */	
+	public boolean updateIfCurrent(T ccObj) {
+		boolean result = false;
 		Session session = null;
 		Transaction tx = null;
+		int version = ccObj.getVersion();
 		try {
-			session = getSessionFactory().openSession();
-			tx = session.beginTransaction();
-			// need to get ID, get object by ID, get created Date,
-			// set createdDate then update
-			int id = ccObj.getId();
-			// Class clazz = ccObj.getClass(); neither this nor ccObj.class would work.
-			T dbObj = getById(id);
-			ccObj.setDateCreated(dbObj.getDateCreated());
-			ccObj.setDateModified(ZonedDateTime.now());
+			session = openSession();
+			tx = beginTransaction(session);
+			if (!isWriteAllowed(session, ccObj)) {
+				endRefusedWrite(session, tx);
+				return false;
+			}
 			session.update(ccObj);
 			tx.commit();
+			result = true;
+			notifyWriteListeners(l -> l.onUpdated(ccObj));
 		} catch (Exception ex) {
-			if (tx != null) tx.rollback();
-			System.out.println("Could not generically update " + ccObj + 
+			DaoMetrics.markFailure();
+			if (tx != null && tx.isActive()) tx.rollback();
+			ccObj.setVersion(version);  // flush already incremented it, so a retry would not be checked
+			if (isVersionConflict(ex)) {
+				System.out.println("Could not update " + ccObj + " version " + ccObj.getVersion() + 
+					". It was changed or deleted by another update.");
+			} else {
+				System.out.println("Could not generically update " + ccObj + 
 					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
+			}
 		} finally {
-			if (session != null) session.close();
+			if (session != null) closeSession(session);
 		} // end try-catch-finally
-	} // end update
+		return result;
+	} // end updateIfCurrent
+
+	/**
+	 * Returns true if the exception, or any of its causes, is an optimistic lock failure.
+	 * 
+	 * @param ex  an exception thrown by a hibernate update or commit
+	 * @return true if the exception was caused by a version mismatch.
+	 */
+	protected static boolean isVersionConflict(Throwable ex) {
+		for (Throwable t = ex; t != null; t = t.getCause()) {
+			if (t instanceof org.hibernate.StaleStateException || 
+				t instanceof javax.persistence.OptimisticLockException) return true;
+		}
+		return false;
+	} // end isVersionConflict
 
 	/**
 	 * Deletes the object from the database. The ccObj will not be deleted if it is 
@@ -156,17 +782,149 @@ public abstract class BaseDAOImpl<T extends BaseCCObject> implements BaseDAO<T>
 		try {
 			// session = sessionFactory.openSession();
 			// for now, reply on each pojo having its own sessionFactory
-			session = getSessionFactory().openSession();
-			tx = session.beginTransaction();
+			session = openSession();
+			tx = beginTransaction(session);
 			session.delete(ccObj);
+			session.save(new DeletedRecord(getParameterizedClass().getSimpleName(), ccObj.getId(), 
+				ModStamp.forTombstone(getParameterizedClass().getSimpleName())));
 			tx.commit();
+			notifyWriteListeners(l -> l.onDeleted(ccObj));
 		} catch (Exception ex) {
+			DaoMetrics.markFailure();
 			if (tx != null) tx.rollback();
 			System.out.println("Could not generically delete " + ccObj + 
 					" ---- Exception Name ---- " + ex.toString() + " " + ex.getMessage() );
 		} finally {
-			if (session != null) session.close();
+			if (session != null) closeSession(session);
 		} // end try-catch-finally
 	} // end delete		
+
+	// ------ Set based (bulk) routines ------
+	/**
+	 * Updates every record matching condition with a single HQL UPDATE statement, without 
+	 * loading any of them.  dateModified, modStamp and version are set on every updated record so 
+	 * optimistic locking and the change feed still see the change.  Hibernate evicts the entity's second 
+	 * level cache region after any bulk statement, so the cache does not serve stale records.
+	 * 
+	 * @param assignments  the hql set clause using alias e, such as "e.endYear = :newEnd"
+	 * @param condition    the hql where clause using alias e, such as "e.endYear &lt; :year"
+	 * @param params       values for the named parameters used in assignments and condition
+	 * @return the number of records updated, or -1 if the update failed and was rolled back.
+	 */
+	public int updateWhere(String assignments, String condition, Map<String, Object> params) {
+		String hql = "UPDATE " + getParameterizedClass().getSimpleName() + " e SET " + assignments + 
+			", e.dateModified = :bulkDateModified, e.modStamp = :bulkModStamp, e.version = e.version + 1 WHERE " + condition;
+		return executeBulk(hql, params, ZonedDateTime.now());
+	} // end updateWhere
+
+	/**
+	 * Deletes every record matching condition with a single HQL DELETE statement, without 
+	 * loading any of them.  As with delete, records referenced from another table are not 
+	 * deleted; the whole statement fails and is rolled back.  A tombstone for each deleted 
+	 * record is added first, in the same transaction, by one INSERT ... SELECT statement.
+	 * 
+	 * @param condition  the hql where clause using alias e, such as "e.endYear &lt; :year"
+	 * @param params     values for the named parameters used in condition
+	 * @return the number of records deleted, or -1 if the delete failed and was rolled back.
+	 */
+	public int deleteWhere(String condition, Map<String, Object> params) {
+		String entityName = getParameterizedClass().getSimpleName();
+		String tombstones = "INSERT INTO DeletedRecord (entityName, entityId, modStamp) SELECT '" + 
+			entityName + "', e.id, " + TOMBSTONE_STAMP + " FROM " + entityName + " e WHERE " + condition;
+		String hql = "DELETE FROM " + entityName + " e WHERE " + condition;
+		return executeBulk(tombstones, hql, params, null);
+	} // end deleteWhere
+
+	/**
+	 * Removes the tombstones of deleted records stamped before modStamp, which 
+	 * getModifiedSince no longer needs to return to consumers with a later cursor.  The 
+	 * pending tombstones of uncommitted deletes (negative stamps) are not removed.
+	 * 
+	 * @param modStamp  tombstones stamped before this, in epoch milliseconds, are removed
+	 * @return the number of tombstones removed, or -1 if the delete failed and was rolled back.
+	 */
+	public int purgeTombstonesBefore(long modStamp) {
+		int result = -1;
+		Session session = null;
+		Transaction tx = null;
+		String entityName = getParameterizedClass().getSimpleName();
+		try {
+			session = openSession();
+			tx = beginTransaction(session);
+			result = session.createQuery("DELETE FROM DeletedRecord d WHERE d.entityName = :entity " + 
+					"AND d.modStamp >= 0 AND d.modStamp < :stamp")
+				.setParameter("entity", entityName)
+				.setParameter("stamp", modStamp)
+				.executeUpdate();
+			tx.commit();
+		} catch (Exception ex) {
+			DaoMetrics.markFailure();
+			if (tx != null) tx.rollback();
+			result = -1;
+			System.out.println("Could not purge " + entityName + " tombstones before " + modStamp + 
+					" ---- Exception Name ---- " + ex.toString() + " " + ex.getMessage() );
+		} finally {
+			if (session != null) closeSession(session);
+		} // end try-catch-finally
+		return result;
+	} // end purgeTombstonesBefore
+
+	/**
+	 * Executes a bulk hql statement in its own session and transaction. 
+	 * 
+	 * @param hql           an hql UPDATE or DELETE statement
+	 * @param params        values for the named parameters of the statement, may be null
+	 * @param dateModified  value of the :bulkDateModified parameter, or null if not used. 
+	 *                      :bulkModStamp is set with it.
+	 * @return the number of records affected, or -1 if the statement failed and was rolled back.
+	 */
+	protected int executeBulk(String hql, Map<String, Object> params, ZonedDateTime dateModified) {
+		return executeBulk(null, hql, params, dateModified);
+	} // end executeBulk
+
+	/**
+	 * Executes two bulk hql statements in one session and transaction, such as the tombstones 
+	 * of a bulk delete and then the delete.  TOMBSTONE_STAMP in firstHql is replaced by the 
+	 * tombstone stamp of the transaction, a literal since it is in the select list of an INSERT.
+	 * 
+	 * @param firstHql      an hql statement run first with the same params, or null for none
+	 * @param hql           an hql UPDATE or DELETE statement
+	 * @param params        values for the named parameters of the statements, may be null
+	 * @param dateModified  value of the :bulkDateModified parameter, or null if not used
+	 * @return the number of records affected by hql, or -1 if a statement failed and both were rolled back.
+	 */
+	protected int executeBulk(String firstHql, String hql, Map<String, Object> params, ZonedDateTime dateModified) {
+		int result = -1;
+		Session session = null;
+		Transaction tx = null;
+		try {
+			session = openSession();
+			tx = beginTransaction(session);
+			if (firstHql != null) {
+				String stamp = ModStamp.forTombstone(getParameterizedClass().getSimpleName()) + "L";
+				org.hibernate.query.Query<?> first = session.createQuery(firstHql.replace(TOMBSTONE_STAMP, stamp));
+				if (params != null) params.forEach(first::setParameter);
+				first.executeUpdate();
+			}
+			org.hibernate.query.Query<?> query = session.createQuery(hql);
+			if (params != null) params.forEach(query::setParameter);
+			if (dateModified != null) {
+				query.setParameter("bulkDateModified", dateModified);
+				query.setParameter("bulkModStamp", ModStamp.forWrite(getParameterizedClass().getName()));
+			}
+			result = query.executeUpdate();
+			tx.commit();
+			notifyWriteListeners(l -> l.onBulkChange());
+		} catch (Exception ex) {
+			DaoMetrics.markFailure();
+			if (tx != null) tx.rollback();
+			result = -1;
+			System.out.println("Could not execute bulk statement " + hql + 
+					" ---- Exception Name ---- " + ex.toString() + " " + ex.getMessage() );
+		} finally {
+			if (session != null) closeSession(session);
+		} // end try-catch-finally
+		return result;
+	} // end executeBulk
 		
 } // end class BaseDAOImpl
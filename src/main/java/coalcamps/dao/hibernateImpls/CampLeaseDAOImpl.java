@@ -1,11 +1,19 @@
 package coalcamps.dao.hibernateImpls;
 	
+import org.hibernate.LockMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 
+import coalcamps.classes.BaseCCObject;
 import coalcamps.classes.CampLease;
+import coalcamps.classes.CoalCamp;
+import coalcamps.classes.LeaseOccupancy;
+import coalcamps.index.LeaseOccupancyIndex;
+import coalcamps.classes.CampLeaseSummary;
 import coalcamps.dao.CampLeaseDAO;
+import coalcamps.dao.SortOrder;
+import coalcamps.monitor.DaoMetrics;
 import java.util.*;
 import javax.persistence.TypedQuery; 
 
@@ -23,6 +31,11 @@ public class CampLeaseDAOImpl extends BaseDAOImpl<CampLease> implements CampLeas
 	 */
 	private SessionFactory leaseFactory; 	
 
+	/**
+	 *  Optional in-memory index of lease years for the lease year queries, kept current as a write listener.
+	 */
+	private LeaseOccupancyIndex occupancyIndex;
+
 	/**
 	 * Set the leaseFactory.  Needed for bean class.
 	 * 
@@ -41,6 +54,17 @@ public class CampLeaseDAOImpl extends BaseDAOImpl<CampLease> implements CampLeas
 		return leaseFactory;
 	}
 	
+	/**
+	 * Set the lease occupancy index and register it to be notified of lease writes.
+	 * 
+	 * @param occupancyIndex  the index used by the lease year queries
+	 */
+	public void setOccupancyIndex(LeaseOccupancyIndex occupancyIndex) {
+		this.occupancyIndex = occupancyIndex;
+		addWriteListener(occupancyIndex);
+	}
+	public LeaseOccupancyIndex getOccupancyIndex() {return occupancyIndex;}
+	
 	// ------ NonStandard Methods ------
 	/**
 	 * Returns the actual class for this DAO.
@@ -58,31 +82,10 @@ public class CampLeaseDAOImpl extends BaseDAOImpl<CampLease> implements CampLeas
 	 * Save the CampLease to the database
 	 * 
 	 * @deprecated replaced by generic save method.
-	 * @param lease  a camp lease that is saved to the database using session.save
+	 * @param lease  a camp lease that is saved to the database using save
 	 */	
 	public void saveCampLease(CampLease lease) {
-		Session session = null;
-		Transaction tx = null;
-		try {
-			session = leaseFactory.openSession();
-			tx = session.beginTransaction();
-			// save and persist are slightly different. Save works if primary key is already set.
-			session.save(lease);  // save creates 3 of 3 records - MJS 4.1.18
-			tx.commit();
-		} catch (org.hibernate.PropertyValueException | 
-				 org.springframework.dao.DataIntegrityViolationException ex) {
-			System.out.println(lease.toString() + 
-				" could not be saved. Maybe it is already in the database? " + 
-				" ---- Exception Details ---- " + ex.toString() + ex.getMessage() );
-			if (tx != null) tx.rollback();
-		} catch (Exception ex) {
-			// even though exception is caught, exception trace is printed to the console.
-			System.out.println(lease.toString() + " could not be saved. Maybe it already exists? " + 
-					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
-			if (tx != null) tx.rollback();
-		} finally {
-			if (session != null) {session.close();}
-		} // end try-catch-finally
+		save(lease);  // so the overlap check and write listeners are not skipped
 	}  // end saveCampLease(CampLease lease)		
 			
 	/** 
@@ -97,15 +100,16 @@ public class CampLeaseDAOImpl extends BaseDAOImpl<CampLease> implements CampLeas
 		Transaction tx = null;
 		CampLease lease = null;
 		try {
-			session = leaseFactory.openSession();
-			tx = session.beginTransaction();
+			session = openReadSession();
+			tx = beginTransaction(session);
 			lease = (CampLease) session.get(CampLease.class, ID);			
 		} catch (Exception ex) {
+			DaoMetrics.markFailure();
 			if (tx != null) tx.rollback();
 			System.out.println(lease.toString() + " could not be retrieved for id " + ID + ". Maybe it doesn't exist? " + 
 					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
 		} finally {
-			if (session != null) session.close();
+			if (session != null) closeReadSession(session);
 		}
 		return lease;
 	} // end getCampLeaseById
@@ -121,19 +125,20 @@ public class CampLeaseDAOImpl extends BaseDAOImpl<CampLease> implements CampLeas
 		Transaction tx = null;
 	    List<CampLease> list = null;
 	    try {
-		    session = leaseFactory.openSession();
+		    session = openReadSession();
 		    // must be beginTransaction, not getTransaction unless also tx.begin
-		    tx = session.beginTransaction();  
+		    tx = beginTransaction(session);  
 		    TypedQuery<CampLease> query = session.createQuery("FROM CampLease", CampLease.class);
 		    list = query.getResultList();  // replaces pre hibernate5 Query and query.list()
 		    if (tx != null) tx.commit();
 		} catch (Exception ex) {
+			DaoMetrics.markFailure();
 			if (tx != null) tx.rollback();
 			// even though exception is caught, exception info is printed to the console.
 			System.out.println("Could not get list of CampLeases. " + 
 				" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
 	    } finally { 
-		    if (session != null) session.close();
+		    if (session != null) closeReadSession(session);
 		} // end try-catch-finally
 		return list;  
 	} // end getCampLeases
@@ -151,8 +156,8 @@ public class CampLeaseDAOImpl extends BaseDAOImpl<CampLease> implements CampLeas
 		Transaction tx = null;
 		String hql = null;
 		try { 
-			session = leaseFactory.openSession();  // not sure if to use classic subtype or not
-			tx = session.beginTransaction();
+			session = openReadSession();  // not sure if to use classic subtype or not
+			tx = beginTransaction(session);
 		    if (eager) {
 				// For hbm.xml files, We CAN force eager with either crit.createAlias(fkField, alias, LEFT_JOIN)
 				// or with setFetchMode(fkField, FetchMode.EAGER). Works for crit or detachedCrit MJS 3.28.18
@@ -176,11 +181,12 @@ public class CampLeaseDAOImpl extends BaseDAOImpl<CampLease> implements CampLeas
 		    } // end if eager ... else
 		    tx.commit();
 	    }  catch (Exception ex ) {
+	    	DaoMetrics.markFailure();
 	    	if (tx != null) tx.rollback();
 	    	System.out.println("Exception in getCampLeases(eager=" + eager + "). " + ex.getMessage());
 	    	ex.printStackTrace();
 	    } finally {
-	    	if (session != null) session.close();	    	
+	    	if (session != null) closeReadSession(session);	    	
 	    }  // try-catch-finally block
 	    return ccList; 
 	} // end getCampLeases
@@ -198,11 +204,12 @@ public class CampLeaseDAOImpl extends BaseDAOImpl<CampLease> implements CampLeas
 		    list = query.getResultList();  // replaces pre hibernate5 Query and query.list()
 			tx.commit();
 		} catch (Exception ex) {
+			DaoMetrics.markFailure();
 			if (tx != null) tx.rollback();
 			System.out.println("Could not get list of CampLeases. " + 
 					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
 		} finally {
-			if (session != null) session.close();
+			if (session != null) closeSession(session);
 		} // end try-catch-finally
 		return list;  
 	}  // getCampLeasesWRONG
@@ -217,21 +224,80 @@ public class CampLeaseDAOImpl extends BaseDAOImpl<CampLease> implements CampLeas
 		Session session = null;
 		Transaction tx = null;
 		try {
-			session = leaseFactory.openSession();
-			tx = session.beginTransaction();
+			session = openReadSession();
+			tx = beginTransaction(session);
 			TypedQuery<Long> query = session.createQuery("SELECT count(*) FROM CampLease", Long.class);
 			result = ((Long) query.getSingleResult()).intValue();  // pre hibernate5 was Query and uinqueResult
 			tx.commit();
 		} catch (Exception ex) {
+			DaoMetrics.markFailure();
 			if (tx != null) tx.rollback();
 			System.out.println("Could not get count of CampLeases. " + 
 					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
 		} finally {
-			if (session != null) session.close();
+			if (session != null) closeReadSession(session);
 		} // end try-catch-finally
 		return result;
 	} // end getCampLeaseCount
 
+	/**
+	 * Returns one page of CampLeases in id order using the default foreign key fetching.
+	 * 
+	 * @param afterId  the last id of the previous page, or 0 for the first page
+	 * @param limit    the maximum number of leases to return
+	 * @param sort     ascending or descending id order
+	 * @return a List of at most limit camp leases, empty after the last page.
+	 */
+	public List<CampLease> getCampLeasePage(int afterId, int limit, SortOrder sort) {
+		return getCampLeasePage(afterId, limit, sort, false);
+	} // end getCampLeasePage
+
+	/**
+	 * Returns one page of CampLeases in id order either with or without campLeased and 
+	 * companyLeasing fetched.
+	 * 
+	 * @param afterId  the last id of the previous page, or 0 for the first page
+	 * @param limit    the maximum number of leases to return
+	 * @param sort     ascending or descending id order
+	 * @param eager    a boolean indicating if campLeased and companyLeasing should be join fetched
+	 * @return a List of at most limit camp leases, empty after the last page.
+	 */
+	public List<CampLease> getCampLeasePage(int afterId, int limit, SortOrder sort, boolean eager) {
+		String hql = eager ? "SELECT lease FROM CampLease lease LEFT JOIN FETCH lease.campLeased camp " + 
+							 " LEFT JOIN FETCH lease.companyLeasing co" 
+						   : "SELECT lease FROM CampLease lease";
+		return getPage(hql, "lease", afterId, limit, sort);
+	} // end getCampLeasePage(eager)
+
+	/**
+	 *  Selects a CampLeaseSummary per lease, for the keyset paging in getPage.
+	 */
+	private static final String SUMMARY_SELECT = "SELECT new coalcamps.classes.CampLeaseSummary(" + 
+		"lease.id, camp.campName, co.companyName, lease.beginYear, lease.endYear) " + 
+		"FROM CampLease lease JOIN lease.campLeased camp JOIN lease.companyLeasing co";
+
+	/**
+	 * Returns a summary of every CampLease in id order.  Only the summary columns are 
+	 * selected and no CampLease, CoalCamp or CoalCompany is loaded.
+	 * 
+	 * @return a List of all camp lease summaries, or null if an error occurred.
+	 */
+	public List<CampLeaseSummary> getCampLeaseSummaries() {
+		return getPage(SUMMARY_SELECT, "lease", CampLeaseSummary.class, 0, 0, SortOrder.ASCENDING);
+	} // end getCampLeaseSummaries
+
+	/**
+	 * Returns one page of CampLease summaries in id order.
+	 * 
+	 * @param afterId  the last id of the previous page, or 0 for the first page
+	 * @param limit    the maximum number of summaries to return
+	 * @param sort     ascending or descending id order
+	 * @return a List of at most limit summaries, empty after the last page.
+	 */
+	public List<CampLeaseSummary> getCampLeaseSummaryPage(int afterId, int limit, SortOrder sort) {
+		return getPage(SUMMARY_SELECT, "lease", CampLeaseSummary.class, afterId, limit, sort);
+	} // end getCampLeaseSummaryPage
+
 	/**
 	 * Updates a CampLease database record.
 	 * 
@@ -239,20 +305,7 @@ public class CampLeaseDAOImpl extends BaseDAOImpl<CampLease> implements CampLeas
 	 * @param lease  A CampLease that is to be updated in the hibernate database.
 	 */	
 	public void updateCampLease(CampLease lease) {
-		Session session = null;
-		Transaction tx = null;
-		try {
-			session = leaseFactory.openSession();
-			tx = session.beginTransaction();
-			session.update(lease);
-			tx.commit();
-		} catch (Exception ex) {
-			if (tx != null) tx.rollback();
-			System.out.println("Could not get update the CampLease. " + 
-					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
-		} finally {
-			if (session != null) session.close();
-		} // end try-catch-finally
+		update(lease);  // so the overlap check and write listeners are not skipped
 	} // end UpdateCampLease
 
 	/**
@@ -263,20 +316,106 @@ public class CampLeaseDAOImpl extends BaseDAOImpl<CampLease> implements CampLeas
 	 * @param lease  A CampLease that is to be updated in the hibernate database.
 	 */	
 	public void deleteCampLease(CampLease lease) {
+		delete(lease);  // so the tombstone and write listeners are not skipped
+	} // end DeleteCampLease		
+
+	// ------ Lease year routines ------
+	/**
+	 * Refuses a CampLease whose years overlap another lease of the same camp.  The camp 
+	 * row is locked first (SELECT ... FOR UPDATE), so two writers adding leases to one camp, 
+	 * on this node or another, take turns and the second sees the first's lease.  Leases 
+	 * saved earlier in the same unit of work are flushed by the query, so they are seen too.
+	 * <p>
+	 * A lease overlapping one already in the occupancy index is refused without the lock 
+	 * or the query.  The index holds committed leases only, so it is not used inside a unit 
+	 * of work, which may have deleted or moved a lease the index still holds.
+	 * 
+	 * @param session  the session the write will use
+	 * @param lease    the camp lease about to be saved or updated
+	 * @return false if the lease overlaps another lease of its camp.
+	 */
+	@Override
+	protected boolean isWriteAllowed(Session session, CampLease lease) {
+		int campId = BaseCCObject.idOf(lease.getCampLeased());
+		if (campId == 0) return true;  // not-null check fails on write
+		if (occupancyIndex != null && !isJoined(session) && 
+				occupancyIndex.hasOverlap(campId, lease.getBeginYear(), lease.getEndYear(), lease.getId())) {
+			System.out.println("Could not write " + lease + ". It overlaps another lease of the camp.");
+			return false;
+		}
+		session.get(CoalCamp.class, campId, LockMode.PESSIMISTIC_WRITE);
+		long overlapping = session.createQuery("SELECT count(*) FROM CampLease lease " + 
+				"WHERE lease.campLeased.id = :campId AND lease.id <> :leaseId " + 
+				"AND lease.beginYear <= :endYear AND lease.endYear >= :beginYear", Long.class)
+			.setParameter("campId", campId)
+			.setParameter("leaseId", lease.getId())
+			.setParameter("beginYear", lease.getBeginYear())
+			.setParameter("endYear", lease.getEndYear())
+			.getSingleResult();
+		if (overlapping > 0) {
+			System.out.println("Could not write " + lease + ". It overlaps another lease of the camp.");
+			return false;
+		}
+		return true;
+	} // end isWriteAllowed
+
+	/**
+	 * Returns the leases of a camp in effect during year, answered from the occupancy index.
+	 * 
+	 * @param campId  the id of the CoalCamp
+	 * @param year    the year of interest
+	 * @return the leases whose years include year, in beginYear order, or null if an error occurred.
+	 */
+	public List<LeaseOccupancy> getLeasesInYear(int campId, int year) {
+		return getLeasesOverlapping(campId, year, year);
+	} // end getLeasesInYear
+
+	/**
+	 * Returns the leases of a camp sharing a year with fromYear to toYear.  The occupancy 
+	 * index is used if one is set, otherwise the database is queried.
+	 * 
+	 * @param campId    the id of the CoalCamp
+	 * @param fromYear  the first year of the range
+	 * @param toYear    the last year of the range
+	 * @return the overlapping leases in beginYear order, or null if an error occurred.
+	 */
+	public List<LeaseOccupancy> getLeasesOverlapping(int campId, int fromYear, int toYear) {
+		if (occupancyIndex != null) return occupancyIndex.getLeasesOverlapping(campId, fromYear, toYear);
+		List<LeaseOccupancy> list = null;
 		Session session = null;
 		Transaction tx = null;
 		try {
-			session = leaseFactory.openSession();
-			tx = session.beginTransaction();
-			session.delete(lease);
+			session = openReadSession();
+			tx = beginTransaction(session);
+			list = session.createQuery("SELECT new coalcamps.classes.LeaseOccupancy(lease.id, " + 
+					"lease.campLeased.id, lease.companyLeasing.id, lease.beginYear, lease.endYear) " + 
+					"FROM CampLease lease WHERE lease.campLeased.id = :campId " + 
+					"AND lease.beginYear <= :toYear AND lease.endYear >= :fromYear ORDER BY lease.beginYear", 
+					LeaseOccupancy.class)
+				.setParameter("campId", campId)
+				.setParameter("fromYear", fromYear)
+				.setParameter("toYear", toYear)
+				.getResultList();
 			tx.commit();
 		} catch (Exception ex) {
+			DaoMetrics.markFailure();
 			if (tx != null) tx.rollback();
-			System.out.println("Could not delete the camp lease. " + lease + 
+			System.out.println("Could not get leases of camp " + campId + " from " + fromYear + " to " + toYear + 
 					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
 		} finally {
-			if (session != null) session.close();
+			if (session != null) closeReadSession(session);
 		} // end try-catch-finally
-	} // end DeleteCampLease		
+		return list;
+	} // end getLeasesOverlapping
+
+	/**
+	 * Deletes every CampLease that ended before the given year with one bulk DELETE.
+	 * 
+	 * @param year  leases with an endYear less than this year are deleted
+	 * @return the number of leases deleted, or -1 if the delete failed.
+	 */
+	public int deleteLeasesEndingBefore(int year) {
+		return deleteWhere("e.endYear < :year", Collections.singletonMap("year", year));
+	} // end deleteLeasesEndingBefore
 		
 } // end class CampLeaseDAOImpl
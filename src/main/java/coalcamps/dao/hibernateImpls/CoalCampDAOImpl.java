@@ -8,7 +8,13 @@ import java.util.*;
 import javax.persistence.TypedQuery;  // replace query in hibernate5
 
 import coalcamps.classes.CoalCamp;
+import coalcamps.classes.NameSuggestion;
+import coalcamps.classes.CoalCampSummary;
+import coalcamps.classes.CoalCompany;
 import coalcamps.dao.CoalCampDAO;
+import coalcamps.dao.SortOrder;
+import coalcamps.index.CampNameIndex;
+import coalcamps.monitor.DaoMetrics;
 
 /** 
  * Implements database access routines using hibernate for the {@link CoalCamp} class.
@@ -48,6 +54,22 @@ public class CoalCampDAOImpl extends BaseDAOImpl<CoalCamp> implements CoalCampDA
 		return campFactory;
 	}
 	
+	/**
+	 *  Optional in-memory index of names for suggestNames, kept current as a write listener.
+	 */
+	private CampNameIndex nameIndex;
+
+	/**
+	 * Set the name index and register it to be notified of writes.
+	 * 
+	 * @param nameIndex  the index used by suggestNames
+	 */
+	public void setNameIndex(CampNameIndex nameIndex) {
+		this.nameIndex = nameIndex;
+		addWriteListener(nameIndex);
+	}
+	public CampNameIndex getNameIndex() {return nameIndex;}
+	
 	// ------ NonStandard Methods ------
 	/**
 	 * Returns the actual class for this DAO.
@@ -61,36 +83,13 @@ public class CoalCampDAOImpl extends BaseDAOImpl<CoalCamp> implements CoalCampDA
 	
 	// ------ Hibernate Database Methods ------	
 	/*** 
-	 * Save the CoalCamp to the database using session.save
+	 * Save the CoalCamp to the database using save
 	 * 
 	 * @deprecated replaced by generic save routine
 	 * @param camp   the CoalCamp to be saved to the database.
 	 */
 	public void saveCoalCamp(CoalCamp camp) {
-		Session session = null;
-		Transaction tx = null;
-		try { 
-			session = campFactory.openSession();
-			tx = session.beginTransaction();
-			// save and persist are slightly different - using GenerationType.IDENTITY or AUTO
-			session.save(camp);  // save creates 3 of 3 records - MJS 4.1.18
-			// persist creates 2 of 3 companies MJS 4.1.18 (randp id=8 rolled back).
-			// session.persist(company);  // creates 2 of 3 companies 4.1.18 MJS
-			tx.commit();
-		} catch (org.hibernate.PropertyValueException | 
-			 org.springframework.dao.DataIntegrityViolationException ex) {
-			System.out.println(camp.toString() + 
-				" could not be saved. It appears to already be in the database? " + 
-				" ---- Exception ---- " + ex.toString() + ex.getMessage() );
-				if (tx != null) tx.rollback();
-		} catch (Exception ex) {
-			// even though exception is caught, lots of exception trace is printed to the console.
-			System.out.println(camp.toString() + " could not be saved. Maybe it already exists? " + 
-					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
-			if (tx != null) tx.rollback();
-		} finally {
-			if (session != null) {session.close();}
-		} // end try-catch-finally
+		save(camp);  // so the write listeners are not skipped
 	}  // end saveCoalCamp(CoalCamp camp)
 	
 	/**
@@ -105,20 +104,22 @@ public class CoalCampDAOImpl extends BaseDAOImpl<CoalCamp> implements CoalCampDA
 		Session session = null;
 		Transaction tx = null;
 		try { 
-			session = campFactory.openSession();
-			tx = session.beginTransaction();
+			session = openReadSession();
+			tx = beginTransaction(session);
 			camp = (CoalCamp) session.get(CoalCamp.class, ID);
 			tx.commit();
 		} catch (org.hibernate.HibernateException ex) {
+			DaoMetrics.markFailure();
 			System.out.println("Camp " + ID + " could not be retrieved.  " + 
 				" ---- Hibernate Exception ---- " + ex.toString() + ex.getMessage() );
 				if (tx != null) tx.rollback();
 		} catch (Exception ex) {
+			DaoMetrics.markFailure();
 			if (tx != null) tx.rollback();
 			System.out.println("Camp " + ID + " could not be retrieved. " + 
 					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
 		} finally {
-			if (session != null) {session.close();}
+			if (session != null) {closeReadSession(session);}
 		} // end try-catch-finally
 		return camp;
 	} // end getCoalCampById
@@ -133,25 +134,27 @@ public class CoalCampDAOImpl extends BaseDAOImpl<CoalCamp> implements CoalCampDA
 		Transaction tx = null;
 	    List<CoalCamp> list = null;
 		try {
-		    session = campFactory.openSession();
+		    session = openReadSession();
 		    // must be beginTransaction, not getTransaction unless also tx.begin
-		    tx = session.beginTransaction(); 
+		    tx = beginTransaction(session); 
 		    // pre hibernate5 used Query, older still HibernateTemplate.loadAll
 		    TypedQuery<CoalCamp> query = session.createQuery("FROM CoalCamp", CoalCamp.class);
 		    list = query.getResultList(); // pre hibernate5 was query.list()
 		    tx.commit();
 		} catch (org.hibernate.HibernateException ex) {
+			DaoMetrics.markFailure();
 			if (tx != null) tx.rollback();
 			System.out.println(" List of all coalCamps could not be retrieved.  " + 
 				" ---- Hibernate Exception ---- " + ex.toString() + ex.getMessage() );
 		} catch (Exception ex) { 
+			DaoMetrics.markFailure();
 			if (tx != null) tx.rollback();
 			// even though exception is caught, lots of exception trace is printed to the console.
 			System.out.println("Could not get list of coalCamps. " + 
 				" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
 			ex.printStackTrace();
 		} finally { 
-		    if (session != null) session.close();
+		    if (session != null) closeReadSession(session);
 		} // end try-catch-finally
 		return list;  
 	} // end getCoalCamps
@@ -169,8 +172,8 @@ public class CoalCampDAOImpl extends BaseDAOImpl<CoalCamp> implements CoalCampDA
 		Transaction tx = null;
 	    // return template.loadAll(CoalCamp.class);  // can lead to lazy initialization error
 		try { 
-			session = campFactory.openSession();  // not sure if to use classic subtype or not
-			tx = session.beginTransaction();
+			session = openReadSession();  // not sure if to use classic subtype or not
+			tx = beginTransaction(session);
 		    if (eager) {
 				// For hbm.xml files, We CAN force eager with either crit.createAlias(fkField, alias, LEFT_JOIN)
 				// or with setFetchMode(fkField, FetchMode.EAGER). Works for crit or detachedCrit MJS 3.28.18
@@ -199,11 +202,12 @@ public class CoalCampDAOImpl extends BaseDAOImpl<CoalCamp> implements CoalCampDA
 		    } // end if eager ... else
 		    tx.commit();
 	    }  catch (Exception ex ) {
+	    	DaoMetrics.markFailure();
 	    	if (tx != null) tx.rollback();
 	    	System.out.println("Exception in getCoalCamps(eager=" + eager + "). " + ex.getMessage());
 	    	ex.printStackTrace();
 	    } finally {
-	    	if (session != null) session.close();	    	
+	    	if (session != null) closeReadSession(session);	    	
 	    }  // end try-catch-finally
 	    return ccList; 
 	} // end getCoalCamps
@@ -218,30 +222,87 @@ public class CoalCampDAOImpl extends BaseDAOImpl<CoalCamp> implements CoalCampDA
 		Transaction tx = null;
 		int result = 0;
 		try {
-		    session = campFactory.openSession();
+		    session = openReadSession();
 		    // must be beginTransaction, not getTransaction unless also tx.begin
-		    tx = session.beginTransaction(); 
+		    tx = beginTransaction(session); 
 		    // pre hibernate5 used Query, older still HibernateTemplate.loadAll
 			TypedQuery<Long> query = session.createQuery("SELECT count(*) FROM CoalCamp", Long.class);	
 			//  (Long) query.uniqueResult()).intValue(); In pre hibernate 5
 			result = ((Number) query.getSingleResult()).intValue(); 
 		    if (tx != null) tx.commit();
 		} catch (org.hibernate.HibernateException ex) {
+			DaoMetrics.markFailure();
 			System.out.println("Count of coalCamps could not be retrieved.  " + 
 				" ---- Hibernate Exception ---- " + ex.toString() + ex.getMessage() );
 				if (tx != null) tx.rollback();
 		} catch (Exception ex) { 
+			DaoMetrics.markFailure();
 			// even though exception is caught, lots of exception trace is printed to the console.
 			System.out.println("Count of coalCamps could not be retrieved. " + 
 				" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
 			ex.printStackTrace();
 			if (tx != null) tx.rollback();
 		} finally { 
-		    if (session != null) session.close();
+		    if (session != null) closeReadSession(session);
 		} // end try-catch-finally
 		return result;
 	} // end getCoalCampCount
 
+	/**
+	 * Returns one page of CoalCamps in id order using the default fetching for companyBuilding.
+	 * 
+	 * @param afterId  the last id of the previous page, or 0 for the first page
+	 * @param limit    the maximum number of camps to return
+	 * @param sort     ascending or descending id order
+	 * @return a List of at most limit coal camps, empty after the last page.
+	 */
+	public List<CoalCamp> getCoalCampPage(int afterId, int limit, SortOrder sort) {
+		return getCoalCampPage(afterId, limit, sort, false);
+	} // end getCoalCampPage
+
+	/**
+	 * Returns one page of CoalCamps in id order either with or without companyBuilding fetched.
+	 * 
+	 * @param afterId  the last id of the previous page, or 0 for the first page
+	 * @param limit    the maximum number of camps to return
+	 * @param sort     ascending or descending id order
+	 * @param eager    a boolean indicating if the building CoalCompany should be join fetched
+	 * @return a List of at most limit coal camps, empty after the last page.
+	 */
+	public List<CoalCamp> getCoalCampPage(int afterId, int limit, SortOrder sort, boolean eager) {
+		String hql = eager ? "SELECT camp FROM CoalCamp camp LEFT JOIN FETCH camp.companyBuilding co" 
+						   : "SELECT camp FROM CoalCamp camp";
+		return getPage(hql, "camp", afterId, limit, sort);
+	} // end getCoalCampPage(eager)
+
+	/**
+	 *  Selects a CoalCampSummary per camp, for the keyset paging in getPage.
+	 */
+	private static final String SUMMARY_SELECT = "SELECT new coalcamps.classes.CoalCampSummary(" + 
+		"camp.id, camp.campName, camp.yearBuilt, co.companyName) FROM CoalCamp camp JOIN camp.companyBuilding co";
+
+	/**
+	 * Returns a summary of every CoalCamp in id order.  Only the summary columns are 
+	 * selected and no CoalCamp or CoalCompany is loaded.
+	 * 
+	 * @return a List of all coal camp summaries, or null if an error occurred.
+	 */
+	public List<CoalCampSummary> getCoalCampSummaries() {
+		return getPage(SUMMARY_SELECT, "camp", CoalCampSummary.class, 0, 0, SortOrder.ASCENDING);
+	} // end getCoalCampSummaries
+
+	/**
+	 * Returns one page of CoalCamp summaries in id order.
+	 * 
+	 * @param afterId  the last id of the previous page, or 0 for the first page
+	 * @param limit    the maximum number of summaries to return
+	 * @param sort     ascending or descending id order
+	 * @return a List of at most limit summaries, empty after the last page.
+	 */
+	public List<CoalCampSummary> getCoalCampSummaryPage(int afterId, int limit, SortOrder sort) {
+		return getPage(SUMMARY_SELECT, "camp", CoalCampSummary.class, afterId, limit, sort);
+	} // end getCoalCampSummaryPage
+
 	/**
 	 * Updates the data in a CoalCamp
 	 * 
@@ -249,25 +310,7 @@ public class CoalCampDAOImpl extends BaseDAOImpl<CoalCamp> implements CoalCampDA
 	 * @param camp  a CoalCamp that is to updated in the database.
 	 */
 	public void updateCoalCamp(CoalCamp camp) {
-		Session session = null;
-		Transaction tx = null;
-		try {
-		    session = campFactory.openSession();
-		    tx = session.beginTransaction(); 
-			session.update(camp);
-		    if (tx != null) tx.commit();
-		} catch (org.hibernate.HibernateException ex) {
-			if (tx != null) tx.rollback();
-			System.out.println("Could not update CoalCamp.  " + camp +  
-				" ---- Hibernate Exception ---- " + ex.toString() + ex.getMessage() );
-		} catch (Exception ex) { 
-			if (tx != null) tx.rollback();
-			// even though exception is caught, lots of exception trace is printed to the console.
-			System.out.println("Could not update CoalCamp.  " + camp +   
-				" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
-		} finally { 
-		    if (session != null) session.close();
-		} // end try-catch-finally
+		update(camp);  // so the write listeners are not skipped
 	}  // end updateCoalCamp
 	
 	/**
@@ -279,25 +322,62 @@ public class CoalCampDAOImpl extends BaseDAOImpl<CoalCamp> implements CoalCampDA
 	 * @param camp  the CoalCamp that is to deleted from the hibernate database.
 	 */
 	public void deleteCoalCamp(CoalCamp camp) {
-		Session session = null;
-		Transaction tx = null;
-		try {
-		    session = campFactory.openSession();
-		    tx = session.beginTransaction(); 
-			session.delete(camp);
-		    if (tx != null) tx.commit();
-		} catch (org.hibernate.HibernateException ex) {
-			if (tx != null) tx.rollback();
-			System.out.println("Could not delete CoalCamp.  " + camp +  
-				" ---- Hibernate Exception ---- " + ex.toString() + ex.getMessage() );
-		} catch (Exception ex) { 
-			if (tx != null) tx.rollback();
-			// even though exception is caught, lots of exception trace is printed to the console.
-			System.out.println("Could not delete CoalCamp.  " + camp +   
-				" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
-		} finally { 
-		    if (session != null) session.close();
-		} // end try-catch-finally
+		delete(camp);  // so the tombstone and write listeners are not skipped
 	}  // end deleteCoalCamp
+
+	/**
+	 * Changes the companyBuilding of every CoalCamp built by fromCompany to toCompany 
+	 * with one bulk UPDATE.
+	 * 
+	 * @param fromCompany  the CoalCompany currently recorded as building the camps
+	 * @param toCompany    the CoalCompany the camps are reassigned to
+	 * @return the number of camps reassigned, or -1 if the update failed.
+	 */
+	public int reassignCoalCamps(CoalCompany fromCompany, CoalCompany toCompany) {
+		Map<String, Object> params = new HashMap<>();
+		params.put("fromCompany", fromCompany);
+		params.put("toCompany", toCompany);
+		return updateWhere("e.companyBuilding = :toCompany", "e.companyBuilding = :fromCompany", params);
+	} // end reassignCoalCamps
+			
+
+	// ------ Name searches, ignoring case, accents and extra spaces ------
+	/**
+	 * Returns the CoalCamps with the given name, such as both "slickville" and "SLICKville".
+	 * 
+	 * @param name  the name to find
+	 * @return matching CoalCamps in id order, or null if an error occurred.
+	 */
+	public List<CoalCamp> searchByName(String name) {
+		return searchByKey("campNameKey", name, false, 0);
+	} // end searchByName
+
+	/**
+	 * Returns up to limit CoalCamps whose name starts with prefix, using the indexed name key.
+	 * 
+	 * @param prefix  the start of the name
+	 * @param limit   the maximum number of records to return
+	 * @return matching CoalCamps in name order, or null if an error occurred.
+	 */
+	public List<CoalCamp> searchByNamePrefix(String prefix, int limit) {
+		return searchByKey("campNameKey", prefix, true, limit);
+	} // end searchByNamePrefix
+
+	/**
+	 * Returns the ids and names of up to limit CoalCamps whose name starts with prefix, for 
+	 * typeahead.  Answered from the in-memory name index if one is set, otherwise by 
+	 * searchByNamePrefix.
+	 * 
+	 * @param prefix  the start of the name as typed
+	 * @param limit   the maximum number of suggestions
+	 * @return matching ids and names in name order.
+	 */
+	public List<NameSuggestion> suggestNames(String prefix, int limit) {
+		if (nameIndex != null) return nameIndex.suggest(prefix, limit);
+		List<NameSuggestion> result = new ArrayList<>();
+		List<CoalCamp> found = searchByNamePrefix(prefix, limit);
+		if (found != null) found.forEach(e -> result.add(new NameSuggestion(e.getId(), e.getCampName())));
+		return result;
+	} // end suggestNames
 			
 } // end class CoalCampDAOImpl
@@ -5,7 +5,11 @@ import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 
 import coalcamps.classes.CoalCompany;
+import coalcamps.classes.NameSuggestion;
 import coalcamps.dao.CoalCompanyDAO;
+import coalcamps.dao.SortOrder;
+import coalcamps.index.CompanyNameIndex;
+import coalcamps.monitor.DaoMetrics;
 import java.util.*;
 import javax.persistence.TypedQuery; 
 
@@ -43,6 +47,22 @@ public class CoalCompanyDAOImpl extends BaseDAOImpl<CoalCompany> implements Coal
 	}
 
 	
+	/**
+	 *  Optional in-memory index of names for suggestNames, kept current as a write listener.
+	 */
+	private CompanyNameIndex nameIndex;
+
+	/**
+	 * Set the name index and register it to be notified of writes.
+	 * 
+	 * @param nameIndex  the index used by suggestNames
+	 */
+	public void setNameIndex(CompanyNameIndex nameIndex) {
+		this.nameIndex = nameIndex;
+		addWriteListener(nameIndex);
+	}
+	public CompanyNameIndex getNameIndex() {return nameIndex;}
+	
 	// ------ NonStandard Methods ------
 	/**
 	 * Returns the actual class for this DAO.
@@ -59,33 +79,10 @@ public class CoalCompanyDAOImpl extends BaseDAOImpl<CoalCompany> implements Coal
 	 * Save the CoalCompany to the database
 	 * 
 	 * @deprecated  replaced by generic save routine
-	 * @param company  a coal company that is saved to the database using session.save
+	 * @param company  a coal company that is saved to the database using save
 	 */		
 	public void saveCoalCompany(CoalCompany company) {
-		Session session = null;
-		Transaction tx = null;
-		try {
-			session = companyFactory.openSession();
-			tx = session.beginTransaction();
-			// save and persist are slightly different - using GenerationType.IDENTITY or AUTO
-			session.save(company);  // save creates 3 of 3 records - MJS 4.1.18
-			// persist creates 2 of 3 companies MJS 4.1.18 (randp id=8 rolled back).
-			// session.persist(company);  // creates 2 of 3 companies 4.1.18 MJS
-			tx.commit();
-		} catch (org.hibernate.PropertyValueException | 
-				 org.springframework.dao.DataIntegrityViolationException ex) {
-			System.out.println(company.toString() + 
-				" could not be saved. Maybe it is already in the database? " + 
-				" ---- Exception Details ---- " + ex.toString() + ex.getMessage() );
-			if (tx != null) tx.rollback();
-		} catch (Exception ex) {
-			// even though exception is caught, exception trace is printed to the console.
-			System.out.println(company.toString() + " could not be saved. Maybe it already exists? " + 
-					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
-			if (tx != null) tx.rollback();
-		} finally {
-			if (session != null) {session.close();}
-		} // end try-catch-finally
+		save(company);  // so the write listeners are not skipped
 	}  // end saveCoalCompany(CoalCompany company)		
 			
 	/** 
@@ -100,15 +97,16 @@ public class CoalCompanyDAOImpl extends BaseDAOImpl<CoalCompany> implements Coal
 		Transaction tx = null;
 		CoalCompany company = null;
 		try {
-			session = companyFactory.openSession();
-			tx = session.beginTransaction();
+			session = openReadSession();
+			tx = beginTransaction(session);
 			company = (CoalCompany) session.get(CoalCompany.class, ID);			
 		} catch (Exception ex) {
+			DaoMetrics.markFailure();
 			if (tx != null) tx.rollback();
 			System.out.println("Company could not be retrieved by ID (" + ID + "). Maybe it does not exist? " + 
 					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
 		} finally {
-			if (session != null) 		session.close();
+			if (session != null) 		closeReadSession(session);
 		}
 		return company;
 	} // end getCoalCompanyById
@@ -124,19 +122,20 @@ public class CoalCompanyDAOImpl extends BaseDAOImpl<CoalCompany> implements Coal
 		Transaction tx = null;
 	    List<CoalCompany> list = null;
 	    try {
-		    session = companyFactory.openSession();
+		    session = openReadSession();
 		    // must be beginTransaction, not getTransaction unless also tx.begin
-		    tx = session.beginTransaction();  
+		    tx = beginTransaction(session);  
 		    TypedQuery<CoalCompany> query = session.createQuery("FROM CoalCompany", CoalCompany.class);
 		    list = query.getResultList();  // replaces pre hibernate5 Query and query.list()
 		    if (tx != null) tx.commit();
 		} catch (Exception ex) {
+			DaoMetrics.markFailure();
 			// even though exception is caught, lots of exception trace is printed to the console.
 			System.out.println("Could not get list of coalCompanies. " + 
 				" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
 			if (tx != null) tx.rollback();
 	    } finally { 
-		    if (session != null) session.close();
+		    if (session != null) closeReadSession(session);
 		} // end try-catch-finally
 		return list;  
 	} // end getCoalCompanies
@@ -153,11 +152,12 @@ public class CoalCompanyDAOImpl extends BaseDAOImpl<CoalCompany> implements Coal
 		    list = query.getResultList();  // replaces pre hibernate5 Query and query.list()
 			tx.commit();
 		} catch (Exception ex) {
+			DaoMetrics.markFailure();
 			System.out.println("Could not get list of coalCompanies. " + 
 					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
 			if (tx != null) tx.rollback();
 		} finally {
-			if (session != null) session.close();
+			if (session != null) closeSession(session);
 		} // end try-catch-finally
 		return list;  
 	}  // getCoalCompaniesWRONG
@@ -172,21 +172,34 @@ public class CoalCompanyDAOImpl extends BaseDAOImpl<CoalCompany> implements Coal
 		Session session = null;
 		Transaction tx = null;
 		try {
-			session = companyFactory.openSession();
-			tx = session.beginTransaction();
+			session = openReadSession();
+			tx = beginTransaction(session);
 			TypedQuery<Long> query = session.createQuery("SELECT count(*) FROM CoalCompany", Long.class);
 			result = ((Long) query.getSingleResult()).intValue();  // pre hibernate5 was Query and uinqueResult
 			tx.commit();
 		} catch (Exception ex) {
+			DaoMetrics.markFailure();
 			if (tx != null) tx.rollback();
 			System.out.println("Could not get count of coalCompanies. " + 
 					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
 		} finally {
-			if (session != null) session.close();
+			if (session != null) closeReadSession(session);
 		} // end try-catch-finally
 		return result;
 	} // end getCoalCompanyCount
 
+	/**
+	 * Returns one page of CoalCompanies in id order.
+	 * 
+	 * @param afterId  the last id of the previous page, or 0 for the first page
+	 * @param limit    the maximum number of companies to return
+	 * @param sort     ascending or descending id order
+	 * @return a List of at most limit coal companies, empty after the last page.
+	 */
+	public List<CoalCompany> getCoalCompanyPage(int afterId, int limit, SortOrder sort) {
+		return getPage("SELECT co FROM CoalCompany co", "co", afterId, limit, sort);
+	} // end getCoalCompanyPage
+
 	/**
 	 * Updates a CoalCompany database record.
 	 * 
@@ -194,20 +207,7 @@ public class CoalCompanyDAOImpl extends BaseDAOImpl<CoalCompany> implements Coal
 	 * @param company  A CoalCompany that is to be updated in the hibernate database.
 	 */	
 	public void updateCoalCompany(CoalCompany company) {
-		Session session = null;
-		Transaction tx = null;
-		try {
-			session = companyFactory.openSession();
-			tx = session.beginTransaction();
-			session.update(company);
-			tx.commit();
-		} catch (Exception ex) {
-			if (tx != null) tx.rollback();
-			System.out.println("Could not get counnt of coalCompanies. " + 
-					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
-		} finally {
-			if (session != null) session.close();
-		} // end try-catch-finally
+		update(company);  // so the write listeners are not skipped
 	} // end UpdateCoalCompany
 
 	/*** 
@@ -219,20 +219,47 @@ public class CoalCompanyDAOImpl extends BaseDAOImpl<CoalCompany> implements Coal
 	 * @param company  A CoalCompany that is to be updated in the hibernate database.
 	 */	
 	public void deleteCoalCompany(CoalCompany company) {
-		Session session = null;
-		Transaction tx = null;
-		try {
-			session = companyFactory.openSession();
-			tx = session.beginTransaction();
-			session.delete(company);
-			tx.commit();
-		} catch (Exception ex) {
-			if (tx != null) tx.rollback();
-			System.out.println("Could not delete coalCompany. " + company + 
-					" ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
-		} finally {
-			if (session != null) session.close();
-		} // end try-catch-finally
+		delete(company);  // so the tombstone and write listeners are not skipped
 	} // end DeleteCoalCompany		
 		
+
+	// ------ Name searches, ignoring case, accents and extra spaces ------
+	/**
+	 * Returns the CoalCompanies with the given name, such as both "cambria steel" and "Cambria Steel".
+	 * 
+	 * @param name  the name to find
+	 * @return matching CoalCompanies in id order, or null if an error occurred.
+	 */
+	public List<CoalCompany> searchByName(String name) {
+		return searchByKey("companyNameKey", name, false, 0);
+	} // end searchByName
+
+	/**
+	 * Returns up to limit CoalCompanies whose name starts with prefix, using the indexed name key.
+	 * 
+	 * @param prefix  the start of the name
+	 * @param limit   the maximum number of records to return
+	 * @return matching CoalCompanies in name order, or null if an error occurred.
+	 */
+	public List<CoalCompany> searchByNamePrefix(String prefix, int limit) {
+		return searchByKey("companyNameKey", prefix, true, limit);
+	} // end searchByNamePrefix
+
+	/**
+	 * Returns the ids and names of up to limit CoalCompanies whose name starts with prefix, for 
+	 * typeahead.  Answered from the in-memory name index if one is set, otherwise by 
+	 * searchByNamePrefix.
+	 * 
+	 * @param prefix  the start of the name as typed
+	 * @param limit   the maximum number of suggestions
+	 * @return matching ids and names in name order.
+	 */
+	public List<NameSuggestion> suggestNames(String prefix, int limit) {
+		if (nameIndex != null) return nameIndex.suggest(prefix, limit);
+		List<NameSuggestion> result = new ArrayList<>();
+		List<CoalCompany> found = searchByNamePrefix(prefix, limit);
+		if (found != null) found.forEach(e -> result.add(new NameSuggestion(e.getId(), e.getCompanyName())));
+		return result;
+	} // end suggestNames
+			
 } // end class CoalCompanyDAOImpl
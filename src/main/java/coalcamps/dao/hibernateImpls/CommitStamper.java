@@ -0,0 +1,71 @@
+package coalcamps.dao.hibernateImpls;
+
+import javax.transaction.Synchronization;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+
+import coalcamps.classes.DeletedRecord;
+import coalcamps.classes.ModStamp;
+
+/** 
+ * Replaces the pending stamps of the records a transaction wrote with a stamp taken just 
+ * before it commits (see ModStamp).  BaseDAOImpl.beginTransaction registers it with the 
+ * hibernate transaction of the session, whether that is a DAO routine's own transaction 
+ * or a unit of work's, and hibernate calls beforeCompletion after the commit's flush.
+ * <p>
+ * Each table written gets one UPDATE of the rows holding the pending stamp, found with 
+ * the (modStamp, id) index.  The UPDATE is native sql naming a query space no entity uses, 
+ * so hibernate does not evict the entity's second level cache region as it would for an 
+ * hql bulk update.  Cached and in-memory objects keep the pending stamp; the change feed 
+ * reads stamps from the database.
+ * 
+ * @author Mike Sheliga 
+ */
+class CommitStamper implements Synchronization {
+
+	private static final String QUERY_SPACE = "cc_mod_stamp";  // no entity's table
+
+	private final Session session;
+	private final Transaction transaction;
+
+	CommitStamper(Session session, Transaction transaction) {
+		this.session = session;
+		this.transaction = transaction;
+	}
+
+	@Override
+	public void beforeCompletion() {
+		ModStamp.PendingWrites pending = ModStamp.getPendingWrites(transaction);
+		if (pending == null) return;
+		long stamp = ModStamp.next();
+		MetamodelImplementor metamodel = ((SessionImplementor) session).getFactory().getMetamodel();
+		for (String entityName : pending.getEntities()) {
+			restamp((AbstractEntityPersister) metamodel.entityPersister(entityName), "", stamp, pending);
+		}
+		if (!pending.getTombstones().isEmpty()) {
+			AbstractEntityPersister tombstones = (AbstractEntityPersister) metamodel.entityPersister(DeletedRecord.class);
+			restamp(tombstones, tombstones.getPropertyColumnNames("entityName")[0] + " IN (:entities) AND ", stamp, pending);
+		}
+	} // end beforeCompletion
+
+	private void restamp(AbstractEntityPersister persister, String condition, long stamp, ModStamp.PendingWrites pending) {
+		String column = persister.getPropertyColumnNames("modStamp")[0];
+		org.hibernate.query.NativeQuery<?> query = session.createNativeQuery("UPDATE " + persister.getTableName() + 
+				" SET " + column + " = :stamp WHERE " + condition + column + " = :pending")
+			.addSynchronizedQuerySpace(QUERY_SPACE)
+			.setParameter("stamp", stamp)
+			.setParameter("pending", pending.getPendingStamp());
+		if (!condition.isEmpty()) query.setParameterList("entities", pending.getTombstones());
+		query.executeUpdate();
+	} // end restamp
+
+	@Override
+	public void afterCompletion(int status) {
+		ModStamp.endPendingWrites(transaction);
+	}
+	
+} // end class CommitStamper
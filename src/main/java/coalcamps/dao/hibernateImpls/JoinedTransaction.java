@@ -0,0 +1,59 @@
+package coalcamps.dao.hibernateImpls;
+
+import javax.transaction.Synchronization;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
+import org.springframework.orm.hibernate5.SessionHolder;
+
+/** 
+ * Stands in for the Transaction of a DAO routine that joined a unit of work.  The 
+ * unit of work owns the real transaction, so commit only flushes the routine's changes 
+ * (so errors such as version conflicts are still caught by the routine) and rollback 
+ * marks the whole unit of work to be rolled back when it ends.
+ * 
+ * @author Mike Sheliga 
+ */
+class JoinedTransaction implements Transaction {
+
+	private final Session session;
+	private final SessionHolder holder;
+
+	JoinedTransaction(Session session, SessionHolder holder) {
+		this.session = session;
+		this.holder = holder;
+	}
+
+	@Override
+	public void begin() { }  // already begun by the unit of work
+
+	@Override
+	public void commit() {
+		session.flush();
+	}
+
+	@Override
+	public void rollback() {
+		holder.setRollbackOnly();
+	}
+
+	@Override
+	public void setRollbackOnly() {holder.setRollbackOnly();}
+	@Override
+	public boolean getRollbackOnly() {return holder.isRollbackOnly();}
+	@Override
+	public boolean isActive() {return session.getTransaction().isActive();}
+	@Override
+	public TransactionStatus getStatus() {return session.getTransaction().getStatus();}
+	@Override
+	public void registerSynchronization(Synchronization synchronization) throws HibernateException {
+		session.getTransaction().registerSynchronization(synchronization);
+	}
+	@Override
+	public void setTimeout(int seconds) {session.getTransaction().setTimeout(seconds);}
+	@Override
+	public int getTimeout() {return session.getTransaction().getTimeout();}
+	
+} // end class JoinedTransaction
@@ -0,0 +1,19 @@
+package coalcamps.index;
+
+import coalcamps.classes.CoalCamp;
+
+/** 
+ * Typeahead index of coal camp names.
+ * 
+ * @author Mike Sheliga 
+ */
+public class CampNameIndex extends NameIndex<CoalCamp> {
+
+	@Override
+	protected String getEntityName() {return "CoalCamp";}
+	@Override
+	protected String getNameProperty() {return "campName";}
+	@Override
+	protected String nameOf(CoalCamp camp) {return camp.getCampName();}
+	
+} // end class CampNameIndex
@@ -0,0 +1,183 @@
+package coalcamps.index;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import coalcamps.classes.BaseCCObject;
+import coalcamps.classes.CampLease;
+import coalcamps.classes.CoalCamp;
+import coalcamps.classes.CoalCompany;
+import coalcamps.classes.LeaseOccupancy;
+import coalcamps.dao.WriteListener;
+
+/** 
+ * Holds the current {@link GraphSnapshot} of companies, camps and leases for reports.  
+ * The snapshot is loaded on first use by streaming three projection queries through a 
+ * StatelessSession, so no entities are created.  It is then patched from the write 
+ * listeners of the three DAOs: each patch builds a new snapshot from the current one 
+ * and publishes it with an atomic swap.  Readers call getSnapshot and never lock.  
+ * Bulk changes discard the snapshot so it is reloaded on next use.
+ * 
+ * @author Mike Sheliga 
+ */
+public class CompanyGraph {
+
+	// ============ Instance variables and getter-setters ============
+	/**
+	 *  Bean from applicationContext.xml.  Set via dependency injection.
+	 */
+	private SessionFactory sessionFactory;
+	private int fetchSize = Integer.MIN_VALUE;  // see BaseDAOImpl.streamFetchSize
+	private final AtomicReference<GraphSnapshot> snapshot = new AtomicReference<>();  // null until loaded
+
+	public void setSessionFactory(SessionFactory sessionFactory) {this.sessionFactory = sessionFactory;}
+	public SessionFactory getSessionFactory() {return sessionFactory;}
+	public void setFetchSize(int fetchSize) {this.fetchSize = fetchSize;}
+	public int getFetchSize() {return fetchSize;}
+
+	/**
+	 * Returns the current snapshot, loading it if needed.
+	 * 
+	 * @return the latest snapshot, or an empty snapshot if it could not be loaded
+	 */
+	public GraphSnapshot getSnapshot() {
+		GraphSnapshot current = snapshot.get();
+		return (current != null ? current : load());
+	}
+
+	// ------ Write listeners, registered with the DAOs in applicationContext.xml ------
+	private final WriteListener<CoalCompany> companyListener = new WriteListener<CoalCompany>() {
+		public void onSaved(CoalCompany co) {patch(s -> s.withCompany(co.getId(), co.getCompanyName(), co.getYearFounded()));}
+		public void onUpdated(CoalCompany co) {onSaved(co);}
+		public void onDeleted(CoalCompany co) {patch(s -> s.withoutCompany(co.getId()));}
+		public void onBulkChange() {snapshot.set(null);}
+	};
+
+	private final WriteListener<CoalCamp> campListener = new WriteListener<CoalCamp>() {
+		public void onSaved(CoalCamp camp) {
+			patch(s -> s.withCamp(camp.getId(), camp.getCampName(), camp.getYearBuilt(), 
+				BaseCCObject.idOf(camp.getCompanyBuilding())));
+		}
+		public void onUpdated(CoalCamp camp) {onSaved(camp);}
+		public void onDeleted(CoalCamp camp) {patch(s -> s.withoutCamp(camp.getId()));}
+		public void onBulkChange() {snapshot.set(null);}
+	};
+
+	private final WriteListener<CampLease> leaseListener = new WriteListener<CampLease>() {
+		public void onSaved(CampLease lease) {patch(s -> s.withLease(LeaseOccupancy.of(lease)));}
+		public void onUpdated(CampLease lease) {onSaved(lease);}
+		public void onDeleted(CampLease lease) {patch(s -> s.withoutLease(lease.getId()));}
+		public void onBulkChange() {snapshot.set(null);}
+	};
+
+	public WriteListener<CoalCompany> getCompanyListener() {return companyListener;}
+	public WriteListener<CoalCamp> getCampListener() {return campListener;}
+	public WriteListener<CampLease> getLeaseListener() {return leaseListener;}
+
+	/**
+	 * Publishes a patched copy of the current snapshot.  Patches are applied one at a time; 
+	 * if the snapshot is not loaded the patch is skipped since the load will include it.
+	 */
+	private synchronized void patch(UnaryOperator<GraphSnapshot> change) {
+		GraphSnapshot current = snapshot.get();
+		if (current != null) snapshot.set(change.apply(current));
+	}
+
+	// ------ Loading ------
+	/**
+	 * Growable list of ids used while loading.
+	 */
+	private static final class IdList {
+		int[] ids = new int[4];
+		int size;
+		void add(int id) {
+			if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+			ids[size++] = id;
+		}
+		int[] toSortedArray() {
+			int[] result = Arrays.copyOf(ids, size);
+			Arrays.sort(result);
+			return result;
+		}
+	} // end class IdList
+
+	/**
+	 * Streams every company, camp and lease into a new snapshot.
+	 * 
+	 * @return the loaded snapshot, or an empty snapshot (not kept) if loading failed.
+	 */
+	private synchronized GraphSnapshot load() {
+		if (snapshot.get() != null) return snapshot.get();
+		StatelessSession session = null;
+		ScrollableResults rows = null;
+		try {
+			session = sessionFactory.openStatelessSession();
+			IntMap.Builder<LeaseOccupancy> leases = new IntMap.Builder<>();
+			IntMap.Builder<IdList> leasesByCamp = new IntMap.Builder<>();
+			IntMap.Builder<IdList> leasesByCompany = new IntMap.Builder<>();
+			rows = scroll(session, "SELECT lease.id, lease.campLeased.id, lease.companyLeasing.id, " + 
+				"lease.beginYear, lease.endYear FROM CampLease lease");
+			while (rows.next()) {
+				LeaseOccupancy lease = new LeaseOccupancy(rows.getInteger(0), rows.getInteger(1), 
+					rows.getInteger(2), rows.getInteger(3), rows.getInteger(4));
+				leases.put(lease.getLeaseId(), lease);
+				idList(leasesByCamp, lease.getCampId()).add(lease.getLeaseId());
+				idList(leasesByCompany, lease.getCompanyId()).add(lease.getLeaseId());
+			}
+			rows.close();
+			
+			IntMap.Builder<GraphSnapshot.CampNode> camps = new IntMap.Builder<>();
+			IntMap.Builder<IdList> campsByCompany = new IntMap.Builder<>();
+			rows = scroll(session, "SELECT camp.id, camp.campName, camp.yearBuilt, camp.companyBuilding.id FROM CoalCamp camp");
+			while (rows.next()) {
+				int id = rows.getInteger(0);
+				IdList campLeases = leasesByCamp.get(id);
+				camps.put(id, new GraphSnapshot.CampNode(id, rows.getString(1), rows.getInteger(2), rows.getInteger(3), 
+					campLeases == null ? new int[0] : campLeases.toSortedArray()));
+				idList(campsByCompany, rows.getInteger(3)).add(id);
+			}
+			rows.close();
+			
+			IntMap.Builder<GraphSnapshot.CompanyNode> companies = new IntMap.Builder<>();
+			rows = scroll(session, "SELECT co.id, co.companyName, co.yearFounded FROM CoalCompany co");
+			while (rows.next()) {
+				int id = rows.getInteger(0);
+				IdList companyCamps = campsByCompany.get(id);
+				IdList companyLeases = leasesByCompany.get(id);
+				companies.put(id, new GraphSnapshot.CompanyNode(id, rows.getString(1), rows.getInteger(2), 
+					companyCamps == null ? new int[0] : companyCamps.toSortedArray(), 
+					companyLeases == null ? new int[0] : companyLeases.toSortedArray()));
+			}
+			rows.close();
+			rows = null;
+			
+			GraphSnapshot loaded = new GraphSnapshot(companies.build(), camps.build(), leases.build());
+			snapshot.set(loaded);
+			return loaded;
+		} catch (Exception ex) {
+			System.out.println("Could not load company graph. " + 
+				" ---- Exception Name ---- " + ex.toString() + " " + ex.getMessage() );
+			return GraphSnapshot.EMPTY;
+		} finally {
+			if (rows != null) rows.close();
+			if (session != null) session.close();
+		} // end try-catch-finally
+	} // end load
+
+	private ScrollableResults scroll(StatelessSession session, String hql) {
+		return session.createQuery(hql).setFetchSize(fetchSize).setReadOnly(true).scroll(ScrollMode.FORWARD_ONLY);
+	}
+
+	private static IdList idList(IntMap.Builder<IdList> lists, int id) {
+		IdList list = lists.get(id);
+		if (list == null) lists.put(id, list = new IdList());
+		return list;
+	}
+	
+} // end class CompanyGraph
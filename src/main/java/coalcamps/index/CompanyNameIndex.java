@@ -0,0 +1,19 @@
+package coalcamps.index;
+
+import coalcamps.classes.CoalCompany;
+
+/** 
+ * Typeahead index of coal company names.
+ * 
+ * @author Mike Sheliga 
+ */
+public class CompanyNameIndex extends NameIndex<CoalCompany> {
+
+	@Override
+	protected String getEntityName() {return "CoalCompany";}
+	@Override
+	protected String getNameProperty() {return "companyName";}
+	@Override
+	protected String nameOf(CoalCompany company) {return company.getCompanyName();}
+	
+} // end class CompanyNameIndex
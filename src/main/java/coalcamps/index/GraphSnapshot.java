@@ -0,0 +1,205 @@
+package coalcamps.index;
+
+import java.util.List;
+
+import coalcamps.classes.LeaseOccupancy;
+
+/** 
+ * Immutable, id indexed snapshot of every coal company, the camps each built and the 
+ * leases of each camp.  Nodes hold the ids of their neighbours in sorted int arrays 
+ * rather than object references, so a changed node can be replaced without copying 
+ * the nodes that point at it, and a changed snapshot shares every unchanged map with 
+ * the one it replaces.
+ * <p>
+ * Snapshots are created and patched by {@link CompanyGraph}.  A snapshot never changes 
+ * once published, so a report can traverse it without locks and always sees one 
+ * consistent state.
+ * 
+ * @author Mike Sheliga 
+ */
+public final class GraphSnapshot {
+
+	static final GraphSnapshot EMPTY = new GraphSnapshot(IntMap.empty(), IntMap.empty(), IntMap.empty());
+	private static final int[] NO_IDS = new int[0];
+
+	private final IntMap<CompanyNode> companies;
+	private final IntMap<CampNode> camps;
+	private final IntMap<LeaseOccupancy> leases;
+
+	GraphSnapshot(IntMap<CompanyNode> companies, IntMap<CampNode> camps, IntMap<LeaseOccupancy> leases) {
+		this.companies = companies;
+		this.camps = camps;
+		this.leases = leases;
+	}
+
+	/**
+	 * A coal company with the ids of the camps it built and the leases it took.
+	 */
+	public static final class CompanyNode {
+		private final int id;
+		private final String companyName;
+		private final int yearFounded;
+		private final int[] campIds;
+		private final int[] leaseIds;
+
+		CompanyNode(int id, String companyName, int yearFounded, int[] campIds, int[] leaseIds) {
+			this.id = id;
+			this.companyName = companyName;
+			this.yearFounded = yearFounded;
+			this.campIds = campIds;
+			this.leaseIds = leaseIds;
+		}
+		CompanyNode(int id, String companyName, int yearFounded) {this(id, companyName, yearFounded, NO_IDS, NO_IDS);}
+
+		public int getId() {return id;}
+		public String getCompanyName() {return companyName;}
+		public int getYearFounded() {return yearFounded;}
+		public int[] getCampIds() {return campIds.clone();}
+		public int[] getLeaseIds() {return leaseIds.clone();}
+
+		CompanyNode withCamps(int[] ids) {return new CompanyNode(id, companyName, yearFounded, ids, leaseIds);}
+		CompanyNode withLeases(int[] ids) {return new CompanyNode(id, companyName, yearFounded, campIds, ids);}
+
+		@Override
+		public String toString() {
+			return "CompanyNode: ID=" + id + " Name=" + companyName + " camps=" + campIds.length + " leases=" + leaseIds.length;
+		}
+	} // end class CompanyNode
+
+	/**
+	 * A coal camp with the id of the company that built it and the ids of its leases.
+	 */
+	public static final class CampNode {
+		private final int id;
+		private final String campName;
+		private final int yearBuilt;
+		private final int companyId;
+		private final int[] leaseIds;
+
+		CampNode(int id, String campName, int yearBuilt, int companyId, int[] leaseIds) {
+			this.id = id;
+			this.campName = campName;
+			this.yearBuilt = yearBuilt;
+			this.companyId = companyId;
+			this.leaseIds = leaseIds;
+		}
+		CampNode(int id, String campName, int yearBuilt, int companyId) {this(id, campName, yearBuilt, companyId, NO_IDS);}
+
+		public int getId() {return id;}
+		public String getCampName() {return campName;}
+		public int getYearBuilt() {return yearBuilt;}
+		public int getCompanyId() {return companyId;}
+		public int[] getLeaseIds() {return leaseIds.clone();}
+
+		CampNode withLeases(int[] ids) {return new CampNode(id, campName, yearBuilt, companyId, ids);}
+
+		@Override
+		public String toString() {
+			return "CampNode: ID=" + id + " Name=" + campName + " Company=" + companyId + " leases=" + leaseIds.length;
+		}
+	} // end class CampNode
+
+	// ------ Lookups ------
+	public CompanyNode getCompany(int id) {return companies.get(id);}
+	public CampNode getCamp(int id) {return camps.get(id);}
+	public LeaseOccupancy getLease(int id) {return leases.get(id);}
+
+	public int getCompanyCount() {return companies.size();}
+	public int getCampCount() {return camps.size();}
+	public int getLeaseCount() {return leases.size();}
+
+	public IntMap<CompanyNode> getCompanies() {return companies;}
+	public IntMap<CampNode> getCamps() {return camps;}
+	public IntMap<LeaseOccupancy> getLeases() {return leases;}
+
+	// ------ Traversals ------
+	/**
+	 * Returns the camps built by a company.
+	 * 
+	 * @param companyId  the id of the CoalCompany
+	 * @return the camps in id order, empty if the company is unknown or built none
+	 */
+	public List<CampNode> getCampsBuiltBy(int companyId) {
+		CompanyNode company = companies.get(companyId);
+		return IntMap.valuesOf(camps, company == null ? NO_IDS : company.campIds);
+	}
+
+	/**
+	 * Returns the leases of a camp.
+	 * 
+	 * @param campId  the id of the CoalCamp
+	 * @return the leases in id order, empty if the camp is unknown or was never leased
+	 */
+	public List<LeaseOccupancy> getLeasesOfCamp(int campId) {
+		CampNode camp = camps.get(campId);
+		return IntMap.valuesOf(leases, camp == null ? NO_IDS : camp.leaseIds);
+	}
+
+	/**
+	 * Returns the leases taken by a company.
+	 * 
+	 * @param companyId  the id of the CoalCompany
+	 * @return the leases in id order, empty if the company is unknown or leased no camps
+	 */
+	public List<LeaseOccupancy> getLeasesTakenBy(int companyId) {
+		CompanyNode company = companies.get(companyId);
+		return IntMap.valuesOf(leases, company == null ? NO_IDS : company.leaseIds);
+	}
+
+	// ------ Patches, each returning a new snapshot ------
+	GraphSnapshot withCompany(int id, String companyName, int yearFounded) {
+		CompanyNode old = companies.get(id);
+		CompanyNode node = (old == null ? new CompanyNode(id, companyName, yearFounded) 
+			: new CompanyNode(id, companyName, yearFounded, old.campIds, old.leaseIds));
+		return new GraphSnapshot(companies.with(id, node), camps, leases);
+	}
+
+	GraphSnapshot withoutCompany(int id) {
+		return new GraphSnapshot(companies.without(id), camps, leases);  // foreign keys prevent deleting a company in use
+	}
+
+	GraphSnapshot withCamp(int id, String campName, int yearBuilt, int companyId) {
+		CampNode old = camps.get(id);
+		CampNode node = new CampNode(id, campName, yearBuilt, companyId, old == null ? NO_IDS : old.leaseIds);
+		IntMap<CompanyNode> newCompanies = companies;
+		if (old != null && old.companyId != companyId) {
+			newCompanies = newCompanies.compute(old.companyId, c -> c == null ? null : c.withCamps(IntMap.removeId(c.campIds, id)));
+		}
+		newCompanies = newCompanies.compute(companyId, c -> c == null ? null : c.withCamps(IntMap.addId(c.campIds, id)));
+		return new GraphSnapshot(newCompanies, camps.with(id, node), leases);
+	} // end withCamp
+
+	GraphSnapshot withoutCamp(int id) {
+		CampNode old = camps.get(id);
+		if (old == null) return this;
+		IntMap<CompanyNode> newCompanies = companies.compute(old.companyId, 
+			c -> c == null ? null : c.withCamps(IntMap.removeId(c.campIds, id)));
+		return new GraphSnapshot(newCompanies, camps.without(id), leases);
+	} // end withoutCamp
+
+	GraphSnapshot withLease(LeaseOccupancy lease) {
+		int id = lease.getLeaseId();
+		GraphSnapshot result = withoutLease(id);
+		IntMap<CampNode> newCamps = result.camps.compute(lease.getCampId(), 
+			c -> c == null ? null : c.withLeases(IntMap.addId(c.leaseIds, id)));
+		IntMap<CompanyNode> newCompanies = result.companies.compute(lease.getCompanyId(), 
+			c -> c == null ? null : c.withLeases(IntMap.addId(c.leaseIds, id)));
+		return new GraphSnapshot(newCompanies, newCamps, result.leases.with(id, lease));
+	} // end withLease
+
+	GraphSnapshot withoutLease(int id) {
+		LeaseOccupancy old = leases.get(id);
+		if (old == null) return this;
+		IntMap<CampNode> newCamps = camps.compute(old.getCampId(), 
+			c -> c == null ? null : c.withLeases(IntMap.removeId(c.leaseIds, id)));
+		IntMap<CompanyNode> newCompanies = companies.compute(old.getCompanyId(), 
+			c -> c == null ? null : c.withLeases(IntMap.removeId(c.leaseIds, id)));
+		return new GraphSnapshot(newCompanies, newCamps, leases.without(id));
+	} // end withoutLease
+
+	@Override
+	public String toString() {
+		return "GraphSnapshot: companies=" + companies.size() + " camps=" + camps.size() + " leases=" + leases.size();
+	}
+	
+} // end class GraphSnapshot
@@ -0,0 +1,424 @@
+package coalcamps.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/** 
+ * Immutable map from positive int keys, such as primary keys, to values.  The map is a 
+ * hash array mapped trie: each node covers 5 bits of the key's hash and holds up to 32 
+ * entries, each either a key and value stored inline in a primitive int array and an 
+ * Object array, or a child node for keys sharing those bits.  There is no boxed Integer 
+ * or entry object per key, and a lookup visits at most 7 nodes (usually 2 to 4).
+ * <p>
+ * Maps are built with a {@link Builder}.  with and without return a changed copy and 
+ * leave this map unchanged, so a map can be shared freely between threads.  A copy only 
+ * copies the nodes on the path to the key and shares every other node with this map, 
+ * so a change costs O(log n) however large the map is.  The hash of a key is a one to 
+ * one function of the key, so two keys never share a full hash and no collision lists 
+ * are needed.
+ * 
+ * @author Mike Sheliga 
+ */
+public final class IntMap<V> {
+
+	private static final IntMap<Object> EMPTY = new IntMap<>(Node.EMPTY, 0);
+	
+	private final Node root;
+	private final int size;
+
+	private IntMap(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <V> IntMap<V> empty() {return (IntMap<V>) EMPTY;}
+
+	// ------ Queries ------
+	public int size() {return size;}
+	public boolean isEmpty() {return size == 0;}
+
+	/**
+	 * Returns the value of key.
+	 * 
+	 * @param key  a positive key
+	 * @return the value of key, or null if key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		return (key <= 0 ? null : (V) root.get(key, hash(key), 0));
+	} // end get
+
+	public boolean containsKey(int key) {return get(key) != null;}
+
+	/**
+	 * Calls action for every key and value, in no particular order.
+	 * 
+	 * @param action  the routine to call
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(IntObjectConsumer<? super V> action) {
+		root.forEach((IntObjectConsumer<Object>) action);
+	} // end forEach
+
+	/**
+	 * Routine called by forEach, taking a primitive key.
+	 */
+	@FunctionalInterface
+	public interface IntObjectConsumer<V> {
+		void accept(int key, V value);
+	}
+
+	// ------ Copies ------
+	/**
+	 * Returns a copy of this map with key set to value.
+	 * 
+	 * @param key    a positive key
+	 * @param value  the non null value for key
+	 * @return a new map, this map is unchanged
+	 */
+	public IntMap<V> with(int key, V value) {
+		checkEntry(key, value);
+		boolean[] added = new boolean[1];
+		Node newRoot = root.put(key, hash(key), value, 0, null, added);
+		return (newRoot == root ? this : new IntMap<>(newRoot, added[0] ? size + 1 : size));
+	} // end with
+
+	/**
+	 * Returns a copy of this map without key.
+	 * 
+	 * @param key  the key to remove
+	 * @return a new map, or this map if key is not in it
+	 */
+	public IntMap<V> without(int key) {
+		if (key <= 0) return this;
+		boolean[] removed = new boolean[1];
+		Node newRoot = root.remove(key, hash(key), 0, null, removed);
+		return (removed[0] ? new IntMap<>(newRoot, size - 1) : this);
+	} // end without
+
+	/**
+	 * Returns a copy of this map with the value of key replaced by update(oldValue), 
+	 * or removed if update returns null.  oldValue is null if key is not in the map.
+	 * 
+	 * @param key     a positive key
+	 * @param update  computes the new value from the old value
+	 * @return a new map, this map is unchanged
+	 */
+	public IntMap<V> compute(int key, UnaryOperator<V> update) {
+		V value = update.apply(get(key));
+		return (value == null ? without(key) : with(key, value));
+	} // end compute
+
+	/**
+	 * Spreads sequential ids over the trie.  Multiplying by an odd number and folding the 
+	 * high half into the low half can both be undone, so different keys have different hashes.
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static void checkEntry(int key, Object value) {
+		if (key <= 0) throw new IllegalArgumentException("IntMap keys must be positive: " + key);
+		if (value == null) throw new IllegalArgumentException("IntMap values must not be null");
+	}
+
+	// ------ Trie nodes ------
+	/**
+	 * One node of the trie.  Bit b of dataMap is set if the keys whose hash has the value b 
+	 * in this node's 5 bits are a single key stored inline, and bit b of nodeMap if they are 
+	 * in a child node.  Entries are stored in bit order, so an entry's index is the number 
+	 * of lower bits set.  A child always holds at least two keys; removing a key moves a 
+	 * last remaining key up into the parent.
+	 * <p>
+	 * A node is never changed once its map is built.  A Builder changes the nodes it 
+	 * created itself (those whose owner is the builder) in place rather than copying them.
+	 */
+	private static final class Node {
+		static final Node EMPTY = new Node(null, 0, 0, new int[0], new Object[0], new Node[0]);
+
+		final Object owner;  // the builder that may change this node, or null
+		int dataMap;     // the fields only change while owner is filling the map
+		int nodeMap;
+		int[] keys;
+		Object[] values;
+		Node[] nodes;
+
+		Node(Object owner, int dataMap, int nodeMap, int[] keys, Object[] values, Node[] nodes) {
+			this.owner = owner;
+			this.dataMap = dataMap;
+			this.nodeMap = nodeMap;
+			this.keys = keys;
+			this.values = values;
+			this.nodes = nodes;
+		}
+
+		static int bit(int hash, int shift) {return 1 << ((hash >>> shift) & 31);}
+		static int index(int map, int bit) {return Integer.bitCount(map & (bit - 1));}
+
+		Object get(int key, int hash, int shift) {
+			Node node = this;
+			while (true) {
+				int bit = bit(hash, shift);
+				if ((node.dataMap & bit) != 0) {
+					int at = index(node.dataMap, bit);
+					return (node.keys[at] == key ? node.values[at] : null);
+				}
+				if ((node.nodeMap & bit) == 0) return null;
+				node = node.nodes[index(node.nodeMap, bit)];
+				shift += 5;
+			}
+		} // end get
+
+		void forEach(IntObjectConsumer<Object> action) {
+			for (int i = 0; i < keys.length; i++) action.accept(keys[i], values[i]);
+			for (Node node : nodes) node.forEach(action);
+		}
+
+		/**
+		 * Returns this node if owner may change it, otherwise a copy with its own arrays 
+		 * that owner may change.  A null owner always gets a copy.
+		 */
+		private Node editable(Object owner) {
+			if (owner != null && this.owner == owner) return this;
+			return new Node(owner, dataMap, nodeMap, keys.clone(), values.clone(), nodes.clone());
+		}
+
+		/**
+		 * Returns this node, or a changed copy, with key set to value.  added[0] is set if 
+		 * key was not in the node.
+		 */
+		Node put(int key, int hash, Object value, int shift, Object owner, boolean[] added) {
+			int bit = bit(hash, shift);
+			if ((dataMap & bit) != 0) {
+				int at = index(dataMap, bit);
+				if (keys[at] == key) {
+					if (values[at] == value) return this;
+					Node result = editable(owner);
+					result.values[at] = value;
+					return result;
+				}
+				// two keys share these bits, so both move down into a new child
+				Node child = pair(keys[at], hash(keys[at]), values[at], key, hash, value, shift + 5, owner);
+				added[0] = true;
+				int nodeAt = index(nodeMap, bit);
+				Node result = editable(owner);
+				result.dataMap ^= bit;
+				result.nodeMap |= bit;
+				result.keys = removeAt(result.keys, at);
+				result.values = removeAt(result.values, at);
+				result.nodes = insertAt(result.nodes, nodeAt, child);
+				return result;
+			}
+			if ((nodeMap & bit) != 0) {
+				int at = index(nodeMap, bit);
+				Node child = nodes[at].put(key, hash, value, shift + 5, owner, added);
+				if (child == nodes[at]) return this;  // unchanged, or changed in place by a builder
+				Node result = editable(owner);
+				result.nodes[at] = child;
+				return result;
+			}
+			added[0] = true;
+			int at = index(dataMap, bit);
+			Node result = editable(owner);
+			result.dataMap |= bit;
+			result.keys = insertAt(result.keys, at, key);
+			result.values = insertAt(result.values, at, value);
+			return result;
+		} // end put
+
+		/**
+		 * Returns a node holding two keys whose hashes agree below shift.
+		 */
+		private static Node pair(int key1, int hash1, Object value1, int key2, int hash2, Object value2, int shift, Object owner) {
+			int bit1 = bit(hash1, shift), bit2 = bit(hash2, shift);
+			if (bit1 == bit2) {
+				return new Node(owner, 0, bit1, new int[0], new Object[0], 
+					new Node[] {pair(key1, hash1, value1, key2, hash2, value2, shift + 5, owner)});
+			}
+			return (Integer.compareUnsigned(bit1, bit2) < 0 ? 
+				new Node(owner, bit1 | bit2, 0, new int[] {key1, key2}, new Object[] {value1, value2}, new Node[0]) : 
+				new Node(owner, bit1 | bit2, 0, new int[] {key2, key1}, new Object[] {value2, value1}, new Node[0]));
+		} // end pair
+
+		/**
+		 * Returns this node, or a changed copy, without key.  removed[0] is set if key was 
+		 * in the node.
+		 */
+		Node remove(int key, int hash, int shift, Object owner, boolean[] removed) {
+			int bit = bit(hash, shift);
+			if ((dataMap & bit) != 0) {
+				int at = index(dataMap, bit);
+				if (keys[at] != key) return this;
+				removed[0] = true;
+				Node result = editable(owner);
+				result.dataMap ^= bit;
+				result.keys = removeAt(result.keys, at);
+				result.values = removeAt(result.values, at);
+				return result;
+			}
+			if ((nodeMap & bit) == 0) return this;
+			int at = index(nodeMap, bit);
+			Node child = nodes[at].remove(key, hash, shift + 5, owner, removed);
+			if (!removed[0]) return this;
+			int dataAt = index(dataMap, bit);
+			Node result = editable(owner);
+			if (child.nodeMap == 0 && child.keys.length == 1) {
+				// the child's last key moves up into this node
+				result.nodeMap ^= bit;
+				result.dataMap |= bit;
+				result.nodes = removeAt(result.nodes, at);
+				result.keys = insertAt(result.keys, dataAt, child.keys[0]);
+				result.values = insertAt(result.values, dataAt, child.values[0]);
+			} else {
+				result.nodes[at] = child;
+			}
+			return result;
+		} // end remove
+	} // end class Node
+
+	// ------ array copies used by the nodes ------
+	private static int[] insertAt(int[] array, int at, int value) {
+		int[] result = new int[array.length + 1];
+		System.arraycopy(array, 0, result, 0, at);
+		result[at] = value;
+		System.arraycopy(array, at, result, at + 1, array.length - at);
+		return result;
+	}
+
+	private static <T> T[] insertAt(T[] array, int at, T value) {
+		T[] result = Arrays.copyOf(array, array.length + 1);
+		System.arraycopy(array, at, result, at + 1, array.length - at);
+		result[at] = value;
+		return result;
+	}
+
+	private static int[] removeAt(int[] array, int at) {
+		int[] result = new int[array.length - 1];
+		System.arraycopy(array, 0, result, 0, at);
+		System.arraycopy(array, at + 1, result, at, array.length - at - 1);
+		return result;
+	}
+
+	private static <T> T[] removeAt(T[] array, int at) {
+		T[] result = Arrays.copyOf(array, array.length - 1);
+		System.arraycopy(array, at + 1, result, at, array.length - at - 1);
+		return result;
+	}
+
+	// ------ Builder ------
+	/**
+	 * Mutable map used to fill an IntMap, for example while streaming rows from the database. 
+	 * The builder changes the nodes it created in place, so filling it does not copy them. 
+	 * A builder must not be used after build.
+	 */
+	public static final class Builder<V> {
+		private Node root = Node.EMPTY;
+		private int size;
+		private Object owner = new Object();  // marks the nodes this builder may change
+		private final boolean[] changed = new boolean[1];  // set by the node routines
+
+		public Builder() { }
+
+		/**
+		 * @param expectedSize  the number of keys expected, not needed by the trie
+		 */
+		public Builder(int expectedSize) { }
+
+		/**
+		 * Sets the value of key.
+		 * 
+		 * @param key    a positive key
+		 * @param value  a non null value
+		 * @return this builder
+		 */
+		public Builder<V> put(int key, V value) {
+			checkEntry(key, value);
+			changed[0] = false;
+			root = root.put(key, hash(key), value, 0, owner, changed);
+			if (changed[0]) size++;
+			return this;
+		} // end put
+
+		/**
+		 * Removes key.
+		 * 
+		 * @param key  the key to remove
+		 * @return this builder
+		 */
+		public Builder<V> remove(int key) {
+			if (key <= 0) return this;
+			changed[0] = false;
+			root = root.remove(key, hash(key), 0, owner, changed);
+			if (changed[0]) size--;
+			return this;
+		} // end remove
+
+		@SuppressWarnings("unchecked")
+		public V get(int key) {
+			return (key <= 0 ? null : (V) root.get(key, hash(key), 0));
+		} // end get
+
+		public IntMap<V> build() {
+			IntMap<V> map = new IntMap<>(root, size);
+			owner = null;  // the map's nodes can no longer be changed
+			root = null;
+			return map;
+		}
+	} // end class Builder
+
+	// ------ int array helpers for adjacency lists ------
+	/**
+	 * Returns a sorted copy of ids with id added, or ids itself if id is already present.
+	 * 
+	 * @param ids  a sorted array of ids
+	 * @param id   the id to add
+	 * @return a sorted array containing id
+	 */
+	static int[] addId(int[] ids, int id) {
+		int at = Arrays.binarySearch(ids, id);
+		if (at >= 0) return ids;
+		at = -at - 1;
+		int[] result = new int[ids.length + 1];
+		System.arraycopy(ids, 0, result, 0, at);
+		result[at] = id;
+		System.arraycopy(ids, at, result, at + 1, ids.length - at);
+		return result;
+	} // end addId
+
+	/**
+	 * Returns a copy of ids without id, or ids itself if id is not present.
+	 * 
+	 * @param ids  a sorted array of ids
+	 * @param id   the id to remove
+	 * @return a sorted array not containing id
+	 */
+	static int[] removeId(int[] ids, int id) {
+		int at = Arrays.binarySearch(ids, id);
+		if (at < 0) return ids;
+		int[] result = new int[ids.length - 1];
+		System.arraycopy(ids, 0, result, 0, at);
+		System.arraycopy(ids, at + 1, result, at, ids.length - at - 1);
+		return result;
+	} // end removeId
+
+	/**
+	 * Returns the values of ids that are in map, in the order of ids.
+	 * 
+	 * @param map  the map holding the values
+	 * @param ids  the keys of the values to return
+	 * @return a new list of the values found
+	 */
+	static <V> List<V> valuesOf(IntMap<V> map, int[] ids) {
+		List<V> list = new ArrayList<>(ids.length);
+		for (int id : ids) {
+			V value = map.get(id);
+			if (value != null) list.add(value);
+		}
+		return list;
+	}
+	
+} // end class IntMap
@@ -0,0 +1,230 @@
+package coalcamps.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import coalcamps.classes.CampLease;
+import coalcamps.classes.LeaseOccupancy;
+import coalcamps.dao.WriteListener;
+
+/** 
+ * In-memory index of camp leases answering "who leased camp X in year Y" and "which 
+ * leases of camp X overlap these years" without loading any CampLease.  
+ * <p>
+ * Each camp's leases are held in an immutable augmented interval tree: a balanced binary 
+ * search tree on beginYear, stored as an array sorted by beginYear with each subtree 
+ * rooted at the middle of its range, where every node also holds the latest endYear of 
+ * its subtree.  A query skips any subtree whose latest endYear is before the range and 
+ * any right subtree whose root begins after it, so it takes O(log n) per lease returned 
+ * whether or not a camp's leases overlap one another.
+ * <p>
+ * The index is loaded from the database on first use and kept current as a 
+ * WriteListener of the CampLeaseDAO.  Bulk changes discard it so it is reloaded on 
+ * next use.  Queries never lock; changes replace a camp's tree under a lock.
+ * 
+ * @author Mike Sheliga 
+ */
+public class LeaseOccupancyIndex implements WriteListener<CampLease> {
+
+	// ============ Instance variables and getter-setters ============
+	/**
+	 *  Bean from applicationContext.xml.  Set via dependency injection.
+	 */
+	private SessionFactory sessionFactory;
+	private volatile Map<Integer, CampTree> camps;   // camp id to tree, null until loaded
+	private final Map<Integer, Integer> leaseCamps = new ConcurrentHashMap<>();  // lease id to camp id
+
+	public void setSessionFactory(SessionFactory sessionFactory) {this.sessionFactory = sessionFactory;}
+	public SessionFactory getSessionFactory() {return sessionFactory;}
+
+	/**
+	 * Immutable leases of one camp in an augmented interval tree.  leases is sorted by 
+	 * beginYear and the root of the subtree over leases[low..high] is leases[(low + high) / 2].
+	 */
+	private static final class CampTree {
+		static final CampTree EMPTY = new CampTree(new LeaseOccupancy[0]);
+		final LeaseOccupancy[] leases;
+		final int[] maxEnds;  // maxEnds[i] is the latest endYear of the subtree rooted at leases[i]
+
+		CampTree(LeaseOccupancy[] leases) {
+			Arrays.sort(leases, Comparator.comparingInt(LeaseOccupancy::getBeginYear));
+			this.leases = leases;
+			maxEnds = new int[leases.length];
+			fillMaxEnds(0, leases.length - 1);
+		} // end CampTree constructor
+
+		private int fillMaxEnds(int low, int high) {
+			if (low > high) return Integer.MIN_VALUE;
+			int mid = (low + high) >>> 1;
+			int maxEnd = Math.max(leases[mid].getEndYear(), Math.max(fillMaxEnds(low, mid - 1), fillMaxEnds(mid + 1, high)));
+			maxEnds[mid] = maxEnd;
+			return maxEnd;
+		}
+
+		/**
+		 * Adds the leases of the subtree over leases[low..high] sharing a year with fromYear 
+		 * to toYear to result, in beginYear order.
+		 */
+		void collect(int low, int high, int fromYear, int toYear, List<LeaseOccupancy> result) {
+			if (low > high) return;
+			int mid = (low + high) >>> 1;
+			if (maxEnds[mid] < fromYear) return;  // the whole subtree ends before the range
+			collect(low, mid - 1, fromYear, toYear, result);
+			if (leases[mid].getBeginYear() > toYear) return;  // so does every lease after it
+			if (leases[mid].getEndYear() >= fromYear) result.add(leases[mid]);
+			collect(mid + 1, high, fromYear, toYear, result);
+		} // end collect
+
+		List<LeaseOccupancy> overlapping(int fromYear, int toYear) {
+			List<LeaseOccupancy> result = new ArrayList<>();
+			collect(0, leases.length - 1, fromYear, toYear, result);
+			return result;
+		}
+
+		CampTree with(LeaseOccupancy lease) {
+			List<LeaseOccupancy> list = new ArrayList<>(leases.length + 1);
+			for (LeaseOccupancy l : leases) if (l.getLeaseId() != lease.getLeaseId()) list.add(l);
+			list.add(lease);
+			return new CampTree(list.toArray(new LeaseOccupancy[0]));
+		}
+
+		CampTree without(int leaseId) {
+			List<LeaseOccupancy> list = new ArrayList<>(leases.length);
+			for (LeaseOccupancy l : leases) if (l.getLeaseId() != leaseId) list.add(l);
+			return list.isEmpty() ? null : new CampTree(list.toArray(new LeaseOccupancy[0]));
+		}
+	} // end class CampTree
+
+	// ------ Queries ------
+	/**
+	 * Returns the leases of a camp in effect during year.
+	 * 
+	 * @param campId  the id of the CoalCamp
+	 * @param year    the year of interest
+	 * @return the leases whose years include year, in beginYear order.
+	 */
+	public List<LeaseOccupancy> getLeasesInYear(int campId, int year) {
+		return getLeasesOverlapping(campId, year, year);
+	} // end getLeasesInYear
+
+	/**
+	 * Returns the leases of a camp sharing at least one year with fromYear to toYear.
+	 * 
+	 * @param campId    the id of the CoalCamp
+	 * @param fromYear  the first year of the range
+	 * @param toYear    the last year of the range
+	 * @return the overlapping leases in beginYear order, empty if there are none.
+	 */
+	public List<LeaseOccupancy> getLeasesOverlapping(int campId, int fromYear, int toYear) {
+		return getCamps().getOrDefault(campId, CampTree.EMPTY).overlapping(fromYear, toYear);
+	} // end getLeasesOverlapping
+
+	/**
+	 * Returns true if any committed lease of a camp other than ignoreLeaseId shares a year 
+	 * with fromYear to toYear.  The index only changes after a commit, so a false result 
+	 * does not cover leases written by transactions still open or just committing; 
+	 * CampLeaseDAOImpl checks those against the database.
+	 * 
+	 * @param campId         the id of the CoalCamp
+	 * @param fromYear       the first year of the range
+	 * @param toYear         the last year of the range
+	 * @param ignoreLeaseId  the id of a lease being updated, or 0 for a new lease
+	 * @return true if the range conflicts with an existing lease
+	 */
+	public boolean hasOverlap(int campId, int fromYear, int toYear, int ignoreLeaseId) {
+		for (LeaseOccupancy lease : getLeasesOverlapping(campId, fromYear, toYear)) {
+			if (lease.getLeaseId() != ignoreLeaseId) return true;
+		}
+		return false;
+	} // end hasOverlap
+
+	/**
+	 * Returns the number of leases in the index.
+	 * 
+	 * @return the number of indexed leases, loading the index if needed
+	 */
+	public int size() {
+		getCamps();
+		return leaseCamps.size();
+	}
+
+	// ------ WriteListener ------
+	@Override
+	public void onSaved(CampLease lease) {put(LeaseOccupancy.of(lease));}
+
+	@Override
+	public void onUpdated(CampLease lease) {put(LeaseOccupancy.of(lease));}
+
+	@Override
+	public synchronized void onDeleted(CampLease lease) {
+		if (camps == null) return;  // loaded from the database on next use
+		Integer campId = leaseCamps.remove(lease.getId());
+		if (campId != null) camps.computeIfPresent(campId, (id, tree) -> tree.without(lease.getId()));
+	} // end onDeleted
+
+	@Override
+	public synchronized void onBulkChange() {
+		camps = null;
+		leaseCamps.clear();
+	}
+
+	/**
+	 * Adds or replaces a lease, moving it if its camp changed.
+	 */
+	private synchronized void put(LeaseOccupancy lease) {
+		if (camps == null) return;
+		Integer oldCampId = leaseCamps.put(lease.getLeaseId(), lease.getCampId());
+		if (oldCampId != null && oldCampId != lease.getCampId()) {
+			camps.computeIfPresent(oldCampId, (id, tree) -> tree.without(lease.getLeaseId()));
+		}
+		camps.compute(lease.getCampId(), (id, tree) -> (tree == null ? CampTree.EMPTY : tree).with(lease));
+	} // end put
+
+	// ------ Loading ------
+	private Map<Integer, CampTree> getCamps() {
+		Map<Integer, CampTree> result = camps;
+		return (result != null ? result : load());
+	}
+
+	/**
+	 * Loads every lease with one projection query.  
+	 * 
+	 * @return the loaded camp trees, or an empty map (not kept) if the query failed.
+	 */
+	private synchronized Map<Integer, CampTree> load() {
+		if (camps != null) return camps;
+		StatelessSession session = null;
+		try {
+			session = sessionFactory.openStatelessSession();
+			List<LeaseOccupancy> leases = session.createQuery("SELECT new coalcamps.classes.LeaseOccupancy(" + 
+				"lease.id, lease.campLeased.id, lease.companyLeasing.id, lease.beginYear, lease.endYear) " + 
+				"FROM CampLease lease", LeaseOccupancy.class).getResultList();
+			Map<Integer, List<LeaseOccupancy>> byCamp = new HashMap<>();
+			leaseCamps.clear();
+			for (LeaseOccupancy lease : leases) {
+				byCamp.computeIfAbsent(lease.getCampId(), id -> new ArrayList<>()).add(lease);
+				leaseCamps.put(lease.getLeaseId(), lease.getCampId());
+			}
+			Map<Integer, CampTree> loaded = new ConcurrentHashMap<>();
+			byCamp.forEach((campId, list) -> loaded.put(campId, new CampTree(list.toArray(new LeaseOccupancy[0]))));
+			camps = loaded;
+			return loaded;
+		} catch (Exception ex) {
+			System.out.println("Could not load lease occupancy index. " + 
+				" ---- Exception Name ---- " + ex.toString() + " " + ex.getMessage() );
+			return Collections.emptyMap();
+		} finally {
+			if (session != null) session.close();
+		} // end try-catch-finally
+	} // end load
+	
+} // end class LeaseOccupancyIndex
@@ -0,0 +1,148 @@
+package coalcamps.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import coalcamps.classes.BaseCCObject;
+import coalcamps.classes.NameSuggestion;
+import coalcamps.dao.WriteListener;
+
+/** 
+ * In-memory sorted index of names for typeahead suggestions.  Entries are kept in a 
+ * ConcurrentSkipListMap ordered by normalized name (see BaseCCObject.normalizeName), so 
+ * the names starting with a prefix are a contiguous range found in O(log n) and the 
+ * first few are returned without touching the rest, even with a million names.
+ * <p>
+ * The index is loaded on first use by streaming the ids and names through a 
+ * StatelessSession, and is kept current as a WriteListener of the entity's DAO.  
+ * Bulk changes discard it so it is reloaded on next use.  Lookups never lock.
+ * 
+ * @author Mike Sheliga 
+ */
+public abstract class NameIndex<T extends BaseCCObject> implements WriteListener<T> {
+
+	// ============ Instance variables and getter-setters ============
+	/**
+	 *  Bean from applicationContext.xml.  Set via dependency injection.
+	 */
+	private SessionFactory sessionFactory;
+	private int fetchSize = Integer.MIN_VALUE;  // see BaseDAOImpl.streamFetchSize
+	private volatile boolean loaded;
+	// normalized name + NUL + id, so equal names of different records are kept apart
+	private final ConcurrentSkipListMap<String, NameSuggestion> names = new ConcurrentSkipListMap<>();
+	private final Map<Integer, String> keysById = new ConcurrentHashMap<>();
+
+	public void setSessionFactory(SessionFactory sessionFactory) {this.sessionFactory = sessionFactory;}
+	public SessionFactory getSessionFactory() {return sessionFactory;}
+	public void setFetchSize(int fetchSize) {this.fetchSize = fetchSize;}
+	public int getFetchSize() {return fetchSize;}
+
+	// ------ Abstract Methods ------
+	/**
+	 * Returns the name of the entity and its name property, such as "CoalCamp" and "campName".
+	 */
+	protected abstract String getEntityName();
+	protected abstract String getNameProperty();
+	protected abstract String nameOf(T e);
+
+	// ------ Queries ------
+	/**
+	 * Returns up to limit names starting with prefix, ignoring case, accents and extra spaces.
+	 * 
+	 * @param prefix  the start of a name as typed, such as "slick"
+	 * @param limit   the maximum number of suggestions
+	 * @return matching ids and names in name order, empty if there are none
+	 */
+	public List<NameSuggestion> suggest(String prefix, int limit) {
+		ensureLoaded();
+		String key = BaseCCObject.normalizeName(prefix);
+		List<NameSuggestion> result = new ArrayList<>(Math.min(Math.max(limit, 0), 64));
+		if (key == null || limit <= 0) return result;
+		for (Map.Entry<String, NameSuggestion> entry : names.tailMap(key).entrySet()) {
+			if (!entry.getKey().startsWith(key) || result.size() >= limit) break;
+			result.add(entry.getValue());
+		}
+		return result;
+	} // end suggest
+
+	public int size() {
+		ensureLoaded();
+		return keysById.size();
+	}
+
+	// ------ WriteListener ------
+	@Override
+	public void onSaved(T e) {put(e.getId(), nameOf(e));}
+
+	@Override
+	public void onUpdated(T e) {put(e.getId(), nameOf(e));}
+
+	@Override
+	public synchronized void onDeleted(T e) {
+		if (!loaded) return;
+		String old = keysById.remove(e.getId());
+		if (old != null) names.remove(old);
+	}
+
+	@Override
+	public synchronized void onBulkChange() {
+		loaded = false;
+		names.clear();
+		keysById.clear();
+	}
+
+	private synchronized void put(int id, String name) {
+		if (loaded) add(id, name);  // otherwise the load will include it
+	}
+
+	private void add(int id, String name) {
+		String old = keysById.remove(id);
+		if (old != null) names.remove(old);
+		if (name == null) return;
+		String key = BaseCCObject.normalizeName(name) + '\u0000' + id;
+		names.put(key, new NameSuggestion(id, name));
+		keysById.put(id, key);
+	} // end add
+
+	// ------ Loading ------
+	private void ensureLoaded() {
+		if (!loaded) load();
+	}
+
+	/**
+	 * Streams every id and name into the index.
+	 */
+	private synchronized void load() {
+		if (loaded) return;
+		long start = System.nanoTime();
+		StatelessSession session = null;
+		ScrollableResults rows = null;
+		try {
+			session = sessionFactory.openStatelessSession();
+			rows = session.createQuery("SELECT e.id, e." + getNameProperty() + " FROM " + getEntityName() + " e")
+				.setFetchSize(fetchSize)
+				.setReadOnly(true)
+				.scroll(ScrollMode.FORWARD_ONLY);
+			while (rows.next()) add(rows.getInteger(0), rows.getString(1));
+			loaded = true;
+			System.out.println("Loaded " + keysById.size() + " " + getEntityName() + " names in " + 
+				(System.nanoTime() - start) / 1000000 + "ms");
+		} catch (Exception ex) {
+			onBulkChange();  // try again on next use
+			System.out.println("Could not load " + getEntityName() + " names. " + 
+				" ---- Exception Name ---- " + ex.toString() + " " + ex.getMessage() );
+		} finally {
+			if (rows != null) rows.close();
+			if (session != null) session.close();
+		} // end try-catch-finally
+	} // end load
+	
+} // end class NameIndex
@@ -0,0 +1,410 @@
+package coalcamps.loader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+
+import coalcamps.classes.BaseCCObject;
+import coalcamps.classes.CampLease;
+import coalcamps.classes.CoalCamp;
+import coalcamps.classes.CoalCompany;
+import coalcamps.classes.ModStamp;
+import coalcamps.dao.BaseDAO;
+
+/** 
+ * Loads coal companies, coal camps and camp leases from CSV files using a hibernate 
+ * StatelessSession.  Rows are read one line at a time and inserted in JDBC batches, with 
+ * a commit every commitSize rows, so archives with millions of rows can be loaded 
+ * without holding them in memory.  A StatelessSession has no first level cache, no 
+ * dirty checking and does not use the second level cache.
+ * <p>
+ * Foreign keys are resolved by name through in-memory maps of company name to id 
+ * and camp name to id, rather than a query per row.  The maps are filled from the 
+ * database on first use and updated as rows are inserted.  The file formats are 
+ * (a header line starting with the first column name is skipped):
+ * <pre>
+ *   companies: companyName,yearFounded
+ *   camps:     campName,yearBuilt,companyName
+ *   leases:    campName,companyName,beginYear,endYear
+ * </pre>
+ * Rows whose company or camp can not be found, or with a bad number or a missing column, 
+ * are skipped and counted.  So are lease rows sharing a year with another lease of the 
+ * camp, in the database or earlier in the file, the overlap CampLeaseDAOImpl refuses.  
+ * The leases are read once into a map of camp id to lease years, so each row is checked 
+ * in memory.  The camps are not locked, so leases saved through the DAO while a lease 
+ * file is loading are not seen.  A database error rolls back the uncommitted rows and marks 
+ * the LoadReport failed.
+ * <p>
+ * Rows are inserted without the DAOs, so their write listeners (the CompanyGraph, 
+ * LeaseOccupancyIndex and name indexes) are not told of each row.  Instead every commit 
+ * calls notifyBulkChange on the DAO of the entity loaded, so the listeners reload on 
+ * next use.  Set companyDao, campDao and leaseDao whenever those listeners are in use.
+ * <p>
+ * As BaseDAOImpl does, rows are inserted with a pending change feed stamp and restamped 
+ * by one UPDATE just before each commit (see ModStamp), so a chunk that takes longer than 
+ * the change feed settle time to load is not missed by consumers of getModifiedSince.
+ * 
+ * @author Mike Sheliga 
+ */
+public class CsvBulkLoader {
+
+	// ============ Instance variables and getter-setters ============
+	/**
+	 *  Bean from applicationContext.xml.  Set via dependency injection.
+	 */
+	private SessionFactory sessionFactory;
+	private int batchSize = 50;
+	private int commitSize = 10000;
+	private Map<String, Integer> companyIds;  // natural key (company name) to id
+	private Map<String, Integer> campIds;     // natural key (camp name) to id
+	private Map<Integer, TreeMap<Integer, Integer>> leaseYears;  // camp id to beginYear to endYear of disjoint year ranges
+	private BaseDAO<CoalCompany> companyDao;  // told of each commit, so its listeners reload
+	private BaseDAO<CoalCamp> campDao;
+	private BaseDAO<CampLease> leaseDao;
+
+	public void setSessionFactory(SessionFactory sessionFactory) {this.sessionFactory = sessionFactory;}
+	public SessionFactory getSessionFactory() {return sessionFactory;}
+
+	public void setBatchSize(int batchSize) {if (batchSize > 0) this.batchSize = batchSize;}
+	public int getBatchSize() {return batchSize;}
+
+	public void setCommitSize(int commitSize) {if (commitSize > 0) this.commitSize = commitSize;}
+	public int getCommitSize() {return commitSize;}
+
+	public void setCompanyDao(BaseDAO<CoalCompany> companyDao) {this.companyDao = companyDao;}
+	public BaseDAO<CoalCompany> getCompanyDao() {return companyDao;}
+
+	public void setCampDao(BaseDAO<CoalCamp> campDao) {this.campDao = campDao;}
+	public BaseDAO<CoalCamp> getCampDao() {return campDao;}
+
+	public void setLeaseDao(BaseDAO<CampLease> leaseDao) {this.leaseDao = leaseDao;}
+	public BaseDAO<CampLease> getLeaseDao() {return leaseDao;}
+
+	// ------ Load routines ------
+	/**
+	 * Loads companies, then camps, then leases so that every foreign key can be resolved.
+	 * 
+	 * @param companies  csv file of coal companies
+	 * @param camps      csv file of coal camps
+	 * @param leases     csv file of camp leases
+	 * @return a list with one LoadReport for each file
+	 */
+	public List<LoadReport> loadAll(Path companies, Path camps, Path leases) {
+		List<LoadReport> reports = new ArrayList<>();
+		reports.add(loadCompanies(companies));
+		reports.add(loadCamps(camps));
+		reports.add(loadLeases(leases));
+		return reports;
+	} // end loadAll
+
+	/**
+	 * Loads coal companies from a csv file with columns companyName,yearFounded.
+	 * 
+	 * @param csv  the file to load
+	 * @return a LoadReport with the number of rows inserted and rows per second
+	 */
+	public LoadReport loadCompanies(Path csv) {
+		return load(csv, "CoalCompany", "companyName", companyDao, 
+			cols -> new CoalCompany(cols[0], Integer.parseInt(cols[1])), 
+			(company, id) -> getCompanyIds().put(((CoalCompany) company).getCompanyName(), id));
+	} // end loadCompanies
+
+	/**
+	 * Loads coal camps from a csv file with columns campName,yearBuilt,companyName.
+	 * 
+	 * @param csv  the file to load
+	 * @return a LoadReport with the number of rows inserted and rows per second
+	 */
+	public LoadReport loadCamps(Path csv) {
+		return load(csv, "CoalCamp", "campName", campDao, cols -> {
+			CoalCompany company = companyRef(cols[2]);
+			return company == null ? null : new CoalCamp(cols[0], Integer.parseInt(cols[1]), company);
+		}, (camp, id) -> getCampIds().put(((CoalCamp) camp).getCampName(), id));
+	} // end loadCamps
+
+	/**
+	 * Loads camp leases from a csv file with columns campName,companyName,beginYear,endYear.
+	 * 
+	 * @param csv  the file to load
+	 * @return a LoadReport with the number of rows inserted and rows per second
+	 */
+	public LoadReport loadLeases(Path csv) {
+		synchronized (this) {
+			leaseYears = null;  // read again, leases may have been written since the last load
+		}
+		return load(csv, "CampLease", "campName", leaseDao, cols -> {
+			CoalCamp camp = campRef(cols[0]);
+			CoalCompany company = companyRef(cols[1]);
+			if (camp == null || company == null) return null;
+			CampLease lease = new CampLease(camp, company, Integer.parseInt(cols[2]), Integer.parseInt(cols[3]));
+			return overlapsLeaseYears(lease) ? null : lease;
+		}, (lease, id) -> addLeaseYears((CampLease) lease));
+	} // end loadLeases
+
+	/**
+	 * Reads a csv file one line at a time and inserts a record for each row using a 
+	 * StatelessSession.  Inserts are sent as JDBC batches and committed every commitSize rows.
+	 * After each commit the write listeners of dao are told of a bulk change.
+	 * 
+	 * @param csv        the file to load
+	 * @param entity     the entity name, used for messages and the restamp before each commit
+	 * @param header     the first column name, used to recognize a header line
+	 * @param dao        the DAO of the entity, whose listeners are notified, or null
+	 * @param rowMapper  creates the record for a row, or returns null if it can not be resolved
+	 * @param inserted   called with each inserted record and its generated id
+	 * @return a LoadReport with the number of rows inserted and skipped
+	 */
+	private LoadReport load(Path csv, String entity, String header, BaseDAO<?> dao, 
+			RowMapper rowMapper, InsertListener inserted) {
+		LoadReport report = new LoadReport(entity);
+		StatelessSession session = null;
+		Transaction tx = null;
+		long start = System.nanoTime();
+		try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+			session = sessionFactory.openStatelessSession();
+			session.setJdbcBatchSize(batchSize);
+			tx = session.beginTransaction();
+			long pendingStamp = ModStamp.newPendingStamp();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().isEmpty() || line.startsWith(header)) continue;
+				BaseCCObject ccObj = null;
+				try {
+					ccObj = rowMapper.map(parseLine(line));
+				} catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {  // bad number or missing column
+					ccObj = null;  // database errors from resolving names are not caught, and fail the load
+				}
+				if (ccObj == null) {
+					report.skipped++;
+					continue;
+				}
+				ccObj.setModStamp(pendingStamp);
+				int id = (Integer) session.insert(ccObj);
+				inserted.inserted(ccObj, id);
+				if (++report.inserted % commitSize == 0) {
+					restamp(session, entity, pendingStamp);
+					tx.commit();
+					pendingStamp = ModStamp.newPendingStamp();
+					notifyBulkChange(dao);
+					tx = session.beginTransaction();
+				}
+			} // end while
+			restamp(session, entity, pendingStamp);
+			tx.commit();
+			notifyBulkChange(dao);
+		} catch (Exception ex) {
+			if (tx != null && tx.isActive()) tx.rollback();
+			report.failed = true;
+			resetKeys();  // maps may hold names that were rolled back
+			System.out.println("Could not bulk load " + entity + " from " + csv + " after " + 
+				report.inserted + " rows ---- Exception Name ---- " + ex.toString() + ex.getMessage() );
+		} finally {
+			if (session != null) session.close();
+		} // end try-catch-finally
+		report.elapsedNanos = System.nanoTime() - start;
+		System.out.println(report);
+		return report;
+	} // end load
+
+	/**
+	 * Replaces the pending stamp of the rows inserted since the last commit with a stamp 
+	 * taken now, just before the commit.
+	 */
+	private static void restamp(StatelessSession session, String entity, long pendingStamp) {
+		session.createQuery("UPDATE " + entity + " e SET e.modStamp = :stamp WHERE e.modStamp = :pending")
+			.setParameter("stamp", ModStamp.next())
+			.setParameter("pending", pendingStamp)
+			.executeUpdate();
+	} // end restamp
+
+	private static void notifyBulkChange(BaseDAO<?> dao) {
+		if (dao != null) dao.notifyBulkChange();
+	}
+
+	// ------ Natural key maps ------
+	private synchronized Map<String, Integer> getCompanyIds() {
+		if (companyIds == null) companyIds = loadKeys("SELECT co.companyName, co.id FROM CoalCompany co");
+		return companyIds;
+	}
+
+	private synchronized Map<String, Integer> getCampIds() {
+		if (campIds == null) campIds = loadKeys("SELECT camp.campName, camp.id FROM CoalCamp camp");
+		return campIds;
+	}
+
+	private synchronized void resetKeys() {
+		companyIds = null;
+		campIds = null;
+		leaseYears = null;
+	}
+
+	// ------ Lease years ------
+	/**
+	 * Returns true if lease shares a year with a lease of its camp.  The year ranges of a 
+	 * camp do not overlap, so only the last range beginning by the lease's endYear can.
+	 */
+	private synchronized boolean overlapsLeaseYears(CampLease lease) {
+		TreeMap<Integer, Integer> years = getLeaseYears().get(lease.getCampLeased().getId());
+		if (years == null) return false;
+		Map.Entry<Integer, Integer> range = years.floorEntry(lease.getEndYear());
+		return range != null && range.getValue() >= lease.getBeginYear();
+	}
+
+	private synchronized void addLeaseYears(CampLease lease) {
+		getLeaseYears().computeIfAbsent(lease.getCampLeased().getId(), id -> new TreeMap<>())
+			.put(lease.getBeginYear(), lease.getEndYear());
+	}
+
+	/**
+	 * Reads the years of every existing lease.  Leases of a camp that already overlap, 
+	 * saved before the DAO refused them, are merged into one range.
+	 */
+	private synchronized Map<Integer, TreeMap<Integer, Integer>> getLeaseYears() {
+		if (leaseYears != null) return leaseYears;
+		Map<Integer, TreeMap<Integer, Integer>> loaded = new HashMap<>();
+		StatelessSession session = null;
+		try {
+			session = sessionFactory.openStatelessSession();
+			List<Object[]> rows = session.createQuery("SELECT lease.campLeased.id, lease.beginYear, lease.endYear " + 
+				"FROM CampLease lease ORDER BY lease.campLeased.id, lease.beginYear", Object[].class).getResultList();
+			for (Object[] row : rows) {
+				TreeMap<Integer, Integer> years = loaded.computeIfAbsent((Integer) row[0], id -> new TreeMap<>());
+				int begin = (Integer) row[1], end = (Integer) row[2];
+				Map.Entry<Integer, Integer> last = years.lastEntry();
+				if (last != null && last.getValue() >= begin) {
+					years.put(last.getKey(), Math.max(last.getValue(), end));
+				} else {
+					years.put(begin, end);
+				}
+			} // end for
+		} finally {
+			if (session != null) session.close();
+		}
+		leaseYears = loaded;
+		return leaseYears;
+	} // end getLeaseYears
+
+	/**
+	 * Reads the name and id of every existing record so rows can refer to records 
+	 * that were loaded earlier.
+	 * 
+	 * @param hql  a query returning name and id pairs
+	 * @return a map of name to id
+	 */
+	private Map<String, Integer> loadKeys(String hql) {
+		Map<String, Integer> keys = new HashMap<>();
+		StatelessSession session = null;
+		try {
+			session = sessionFactory.openStatelessSession();
+			for (Object[] row : session.createQuery(hql, Object[].class).getResultList()) {
+				keys.put((String) row[0], (Integer) row[1]);
+			}
+		} finally {
+			if (session != null) session.close();
+		}
+		return keys;
+	} // end loadKeys
+
+	/**
+	 * Returns an unloaded CoalCompany holding only the id of the named company, which is 
+	 * all hibernate needs to write the foreign key.
+	 */
+	private CoalCompany companyRef(String name) {
+		Integer id = getCompanyIds().get(name);
+		if (id == null) return null;
+		CoalCompany company = new CoalCompany();
+		company.setId(id);
+		return company;
+	}
+
+	private CoalCamp campRef(String name) {
+		Integer id = getCampIds().get(name);
+		if (id == null) return null;
+		CoalCamp camp = new CoalCamp();
+		camp.setId(id);
+		return camp;
+	}
+
+	/**
+	 * Splits a csv line into trimmed columns.  Columns may be enclosed in double quotes 
+	 * so that they can contain commas, with "" representing a quote.
+	 */
+	static String[] parseLine(String line) {
+		List<String> cols = new ArrayList<>();
+		StringBuilder col = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					col.append('"');
+					i++;
+				} else if (c == '"') {
+					quoted = false;
+				} else {
+					col.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				cols.add(col.toString().trim());
+				col.setLength(0);
+			} else {
+				col.append(c);
+			}
+		} // end for
+		cols.add(col.toString().trim());
+		return cols.toArray(new String[cols.size()]);
+	} // end parseLine
+
+	// ------ Helper types ------
+	private interface RowMapper {
+		BaseCCObject map(String[] cols);
+	}
+
+	private interface InsertListener {
+		void inserted(BaseCCObject ccObj, int id);
+	}
+
+	/**
+	 * Result of loading one csv file.
+	 */
+	public static class LoadReport {
+		private final String entity;
+		private long inserted;
+		private long skipped;
+		private long elapsedNanos;
+		private boolean failed;
+
+		LoadReport(String entity) {this.entity = entity;}
+
+		public String getEntity() {return entity;}
+		public long getInserted() {return inserted;}
+		public long getSkipped() {return skipped;}
+		public long getElapsedMillis() {return elapsedNanos / 1000000;}
+		public boolean isFailed() {return failed;}
+
+		/** @return the number of rows inserted per second. */
+		public double getRowsPerSecond() {
+			return elapsedNanos == 0 ? 0.0 : inserted * 1.0e9 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Bulk load %s: inserted=%d skipped=%d in %dms (%.0f rows/second)%s", 
+				entity, inserted, skipped, getElapsedMillis(), getRowsPerSecond(), failed ? " FAILED" : "");
+		}
+	} // end class LoadReport
+
+} // end class CsvBulkLoader
@@ -3,6 +3,22 @@ package coalcamps.mainTest;
 import coalcamps.classes.CampLease;
 import coalcamps.classes.CoalCamp;
 import coalcamps.classes.CoalCompany;
+import coalcamps.dao.ChangeCursor;
+import coalcamps.dao.async.DaoExecutor;
+import coalcamps.monitor.CacheStatistics;
+import coalcamps.monitor.DaoMetrics;
+import coalcamps.monitor.HibernateStatistics;
+import coalcamps.monitor.HqlStatistics;
+import coalcamps.monitor.PoolMetrics;
+import coalcamps.monitor.SlowQueryLog;
+import coalcamps.monitor.StatementBudget;
+import coalcamps.index.CompanyGraph;
+import coalcamps.index.GraphSnapshot;
+import coalcamps.loader.CsvBulkLoader;
+import coalcamps.routing.ReadWriteRoutingDataSource;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 
 public class Sp502Hib5212BaseDAO2 { 
@@ -19,8 +35,11 @@ public class Sp502Hib5212BaseDAO2 {
 		// show fewer log msgs - way too many to read.
 		java.util.logging.Logger.getLogger("org.hibernate").setLevel(Level.SEVERE);
 				
-		if (CoalCompany.getCoalCompanyCount() == 0) {
-		 	addCoalCampData();
+		if (args.length == 3) {  // companies.csv camps.csv leases.csv
+			CsvBulkLoader loader = CoalCompany.getApplicationContext().getBean(CsvBulkLoader.class);
+			loader.loadAll(Paths.get(args[0]), Paths.get(args[1]), Paths.get(args[2]));
+		} else if (CoalCompany.getCoalCompanyCount() == 0) {
+		 	CoalCompany.inUnitOfWork(Sp502Hib5212BaseDAO2::addCoalCampData);  // one commit for all records
 		}
 				
 		// Couldnt use lambdas originally as java version was 1.5 in project and 1.6 in pom.
@@ -41,12 +60,47 @@ public class Sp502Hib5212BaseDAO2 {
 			System.out.println(cl.toString());
 		}
 		System.out.println(" ------ getCampLeases(eager=true above) -------- ");	
+		try (StatementBudget.Scope scope = StatementBudget.open("companies of lazy camps")) {
+			CoalCompany.inUnitOfWork(() -> CoalCamp.getCoalCamps(false).forEach(c -> c.getCompanyBuilding().getCompanyName()));
+			System.out.println(scope);
+		}
+		// independent queries run at the same time, taking as long as the slowest one
+		CompletableFuture<List<CoalCompany>> companies = CoalCompany.getCoalCompaniesAsync();
+		CompletableFuture<List<CoalCamp>> camps = CoalCamp.getCoalCampsAsync(true);
+		CompletableFuture<List<CampLease>> leases = CampLease.getCampLeasesAsync(true);
+		CompletableFuture.allOf(companies, camps, leases).join();
+		System.out.println("Async: " + companies.join().size() + " companies, " + camps.join().size() + 
+			" camps and " + leases.join().size() + " leases");
+		CoalCamp.getCoalCampSummaries().forEach(System.out::println);  // no entities loaded
+		CampLease.getCampLeaseSummaries().forEach(System.out::println);
+		System.out.println(" ------ camp and lease summaries above -------- ");	
+		CoalCamp slickville = CoalCamp.getById(3);
+		System.out.println("Leases of camp 3 in 1923: " + CampLease.getLeasesInYear(slickville, 1923));
+		new CampLease(slickville, CoalCompany.getCoalCompanies().get(2), 1924, 1930).save();  // refused, overlaps 1924
+		System.out.println("Camps named slickville: " + CoalCamp.searchByName("slickville"));
+		System.out.println("Companies starting with ca: " + CoalCompany.searchByNamePrefix("ca", 10));
+		System.out.println("Camp names starting with Is: " + CoalCamp.suggestNames("Is", 10));
+		// changes newer than db.changeFeed.settleMillis are returned by a later call
+		System.out.println("Coal camp changes: " + CoalCamp.getModifiedSince(ChangeCursor.START, 100));
+		CoalCamp.getById(1);  // second read of camp 1 is served from the second level cache if cache.enabled
+		GraphSnapshot graph = CoalCompany.getApplicationContext().getBean(CompanyGraph.class).getSnapshot();
+		graph.getCompanies().forEach((id, co) -> System.out.println(co.getCompanyName() + " built " + 
+			graph.getCampsBuiltBy(id).size() + " camps and leased " + graph.getLeasesTakenBy(id).size()));
+		System.out.println(CoalCompany.getApplicationContext().getBean(CacheStatistics.class));
+		System.out.println(CoalCompany.getApplicationContext().getBean(PoolMetrics.class));
+		System.out.println(CoalCompany.getApplicationContext().getBean(ReadWriteRoutingDataSource.class));
+		System.out.println(CoalCompany.getApplicationContext().getBean(SlowQueryLog.class));
+		System.out.println(CoalCompany.getApplicationContext().getBean(HibernateStatistics.class));
+		System.out.println(CoalCompany.getApplicationContext().getBean(HqlStatistics.class));
+		System.out.println(CoalCompany.getApplicationContext().getBean(DaoMetrics.class));
+		System.out.println(CoalCompany.getApplicationContext().getBean(DaoExecutor.class));
 			
 		System.out.println("Ending Sp502Hib5212BaseDAO2");
 	} // end main
 		
 		
 	// addCoalCampData (will replicate data if it already exists).
+	// Called in a unit of work, so every save, update and delete is committed together.
 	public static void addCoalCampData( ) { 
 		System.out.println("Inserting records into database.");
 
@@ -0,0 +1,45 @@
+package coalcamps.monitor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessorAdapter;
+
+/** 
+ * Outputs the time taken to create each spring bean that is slower than a threshold, 
+ * such as the dataSource, the schemaMigrator and the SessionFactory.  Times include 
+ * beans created as dependencies of the bean, so the SessionFactory includes the dataSource.
+ * 
+ * @author Mike Sheliga 
+ */
+public class BeanStartupTimer extends InstantiationAwareBeanPostProcessorAdapter {
+
+	/**
+	 *  Beans created faster than this are not output.  Set via dependency injection.
+	 */
+	private long thresholdMillis = 10;
+	private final Map<String, Long> startTimes = new ConcurrentHashMap<String, Long>();
+
+	public void setThresholdMillis(long thresholdMillis) {this.thresholdMillis = thresholdMillis;}
+	public long getThresholdMillis() {return thresholdMillis;}
+
+	@Override
+	public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) throws BeansException {
+		startTimes.put(beanName, System.nanoTime());
+		return null;  // let spring create the bean as usual
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		Long start = startTimes.remove(beanName);
+		if (start != null) {
+			long millis = (System.nanoTime() - start) / 1000000;
+			if (millis >= thresholdMillis) {
+				System.out.println("Bean " + beanName + " created in " + millis + "ms");
+			}
+		}
+		return bean;
+	}
+	
+} // end class BeanStartupTimer
@@ -0,0 +1,122 @@
+package coalcamps.monitor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+
+/** 
+ * Reports hit, miss and put counts for each second level cache region of a 
+ * SessionFactory.  Counts are only collected when hibernate.generate_statistics 
+ * is true (cache.statistics in database.properties).  Exported to JMX by the mbeanExporter
+ * bean, with operations to empty a region or the whole cache.
+ * 
+ * @author Mike Sheliga 
+ */
+public class CacheStatistics implements CacheStatisticsMXBean {
+
+	/**
+	 *  Bean from applicationContext.xml.  Set via dependency injection.
+	 */
+	private SessionFactory sessionFactory;
+
+	public void setSessionFactory(SessionFactory sessionFactory) {this.sessionFactory = sessionFactory;}
+	public SessionFactory getSessionFactory() {return sessionFactory;}
+
+	/**
+	 * Returns the hibernate statistics for the session factory.
+	 * 
+	 * @return the Statistics object shared by all sessions of the factory
+	 */
+	public Statistics getStatistics() {
+		return sessionFactory.getStatistics();
+	}
+
+	/**
+	 * Returns the names of all second level cache regions, such as coalcamps.CoalCompany.
+	 * 
+	 * @return an array of region names, empty if the cache is disabled.
+	 */
+	@Override
+	public String[] getRegionNames() {
+		return getStatistics().getSecondLevelCacheRegionNames();
+	}
+
+	public long getHitCount(String region) {return getRegion(region).getHitCount();}
+	public long getMissCount(String region) {return getRegion(region).getMissCount();}
+	public long getPutCount(String region) {return getRegion(region).getPutCount();}
+	public long getElementCountInMemory(String region) {return getRegion(region).getElementCountInMemory();}
+
+	/**
+	 * Returns the fraction of cache lookups in a region that were hits.
+	 * 
+	 * @param region  the name of the cache region
+	 * @return the hit ratio between 0 and 1, or 0 if the region has not been read.
+	 */
+	@Override
+	public double getHitRatio(String region) {
+		SecondLevelCacheStatistics stats = getRegion(region);
+		long lookups = stats.getHitCount() + stats.getMissCount();
+		return lookups == 0 ? 0.0 : stats.getHitCount() / (double) lookups;
+	} // end getHitRatio
+
+	/**
+	 * Returns a one line summary for every region.
+	 * 
+	 * @return a map of region name to a summary of its hits, misses, puts and size.
+	 */
+	@Override
+	public Map<String, String> getSummary() {
+		Map<String, String> result = new LinkedHashMap<>();
+		for (String region : getRegionNames()) {
+			SecondLevelCacheStatistics stats = getRegion(region);
+			result.put(region, String.format("hits=%d misses=%d puts=%d inMemory=%d hitRatio=%.2f", 
+				stats.getHitCount(), stats.getMissCount(), stats.getPutCount(), 
+				stats.getElementCountInMemory(), getHitRatio(region)));
+		}
+		return result;
+	} // end getSummary
+
+	// ------ Eviction ------
+	/**
+	 * Removes every entry from a region, ie. after the rows were changed outside hibernate.
+	 * 
+	 * @param region  the name of the cache region, such as coalcamps.CoalCamp
+	 * @throws IllegalArgumentException if no entity is cached in the region
+	 */
+	@Override
+	public void evictRegion(String region) {
+		boolean found = false;
+		for (EntityPersister persister : sessionFactory.unwrap(SessionFactoryImplementor.class).getMetamodel().entityPersisters().values()) {
+			if (persister.hasCache() && persister.getCacheAccessStrategy().getRegion().getName().equals(region)) {
+				sessionFactory.getCache().evictEntityRegion(persister.getEntityName());
+				found = true;
+			}
+		}
+		if (!found) throw new IllegalArgumentException("No entity is cached in region " + region);
+	} // end evictRegion
+
+	/**
+	 * Removes every entry from every region, including the query cache.
+	 */
+	@Override
+	public void evictAll() {
+		sessionFactory.getCache().evictAllRegions();
+	}
+
+	private SecondLevelCacheStatistics getRegion(String region) {
+		return getStatistics().getSecondLevelCacheStatistics(region);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("Second level cache:");
+		getSummary().forEach((region, summary) -> sb.append("\n  ").append(region).append(' ').append(summary));
+		return sb.toString();
+	}
+
+} // end class CacheStatistics
@@ -0,0 +1,19 @@
+package coalcamps.monitor;
+
+import java.util.Map;
+
+/**
+ * JMX view of CacheStatistics, registered as coalcamps:type=CacheStatistics.
+ *
+ * @author Mike Sheliga
+ */
+public interface CacheStatisticsMXBean {
+
+	String[] getRegionNames();
+	Map<String, String> getSummary();
+	double getHitRatio(String region);
+
+	void evictRegion(String region);
+	void evictAll();
+
+} // end interface CacheStatisticsMXBean
@@ -0,0 +1,180 @@
+package coalcamps.monitor;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Records a latency histogram, throughput and error count for every method of the DAO beans.
+ * Applied to the *DaoBean beans by a BeanNameAutoProxyCreator in spring4.xml, so the DAO
+ * impls are unchanged.  Calls a DAO makes to its own methods are not counted separately.
+ * <p>
+ * A call is an error if it throws, or if the DAO marked a failure with markFailure while 
+ * it ran.  The DAOs catch their exceptions and return null, 0 or nothing, so their catch 
+ * blocks call markFailure (a failed updateIfCurrent, including a version conflict, is an 
+ * error).  Failure values are also counted for DAOs that do not mark failures: null from a 
+ * method returning a List or other Collection, 0 from save, or a negative int (bulk updates 
+ * and deletes).
+ * <p>
+ * Every exportIntervalSeconds the calls of the interval are output, one line per method
+ * that was called.  Exported to JMX by the mbeanExporter bean.
+ *
+ * @author Mike Sheliga
+ */
+public class DaoMetrics implements MethodInterceptor, InitializingBean, DisposableBean, DaoMetricsMXBean {
+
+	// ============ Instance variables and getter-setters ============
+	private int exportIntervalSeconds = 60;
+
+	/** Histograms by DAO class and then method.  Lookups on the call path allocate nothing. */
+	private final Map<Class<?>, Map<Method, LatencyHistogram>> histograms = new ConcurrentHashMap<>();
+	/** Set by markFailure during the current call of each thread. */
+	private static final ThreadLocal<boolean[]> failed = ThreadLocal.withInitial(() -> new boolean[1]);
+	private final Map<String, LatencyHistogram.Snapshot> lastExport = new ConcurrentHashMap<>();
+	private volatile long startNanos = System.nanoTime();  // call rates are measured from here
+	private ScheduledExecutorService exporter;
+
+	/** Seconds between exports of the interval histograms, 0 for none. */
+	public void setExportIntervalSeconds(int seconds) {this.exportIntervalSeconds = seconds;}
+	@Override
+	public int getExportIntervalSeconds() {return exportIntervalSeconds;}
+
+	// ------ Bean lifecycle ------
+	@Override
+	public void afterPropertiesSet() {
+		if (exportIntervalSeconds <= 0) return;
+		exporter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "dao-metrics-export");
+			thread.setDaemon(true);
+			return thread;
+		});
+		exporter.scheduleAtFixedRate(this::export, exportIntervalSeconds, exportIntervalSeconds, TimeUnit.SECONDS);
+	} // end afterPropertiesSet
+
+	@Override
+	public void destroy() {
+		if (exporter != null) exporter.shutdownNow();
+	}
+
+	// ------ MethodInterceptor ------
+	/**
+	 * Called from a DAO catch block that handles an exception instead of throwing it, so the 
+	 * DAO call running on this thread is counted as an error.
+	 */
+	public static void markFailure() {
+		failed.get()[0] = true;
+	}
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		LatencyHistogram histogram = histogramOf(invocation.getThis().getClass(), invocation.getMethod());
+		boolean[] failure = failed.get();
+		boolean outerFailure = failure[0];  // a DAO call this one is nested in
+		failure[0] = false;
+		long start = System.nanoTime();
+		boolean error = true;
+		try {
+			Object result = invocation.proceed();
+			error = failure[0] || isFailureResult(invocation.getMethod(), result);
+			return result;
+		} finally {
+			failure[0] = outerFailure;
+			histogram.record(System.nanoTime() - start, error);
+		} // end try-finally
+	} // end invoke
+
+	private LatencyHistogram histogramOf(Class<?> daoClass, Method method) {
+		Map<Method, LatencyHistogram> methods = histograms.get(daoClass);
+		if (methods == null) methods = histograms.computeIfAbsent(daoClass, c -> new ConcurrentHashMap<>());
+		LatencyHistogram histogram = methods.get(method);
+		if (histogram == null) histogram = methods.computeIfAbsent(method, m -> new LatencyHistogram(startNanos));
+		return histogram;
+	} // end histogramOf
+
+	private static boolean isFailureResult(Method method, Object result) {
+		Class<?> type = method.getReturnType();
+		if (result == null) return Collection.class.isAssignableFrom(type);
+		if (type == int.class) return (Integer) result < 0 || ((Integer) result == 0 && method.getName().equals("save"));
+		return false;
+	} // end isFailureResult
+
+	// ------ Snapshots and export ------
+	/**
+	 * Returns the histograms of every DAO method called since startup or reset.
+	 *
+	 * @return a map of names such as "CoalCampDAOImpl.getCoalCamps(boolean)" to their histograms, in name order
+	 */
+	public Map<String, LatencyHistogram.Snapshot> getSnapshots() {
+		Map<String, LatencyHistogram.Snapshot> result = new TreeMap<>();
+		histograms.forEach((daoClass, methods) -> methods.forEach((method, histogram) ->
+			result.put(nameOf(daoClass, method), histogram.snapshot())));
+		return result;
+	} // end getSnapshots
+
+	/**
+	 * @return a map of method names to a one line summary of their calls since startup or reset
+	 */
+	@Override
+	public Map<String, String> getSummary() {
+		Map<String, String> result = new LinkedHashMap<>();
+		getSnapshots().forEach((name, snapshot) -> result.put(name, snapshot.toString()));
+		return result;
+	} // end getSummary
+
+	/**
+	 * Discards the histograms of every method.  Calls running during the reset may not be counted.
+	 */
+	@Override
+	public void reset() {
+		startNanos = System.nanoTime();
+		histograms.clear();
+		lastExport.clear();
+	}
+
+	/**
+	 * Outputs the calls of each DAO method since the previous export.
+	 */
+	@Override
+	public void export() {
+		try {
+			StringBuilder sb = new StringBuilder("DAO latency, last " + exportIntervalSeconds + "s:");
+			int lines = 0;
+			for (Map.Entry<String, LatencyHistogram.Snapshot> entry : getSnapshots().entrySet()) {
+				LatencyHistogram.Snapshot previous = lastExport.put(entry.getKey(), entry.getValue());
+				LatencyHistogram.Snapshot interval = (previous == null) ? entry.getValue() : entry.getValue().minus(previous);
+				if (interval.getCount() == 0) continue;
+				sb.append("\n  ").append(entry.getKey()).append(' ').append(interval);
+				lines++;
+			}
+			if (lines > 0) System.out.println(sb);
+		} catch (RuntimeException ex) {  // keep the schedule running
+			System.out.println("Could not export DAO metrics ---- Exception Name ---- " + ex.toString());
+		}
+	} // end export
+
+	private static String nameOf(Class<?> daoClass, Method method) {
+		StringBuilder sb = new StringBuilder(daoClass.getSimpleName()).append('.').append(method.getName()).append('(');
+		Class<?>[] types = method.getParameterTypes();
+		for (int i = 0; i < types.length; i++) sb.append(i == 0 ? "" : ",").append(types[i].getSimpleName());
+		return sb.append(')').toString();
+	} // end nameOf
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("DAO latency since startup:");
+		getSnapshots().forEach((name, snapshot) -> sb.append("\n  ").append(name).append(' ').append(snapshot));
+		return sb.toString();
+	}
+
+} // end class DaoMetrics
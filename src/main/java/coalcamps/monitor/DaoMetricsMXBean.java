@@ -0,0 +1,18 @@
+package coalcamps.monitor;
+
+import java.util.Map;
+
+/**
+ * JMX view of DaoMetrics, registered as coalcamps:type=DaoMetrics.
+ *
+ * @author Mike Sheliga
+ */
+public interface DaoMetricsMXBean {
+
+	int getExportIntervalSeconds();
+	Map<String, String> getSummary();
+
+	void export();
+	void reset();
+
+} // end interface DaoMetricsMXBean
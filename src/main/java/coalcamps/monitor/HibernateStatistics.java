@@ -0,0 +1,94 @@
+package coalcamps.monitor;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Reports the totals hibernate keeps for a SessionFactory: sessions, flushes, entity loads
+ * and fetches, and the slowest hql query.  Exported to JMX by the mbeanExporter bean so they
+ * can be read, and cleared, while the application runs.  Counts are only collected when
+ * hibernate.generate_statistics is true (cache.statistics in database.properties), or after
+ * StatisticsEnabled is set to true through JMX.
+ * <p>
+ * A fetch is an entity or collection loaded on its own, ie. a lazy association being touched.
+ * A fetch count growing as fast as the load count usually means N+1 queries.
+ *
+ * @author Mike Sheliga
+ */
+public class HibernateStatistics implements HibernateStatisticsMXBean {
+
+	/**
+	 *  Bean from applicationContext.xml.  Set via dependency injection.
+	 */
+	private SessionFactory sessionFactory;
+
+	public void setSessionFactory(SessionFactory sessionFactory) {this.sessionFactory = sessionFactory;}
+	public SessionFactory getSessionFactory() {return sessionFactory;}
+
+	/**
+	 * @return the hibernate statistics for the session factory
+	 */
+	public Statistics getStatistics() {
+		return sessionFactory.getStatistics();
+	}
+
+	@Override public boolean isStatisticsEnabled() {return getStatistics().isStatisticsEnabled();}
+	@Override public void setStatisticsEnabled(boolean enabled) {getStatistics().setStatisticsEnabled(enabled);}
+	/** @return when the statistics were started or last cleared, in milliseconds since 1970 */
+	@Override public long getStartTime() {return getStatistics().getStartTime();}
+
+	// ------ Sessions and transactions ------
+	@Override public long getSessionOpenCount() {return getStatistics().getSessionOpenCount();}
+	@Override public long getSessionCloseCount() {return getStatistics().getSessionCloseCount();}
+	@Override public long getTransactionCount() {return getStatistics().getTransactionCount();}
+	@Override public long getConnectCount() {return getStatistics().getConnectCount();}
+	@Override public long getFlushCount() {return getStatistics().getFlushCount();}
+	@Override public long getPrepareStatementCount() {return getStatistics().getPrepareStatementCount();}
+	/** @return the number of updates that failed with a StaleObjectStateException */
+	@Override public long getOptimisticFailureCount() {return getStatistics().getOptimisticFailureCount();}
+
+	// ------ Entities and collections ------
+	@Override public long getEntityLoadCount() {return getStatistics().getEntityLoadCount();}
+	@Override public long getEntityFetchCount() {return getStatistics().getEntityFetchCount();}
+	@Override public long getEntityInsertCount() {return getStatistics().getEntityInsertCount();}
+	@Override public long getEntityUpdateCount() {return getStatistics().getEntityUpdateCount();}
+	@Override public long getEntityDeleteCount() {return getStatistics().getEntityDeleteCount();}
+	@Override public long getCollectionLoadCount() {return getStatistics().getCollectionLoadCount();}
+	@Override public long getCollectionFetchCount() {return getStatistics().getCollectionFetchCount();}
+
+	// ------ Queries and second level cache ------
+	@Override public long getQueryExecutionCount() {return getStatistics().getQueryExecutionCount();}
+	/** @return the time in milliseconds of the slowest hql query */
+	@Override public long getQueryExecutionMaxTime() {return getStatistics().getQueryExecutionMaxTime();}
+	@Override public String getQueryExecutionMaxTimeQueryString() {return getStatistics().getQueryExecutionMaxTimeQueryString();}
+	@Override public long getSecondLevelCacheHitCount() {return getStatistics().getSecondLevelCacheHitCount();}
+	@Override public long getSecondLevelCacheMissCount() {return getStatistics().getSecondLevelCacheMissCount();}
+	@Override public long getSecondLevelCachePutCount() {return getStatistics().getSecondLevelCachePutCount();}
+
+	// ------ Operations ------
+	/**
+	 * Sets every count to zero, including those of the cache regions and hql queries.
+	 */
+	@Override
+	public void clear() {
+		getStatistics().clear();
+	}
+
+	/**
+	 * Writes all the statistics to the hibernate log at INFO level.
+	 */
+	@Override
+	public void logSummary() {
+		getStatistics().logSummary();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Hibernate: sessions=%d transactions=%d flushes=%d statements=%d entityLoads=%d " +
+			"entityFetches=%d collectionFetches=%d queries=%d maxQuery=%dms %s", getSessionOpenCount(),
+			getTransactionCount(), getFlushCount(), getPrepareStatementCount(), getEntityLoadCount(),
+			getEntityFetchCount(), getCollectionFetchCount(), getQueryExecutionCount(),
+			getQueryExecutionMaxTime(), getQueryExecutionMaxTimeQueryString());
+	}
+
+} // end class HibernateStatistics
@@ -0,0 +1,41 @@
+package coalcamps.monitor;
+
+/**
+ * JMX view of HibernateStatistics, registered as coalcamps:type=HibernateStatistics.
+ *
+ * @author Mike Sheliga
+ */
+public interface HibernateStatisticsMXBean {
+
+	boolean isStatisticsEnabled();
+	void setStatisticsEnabled(boolean enabled);
+	long getStartTime();
+
+	long getSessionOpenCount();
+	long getSessionCloseCount();
+	long getTransactionCount();
+	long getConnectCount();
+	long getFlushCount();
+	long getPrepareStatementCount();
+	long getOptimisticFailureCount();
+
+	long getEntityLoadCount();
+	long getEntityFetchCount();
+	long getEntityInsertCount();
+	long getEntityUpdateCount();
+	long getEntityDeleteCount();
+	long getCollectionLoadCount();
+	long getCollectionFetchCount();
+
+	long getQueryExecutionCount();
+	long getQueryExecutionMaxTime();
+	String getQueryExecutionMaxTimeQueryString();
+
+	long getSecondLevelCacheHitCount();
+	long getSecondLevelCacheMissCount();
+	long getSecondLevelCachePutCount();
+
+	void clear();
+	void logSummary();
+
+} // end interface HibernateStatisticsMXBean
@@ -0,0 +1,79 @@
+package coalcamps.monitor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Reports execution count, time and rows for each hql query run by the DAO impls, such as
+ * "FROM CoalCamp".  Hibernate keeps these per hql string only when hibernate.generate_statistics
+ * is true (cache.statistics in database.properties).  SlowQueryLog has the matching totals
+ * of the generated sql.  Exported to JMX by the mbeanExporter bean.
+ *
+ * @author Mike Sheliga
+ */
+public class HqlStatistics implements HqlStatisticsMXBean {
+
+	/**
+	 *  Bean from applicationContext.xml.  Set via dependency injection.
+	 */
+	private SessionFactory sessionFactory;
+
+	public void setSessionFactory(SessionFactory sessionFactory) {this.sessionFactory = sessionFactory;}
+	public SessionFactory getSessionFactory() {return sessionFactory;}
+
+	/**
+	 * @return the hibernate statistics for the session factory
+	 */
+	public Statistics getStatistics() {
+		return sessionFactory.getStatistics();
+	}
+
+	/**
+	 * @return the statistics of one hql query, empty if it has not run
+	 */
+	public QueryStatistics getQueryStatistics(String hql) {
+		return getStatistics().getQueryStatistics(hql);
+	}
+
+	/**
+	 * Returns a one line summary for the hql queries that took the most time altogether.
+	 *
+	 * @param limit  the maximum number of queries to return
+	 * @return a map of hql to a summary of its executions, most total time first
+	 */
+	@Override
+	public Map<String, String> getSummary(int limit) {
+		Statistics statistics = getStatistics();
+		List<String> queries = new ArrayList<>();
+		for (String hql : statistics.getQueries()) queries.add(hql);
+		queries.sort(Comparator.comparingLong((String hql) -> totalMillis(statistics.getQueryStatistics(hql))).reversed());
+		Map<String, String> result = new LinkedHashMap<>();
+		for (String hql : queries) {
+			if (result.size() >= limit) break;
+			QueryStatistics stats = statistics.getQueryStatistics(hql);
+			result.put(hql, String.format("count=%d total=%dms avg=%dms max=%dms rows=%d",
+				stats.getExecutionCount(), totalMillis(stats), stats.getExecutionAvgTime(),
+				stats.getExecutionMaxTime(), stats.getExecutionRowCount()));
+		}
+		return result;
+	} // end getSummary
+
+	private static long totalMillis(QueryStatistics stats) {
+		return stats.getExecutionCount() * stats.getExecutionAvgTime();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("Hql queries:");
+		getSummary(5).forEach((hql, summary) -> sb.append("\n  ").append(summary).append(' ').append(hql));
+		return sb.toString();
+	}
+
+} // end class HqlStatistics
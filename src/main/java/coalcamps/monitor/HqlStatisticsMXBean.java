@@ -0,0 +1,14 @@
+package coalcamps.monitor;
+
+import java.util.Map;
+
+/**
+ * JMX view of HqlStatistics, registered as coalcamps:type=HqlStatistics.
+ *
+ * @author Mike Sheliga
+ */
+public interface HqlStatisticsMXBean {
+
+	Map<String, String> getSummary(int limit);
+
+} // end interface HqlStatisticsMXBean
@@ -0,0 +1,161 @@
+package coalcamps.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram with log-linear buckets, in the style of HdrHistogram: each power
+ * of two of nanoseconds is split into 16 linear sub-buckets, so a percentile is within about
+ * 6% of the true value from 16ns to hours.  Recording increments one slot of a fixed
+ * AtomicLongArray and a few LongAdders, so it allocates nothing and never blocks.
+ * <p>
+ * snapshot copies the counts; subtracting an earlier snapshot gives the histogram of the
+ * interval between them.
+ *
+ * @author Mike Sheliga
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** Enough buckets for any positive long. */
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final AtomicLong maxNanos = new AtomicLong();
+	private final long startNanos;
+
+	public LatencyHistogram() {this(System.nanoTime());}
+
+	/**
+	 * @param startNanos  the System.nanoTime throughput is measured from, ie. when the application started
+	 */
+	public LatencyHistogram(long startNanos) {this.startNanos = startNanos;}
+
+	// ------ Recording ------
+	/**
+	 * Records one call.
+	 *
+	 * @param nanos  how long the call took
+	 * @param error  true if the call failed
+	 */
+	public void record(long nanos, boolean error) {
+		if (nanos < 0) nanos = 0;
+		counts.incrementAndGet(bucketOf(nanos));
+		totalNanos.add(nanos);
+		if (error) errors.increment();
+		long max = maxNanos.get();
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) max = maxNanos.get();
+	} // end record
+
+	/**
+	 * Values below 16 have their own bucket.  Above that the bucket is the power of two
+	 * followed by the next 4 bits of the value.
+	 */
+	static int bucketOf(long nanos) {
+		if (nanos < SUB_BUCKETS) return (int) nanos;
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);  // at least SUB_BUCKET_BITS
+		int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	} // end bucketOf
+
+	/**
+	 * @return the highest value that falls in bucket
+	 */
+	static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		long lower = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+		return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	} // end upperBoundOf
+
+	// ------ Snapshots ------
+	/**
+	 * @return a copy of the counts recorded since the histogram was created
+	 */
+	public Snapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) copy[i] = counts.get(i);
+		return new Snapshot(copy, errors.sum(), totalNanos.sum(), maxNanos.get(), System.nanoTime() - startNanos);
+	} // end snapshot
+
+	/**
+	 * Immutable copy of a histogram, or of the difference between two copies.
+	 */
+	public static final class Snapshot {
+		private final long[] counts;
+		private final long count;
+		private final long errors;
+		private final long totalNanos;
+		private final long maxNanos;
+		private final long elapsedNanos;
+
+		Snapshot(long[] counts, long errors, long totalNanos, long maxNanos, long elapsedNanos) {
+			this.counts = counts;
+			long sum = 0;
+			for (long c : counts) sum += c;
+			this.count = sum;
+			this.errors = errors;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * Returns the calls recorded after earlier was taken.  The max of the interval is the
+		 * upper bound of its highest bucket.
+		 *
+		 * @param earlier  a snapshot of the same histogram
+		 * @return the histogram of the interval between the snapshots
+		 */
+		public Snapshot minus(Snapshot earlier) {
+			long[] diff = new long[counts.length];
+			int highest = -1;
+			for (int i = 0; i < counts.length; i++) {
+				diff[i] = counts[i] - earlier.counts[i];
+				if (diff[i] > 0) highest = i;
+			}
+			return new Snapshot(diff, errors - earlier.errors, totalNanos - earlier.totalNanos,
+				highest < 0 ? 0 : Math.min(maxNanos, upperBoundOf(highest)), elapsedNanos - earlier.elapsedNanos);
+		} // end minus
+
+		public long getCount() {return count;}
+		public long getErrors() {return errors;}
+		public double getMaxMillis() {return maxNanos / 1000000.0;}
+		public double getMeanMillis() {return count == 0 ? 0.0 : totalNanos / 1000000.0 / count;}
+
+		/** @return calls per second over the time the snapshot covers */
+		public double getThroughput() {
+			return elapsedNanos <= 0 ? 0.0 : count * 1000000000.0 / elapsedNanos;
+		}
+
+		/**
+		 * @param percentile  between 0 and 100, such as 99.9
+		 * @return the latency in milliseconds below which percentile of the calls fall, 0 if none
+		 */
+		public double getPercentileMillis(double percentile) {
+			if (count == 0) return 0.0;
+			long rank = (long) Math.ceil(percentile / 100.0 * count);
+			if (rank < 1) rank = 1;
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) return Math.min(upperBoundOf(i), maxNanos) / 1000000.0;
+			}
+			return getMaxMillis();
+		} // end getPercentileMillis
+
+		@Override
+		public String toString() {
+			return String.format("count=%d errors=%d rate=%.1f/s mean=%.3fms p50=%.3fms p90=%.3fms " +
+				"p99=%.3fms p99.9=%.3fms max=%.3fms", count, errors, getThroughput(), getMeanMillis(),
+				getPercentileMillis(50), getPercentileMillis(90), getPercentileMillis(99),
+				getPercentileMillis(99.9), getMaxMillis());
+		}
+	} // end class Snapshot
+
+} // end class LatencyHistogram
@@ -0,0 +1,133 @@
+package coalcamps.monitor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/** 
+ * Collects connection pool metrics from the HikariCP dataSource bean.  Hikari calls 
+ * the tracker created here each time a connection is acquired, returned, created or 
+ * times out.  The pool state (active, idle and waiting threads) is read from the 
+ * PoolStats supplied by Hikari when the pool starts.
+ * <p>
+ * Counters use LongAdder so recording adds no contention between threads borrowing 
+ * connections at the same time.  Exported to JMX by the mbeanExporter bean.
+ * 
+ * @author Mike Sheliga 
+ */
+public class PoolMetrics implements MetricsTrackerFactory, PoolMetricsMXBean {
+
+	// ============ Instance variables ============
+	private volatile PoolStats poolStats;
+	private volatile String poolName = "";
+	
+	private final LongAdder acquireCount = new LongAdder();
+	private final LongAdder acquireNanos = new LongAdder();
+	private final AtomicLong maxAcquireNanos = new AtomicLong();
+	private final LongAdder usageCount = new LongAdder();
+	private final LongAdder usageMillis = new LongAdder();
+	private final AtomicLong maxUsageMillis = new AtomicLong();
+	private final LongAdder createdCount = new LongAdder();
+	private final LongAdder timeoutCount = new LongAdder();
+
+	// ------ MetricsTrackerFactory ------
+	/**
+	 * Called by Hikari when the pool starts.
+	 * 
+	 * @param poolName   the name of the pool being tracked
+	 * @param poolStats  live pool state maintained by Hikari
+	 * @return a tracker that records into this PoolMetrics
+	 */
+	@Override
+	public IMetricsTracker create(String poolName, PoolStats poolStats) {
+		this.poolName = poolName;
+		this.poolStats = poolStats;
+		return new IMetricsTracker() {
+			@Override
+			public void recordConnectionAcquiredNanos(long elapsedNanos) {
+				acquireCount.increment();
+				acquireNanos.add(elapsedNanos);
+				updateMax(maxAcquireNanos, elapsedNanos);
+			}
+			@Override
+			public void recordConnectionUsageMillis(long elapsedMillis) {
+				usageCount.increment();
+				usageMillis.add(elapsedMillis);
+				updateMax(maxUsageMillis, elapsedMillis);
+			}
+			@Override
+			public void recordConnectionCreatedMillis(long elapsedMillis) {
+				createdCount.increment();
+			}
+			@Override
+			public void recordConnectionTimeout() {
+				timeoutCount.increment();
+			}
+		};
+	} // end create
+
+	private static void updateMax(AtomicLong max, long value) {
+		long current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) { }
+	}
+
+	// ------ Pool state ------
+	public String getPoolName() {return poolName;}
+	public int getActiveConnections() {return poolStats == null ? 0 : poolStats.getActiveConnections();}
+	public int getIdleConnections() {return poolStats == null ? 0 : poolStats.getIdleConnections();}
+	public int getTotalConnections() {return poolStats == null ? 0 : poolStats.getTotalConnections();}
+	/** @return the number of threads currently waiting for a connection. */
+	public int getPendingThreads() {return poolStats == null ? 0 : poolStats.getPendingThreads();}
+
+	// ------ Acquisition and usage statistics ------
+	public long getAcquireCount() {return acquireCount.sum();}
+	public long getTimeoutCount() {return timeoutCount.sum();}
+	public long getConnectionsCreated() {return createdCount.sum();}
+
+	/** @return the mean time in milliseconds callers waited to borrow a connection. */
+	public double getAverageAcquireMillis() {
+		long count = acquireCount.sum();
+		return count == 0 ? 0.0 : acquireNanos.sum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/** @return the longest time in milliseconds a caller waited to borrow a connection. */
+	public double getMaxAcquireMillis() {
+		return maxAcquireNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/** @return the mean time in milliseconds a connection was held before being returned. */
+	public double getAverageUsageMillis() {
+		long count = usageCount.sum();
+		return count == 0 ? 0.0 : usageMillis.sum() / (double) count;
+	}
+
+	public long getMaxUsageMillis() {return maxUsageMillis.get();}
+
+	/**
+	 * Clears the acquisition and usage statistics.  Pool state is not affected.
+	 */
+	public void reset() {
+		acquireCount.reset();
+		acquireNanos.reset();
+		maxAcquireNanos.set(0);
+		usageCount.reset();
+		usageMillis.reset();
+		maxUsageMillis.set(0);
+		createdCount.reset();
+		timeoutCount.reset();
+	} // end reset
+
+	@Override
+	public String toString() {
+		return String.format("Pool %s: active=%d idle=%d total=%d waiting=%d acquired=%d " + 
+			"avgAcquire=%.3fms maxAcquire=%.3fms avgUsage=%.1fms timeouts=%d", 
+			poolName, getActiveConnections(), getIdleConnections(), getTotalConnections(), 
+			getPendingThreads(), getAcquireCount(), getAverageAcquireMillis(), getMaxAcquireMillis(), 
+			getAverageUsageMillis(), getTimeoutCount());
+	}
+
+} // end class PoolMetrics
@@ -0,0 +1,27 @@
+package coalcamps.monitor;
+
+/**
+ * JMX view of PoolMetrics, registered as coalcamps:type=PoolMetrics.  HikariCP registers its
+ * own pool MBeans too (registerMbeans in spring4.xml), with operations such as softEvictConnections.
+ *
+ * @author Mike Sheliga
+ */
+public interface PoolMetricsMXBean {
+
+	String getPoolName();
+	int getActiveConnections();
+	int getIdleConnections();
+	int getTotalConnections();
+	int getPendingThreads();
+
+	long getAcquireCount();
+	long getTimeoutCount();
+	long getConnectionsCreated();
+	double getAverageAcquireMillis();
+	double getMaxAcquireMillis();
+	double getAverageUsageMillis();
+	long getMaxUsageMillis();
+
+	void reset();
+
+} // end interface PoolMetricsMXBean
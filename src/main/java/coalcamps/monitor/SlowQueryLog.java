@@ -0,0 +1,211 @@
+package coalcamps.monitor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Records the latency and row count of every sql statement timed by StatementTimingDataSource.
+ * Statements slower than thresholdMillis are always logged and sampleRate of the others
+ * are logged too, replacing hibernate.show_sql.
+ * <p>
+ * Log lines are written by a background thread, so a statement never waits for stdout.  When
+ * more than queueCapacity lines are waiting, new lines are dropped and counted instead.
+ * Totals are kept per sql string, which hibernate generates once for each hql query, so
+ * they add up the executions of each DAO query (see HqlStatistics for the hql itself).
+ *
+ * @author Mike Sheliga
+ */
+public class SlowQueryLog implements InitializingBean, DisposableBean {
+
+	/** Totals of statements beyond maxStatements distinct sql strings are kept under this key. */
+	public static final String OTHER_STATEMENTS = "(other statements)";
+
+	// ============ Instance variables and getter-setters ============
+	private long thresholdMillis = 100;
+	private double sampleRate = 0.0;
+	private int queueCapacity = 1000;
+	private int maxStatements = 1000;
+
+	private final Map<String, SqlStats> statsBySql = new ConcurrentHashMap<>();
+	private final LongAdder slowCount = new LongAdder();
+	private final LongAdder droppedLines = new LongAdder();
+	private BlockingQueue<String> lines;
+	private Thread writer;
+
+	/** Statements taking at least this long are always logged. */
+	public void setThresholdMillis(long thresholdMillis) {this.thresholdMillis = thresholdMillis;}
+	public long getThresholdMillis() {return thresholdMillis;}
+	/** Fraction, 0 to 1, of the statements under the threshold that are logged too. */
+	public void setSampleRate(double sampleRate) {this.sampleRate = Math.max(0.0, Math.min(1.0, sampleRate));}
+	public double getSampleRate() {return sampleRate;}
+	public void setQueueCapacity(int queueCapacity) {this.queueCapacity = queueCapacity;}
+	public int getQueueCapacity() {return queueCapacity;}
+	/** Number of distinct sql strings with their own totals. */
+	public void setMaxStatements(int maxStatements) {this.maxStatements = maxStatements;}
+	public int getMaxStatements() {return maxStatements;}
+
+	public long getSlowCount() {return slowCount.sum();}
+	public long getDroppedLines() {return droppedLines.sum();}
+
+	/**
+	 * Totals for one sql string.  Counters use LongAdder so threads running the same
+	 * statement do not contend.
+	 */
+	public static class SqlStats {
+		private final String sql;
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+
+		SqlStats(String sql) {this.sql = sql;}
+
+		void record(long nanos, long rowCount) {
+			count.increment();
+			totalNanos.add(nanos);
+			long max = maxNanos.get();
+			while (nanos > max && !maxNanos.compareAndSet(max, nanos)) max = maxNanos.get();
+			if (rowCount >= 0) rows.add(rowCount); else errors.increment();
+		}
+
+		public String getSql() {return sql;}
+		public long getCount() {return count.sum();}
+		public long getTotalNanos() {return totalNanos.sum();}
+		public double getTotalMillis() {return totalNanos.sum() / 1000000.0;}
+		public double getMaxMillis() {return maxNanos.get() / 1000000.0;}
+		public long getRows() {return rows.sum();}
+		/** Executions that threw an exception. */
+		public long getErrors() {return errors.sum();}
+
+		public double getAverageMillis() {
+			long n = count.sum();
+			return n == 0 ? 0.0 : getTotalMillis() / n;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count=%d total=%.1fms avg=%.2fms max=%.1fms rows=%d errors=%d",
+				getCount(), getTotalMillis(), getAverageMillis(), getMaxMillis(), getRows(), getErrors());
+		}
+	} // end class SqlStats
+
+	// ------ Bean lifecycle ------
+	/**
+	 * Starts the thread that writes the log lines.
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		lines = new ArrayBlockingQueue<>(queueCapacity);
+		writer = new Thread(this::writeLines, "slow-query-log");
+		writer.setDaemon(true);
+		writer.start();
+	} // end afterPropertiesSet
+
+	/**
+	 * Stops the writer thread after it writes the lines already queued.
+	 */
+	@Override
+	public void destroy() {
+		if (writer == null) return;
+		writer.interrupt();
+		try {
+			writer.join(1000);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	} // end destroy
+
+	private void writeLines() {
+		try {
+			while (true) System.out.println(lines.take());
+		} catch (InterruptedException ex) {
+			for (String line = lines.poll(); line != null; line = lines.poll()) System.out.println(line);
+		}
+	} // end writeLines
+
+	// ------ Recording ------
+	/**
+	 * Adds one execution of a statement to its totals and queues a log line if it is slow
+	 * or sampled.
+	 *
+	 * @param sql    the sql sent to the database
+	 * @param nanos  time the statement took
+	 * @param rows   rows read or changed, -1 if the statement failed
+	 */
+	public void record(String sql, long nanos, long rows) {
+		if (sql == null) sql = "(unknown)";
+		SqlStats stats = statsBySql.get(sql);
+		if (stats == null) {
+			String key = statsBySql.size() < maxStatements ? sql : OTHER_STATEMENTS;
+			stats = statsBySql.computeIfAbsent(key, SqlStats::new);
+		}
+		stats.record(nanos, rows);
+
+		long millis = nanos / 1000000;
+		if (millis >= thresholdMillis) {
+			slowCount.increment();
+			log("SLOW", millis, rows, sql);
+		} else if (sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+			log("SAMPLE", millis, rows, sql);
+		}
+	} // end record
+
+	private void log(String kind, long millis, long rows, String sql) {
+		if (lines == null) return;  // not started
+		String line = kind + " query " + millis + "ms rows=" + (rows < 0 ? "error" : String.valueOf(rows)) +
+			" [" + Thread.currentThread().getName() + "] " + sql;
+		if (!lines.offer(line)) droppedLines.increment();
+	} // end log
+
+	// ------ Reporting ------
+	/**
+	 * Returns the totals of the statements that took the most time altogether.
+	 *
+	 * @param limit  the maximum number of statements to return
+	 * @return a map of sql to its totals, most total time first
+	 */
+	public Map<String, SqlStats> getTopStatements(int limit) {
+		List<SqlStats> all = new ArrayList<>(statsBySql.values());
+		all.sort(Comparator.comparingLong(SqlStats::getTotalNanos).reversed());
+		Map<String, SqlStats> result = new LinkedHashMap<>();
+		for (SqlStats stats : all) {
+			if (result.size() >= limit) break;
+			result.put(stats.getSql(), stats);
+		}
+		return result;
+	} // end getTopStatements
+
+	/**
+	 * @return the totals of one sql string, or null if it has not run
+	 */
+	public SqlStats getStats(String sql) {return statsBySql.get(sql);}
+
+	/** Clears all totals and counts. */
+	public void reset() {
+		statsBySql.clear();
+		slowCount.reset();
+		droppedLines.reset();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("Sql statements (threshold=" + thresholdMillis + "ms sampleRate=" +
+			sampleRate + " slow=" + getSlowCount() + " droppedLines=" + getDroppedLines() + "):");
+		getTopStatements(5).forEach((sql, stats) -> sb.append("\n  ").append(stats).append(' ').append(sql));
+		return sb.toString();
+	}
+
+} // end class SlowQueryLog
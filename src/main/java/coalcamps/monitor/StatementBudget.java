@@ -0,0 +1,189 @@
+package coalcamps.monitor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Counts the sql statements and entity loads of the current thread, to find N+1 queries
+ * such as a loop touching a lazy companyBuilding once per camp.  Statements are reported
+ * by StatementCountingInspector and entity loads by DateModifiedInterceptor.onLoad.
+ * <p>
+ * Every DAO routine outside a unit of work, and every unit of work, is a request.  A request
+ * running more than warnThreshold statements outputs a warning with its first statements.
+ * Tests and callers can also count any block of work and check it against a budget:
+ * <pre>
+ *   List&lt;CampLease&gt; leases = StatementBudget.assertExactly(1, () -&gt; CampLease.getCampLeases(true));
+ *   try (StatementBudget.Scope scope = StatementBudget.open("report")) { ... scope.getStatements() ... }
+ * </pre>
+ * Counters are per thread, so concurrent requests do not affect each other.
+ *
+ * @author Mike Sheliga
+ */
+public final class StatementBudget {
+
+	private static final int MAX_SQL_KEPT = 10;
+
+	private static final ThreadLocal<Deque<Scope>> scopes = ThreadLocal.withInitial(ArrayDeque::new);
+	private static final ThreadLocal<int[]> requestDepth = ThreadLocal.withInitial(() -> new int[1]);
+	private static final ThreadLocal<Scope> request = new ThreadLocal<>();
+	private static volatile int warnThreshold = 20;
+	private static final LongAdder requestCount = new LongAdder();
+	private static final LongAdder overBudgetCount = new LongAdder();
+
+	/**
+	 * Statements and entity loads counted while a scope is open.  Scopes nest: a statement
+	 * counts in every scope open on the thread.
+	 */
+	public static final class Scope implements AutoCloseable {
+		private final String name;
+		private int statements;
+		private int entityLoads;
+		private final List<String> sql = new ArrayList<>();
+		private boolean closed;
+
+		private Scope(String name) {this.name = name;}
+
+		public String getName() {return name;}
+		public int getStatements() {return statements;}
+		public int getEntityLoads() {return entityLoads;}
+		/** @return the first statements run in the scope */
+		public List<String> getSql() {return Collections.unmodifiableList(sql);}
+
+		/**
+		 * Stops counting.  Scopes must be closed on the thread that opened them.
+		 */
+		@Override
+		public void close() {
+			if (closed) return;
+			closed = true;
+			scopes.get().remove(this);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(name + ": statements=" + statements + " entityLoads=" + entityLoads);
+			for (String s : sql) sb.append("\n    ").append(s);
+			if (statements > sql.size()) sb.append("\n    ...");
+			return sb.toString();
+		}
+	} // end class Scope
+
+	private StatementBudget() {}
+
+	// ------ Settings and totals ------
+	/** Requests running more statements than this output a warning.  0 or less for none. */
+	public static void setWarnThreshold(int threshold) {warnThreshold = threshold;}
+	public static int getWarnThreshold() {return warnThreshold;}
+	public static long getRequestCount() {return requestCount.sum();}
+	/** @return the number of requests that ran more than warnThreshold statements */
+	public static long getOverBudgetCount() {return overBudgetCount.sum();}
+
+	// ------ Counting ------
+	/**
+	 * Starts counting the statements of the current thread.  Close the scope, ie. with try
+	 * with resources, to stop.
+	 *
+	 * @param name  the name used in messages
+	 * @return the open scope
+	 */
+	public static Scope open(String name) {
+		Scope scope = new Scope(name);
+		scopes.get().push(scope);
+		return scope;
+	} // end open
+
+	/**
+	 * Called for each sql statement hibernate prepares.
+	 *
+	 * @param sql  the statement
+	 */
+	public static void onStatement(String sql) {
+		for (Scope scope : scopes.get()) {
+			scope.statements++;
+			if (scope.sql.size() < MAX_SQL_KEPT) scope.sql.add(sql);
+		}
+	} // end onStatement
+
+	/**
+	 * Called for each entity loaded by a session, from the database or the second level cache.
+	 */
+	public static void onEntityLoad() {
+		for (Scope scope : scopes.get()) scope.entityLoads++;
+	}
+
+	// ------ Requests ------
+	/**
+	 * Starts a request, unless one is already running on this thread.  Must be matched by
+	 * exitRequest.
+	 *
+	 * @param name  the routine or unit of work, used in the warning
+	 */
+	public static void enterRequest(String name) {
+		if (requestDepth.get()[0]++ == 0) request.set(open(name));
+	}
+
+	/**
+	 * Ends the request started by the matching enterRequest, and outputs a warning if it ran
+	 * more than warnThreshold statements.
+	 */
+	public static void exitRequest() {
+		int[] depth = requestDepth.get();
+		if (depth[0] == 0 || --depth[0] > 0) return;
+		Scope scope = request.get();
+		request.remove();
+		scope.close();
+		requestCount.increment();
+		int threshold = warnThreshold;
+		if (threshold > 0 && scope.statements > threshold) {
+			overBudgetCount.increment();
+			System.out.println("Warning: possible N+1 queries. " + scope.statements + " statements (more than " +
+				threshold + ") in " + scope);
+		}
+	} // end exitRequest
+
+	// ------ Budgets ------
+	/**
+	 * Runs work and checks it ran exactly the given number of statements.
+	 *
+	 * @param statements  the expected number of statements
+	 * @param work        the routines to run
+	 * @return the result of work
+	 * @throws AssertionError if a different number of statements ran
+	 */
+	public static <R> R assertExactly(int statements, Supplier<R> work) {
+		return check(statements, true, work);
+	}
+
+	/**
+	 * Runs work and checks it ran no more than the given number of statements.
+	 *
+	 * @param statements  the most statements allowed
+	 * @param work        the routines to run
+	 * @return the result of work
+	 * @throws AssertionError if more statements ran
+	 */
+	public static <R> R assertAtMost(int statements, Supplier<R> work) {
+		return check(statements, false, work);
+	}
+
+	private static <R> R check(int statements, boolean exact, Supplier<R> work) {
+		R result;
+		Scope scope = open("budget of " + statements + " statements");
+		try {
+			result = work.get();
+		} finally {
+			scope.close();
+		} // end try-finally
+		if (scope.statements > statements || (exact && scope.statements != statements)) {
+			throw new AssertionError("Expected " + (exact ? "" : "at most ") + statements +
+				" statements but " + scope.statements + " ran. " + scope);
+		}
+		return result;
+	} // end check
+
+} // end class StatementBudget
@@ -0,0 +1,22 @@
+package coalcamps.monitor;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Reports every sql statement hibernate prepares to StatementBudget.  Registered by class
+ * name as hibernate.session_factory.statement_inspector in spring4.xml, so it sees the
+ * statements of sessions and stateless sessions.  The sql is returned unchanged.
+ *
+ * @author Mike Sheliga
+ */
+public class StatementCountingInspector implements StatementInspector {
+
+	static final long serialVersionUID = 1L;
+
+	@Override
+	public String inspect(String sql) {
+		StatementBudget.onStatement(sql);
+		return sql;
+	}
+
+} // end class StatementCountingInspector
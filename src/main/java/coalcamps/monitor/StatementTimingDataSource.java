@@ -0,0 +1,193 @@
+package coalcamps.monitor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+/**
+ * DataSource that times every statement run on its connections and passes the sql,
+ * time and row count to a SlowQueryLog.  Connections, statements and result sets are
+ * wrapped in jdk proxies, so the pool and driver are unchanged.
+ * <p>
+ * The time of a query is the execute call, which is when the database runs it.  Its rows
+ * are counted as the result set is read and recorded when the result set or statement is
+ * closed.  Updates and batches record the update counts returned by the driver.
+ *
+ * @author Mike Sheliga
+ */
+public class StatementTimingDataSource extends AbstractDataSource {
+
+	// ============ Instance variables and getter-setters ============
+	/**
+	 *  DataSource whose connections are timed, and the log that records them.  Set via dependency injection.
+	 */
+	private DataSource target;
+	private SlowQueryLog slowQueryLog;
+
+	public void setTarget(DataSource target) {this.target = target;}
+	public DataSource getTarget() {return target;}
+	public void setSlowQueryLog(SlowQueryLog slowQueryLog) {this.slowQueryLog = slowQueryLog;}
+	public SlowQueryLog getSlowQueryLog() {return slowQueryLog;}
+
+	// ------ DataSource ------
+	@Override
+	public Connection getConnection() throws SQLException {
+		return wrap(target.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return wrap(target.getConnection(username, password));
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) return iface.cast(this);
+		return target.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || target.isWrapperFor(iface);
+	}
+
+	private Connection wrap(Connection connection) {
+		if (slowQueryLog == null) return connection;
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+			new Class<?>[] {Connection.class}, new ConnectionHandler(connection));
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException ex) {
+			throw ex.getTargetException();
+		}
+	} // end invoke
+
+	// ------ Proxy handlers ------
+	/**
+	 * Wraps the statements a connection creates, remembering the sql of prepared statements.
+	 */
+	private class ConnectionHandler implements InvocationHandler {
+		private final Connection connection;
+
+		ConnectionHandler(Connection connection) {this.connection = connection;}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Object result = StatementTimingDataSource.invoke(connection, method, args);
+			if (result instanceof Statement) {
+				String sql = (args != null && args.length > 0 && args[0] instanceof String) ? (String) args[0] : null;
+				Class<?> type = (result instanceof PreparedStatement) ? method.getReturnType() : Statement.class;
+				return Proxy.newProxyInstance(StatementTimingDataSource.class.getClassLoader(),
+					new Class<?>[] {type}, new StatementHandler((Statement) result, sql));
+			}
+			return result;
+		} // end invoke
+	} // end class ConnectionHandler
+
+	/**
+	 * Times the execute methods of a statement.  A query result is recorded once, when its
+	 * result set or the statement is closed, so its row count is known.
+	 */
+	private class StatementHandler implements InvocationHandler {
+		private final Statement statement;
+		private final String preparedSql;
+		private String querySql;
+		private long queryNanos;
+		private long queryRows = -1;  // -1 when no query result is waiting to be recorded
+
+		StatementHandler(Statement statement, String preparedSql) {
+			this.statement = statement;
+			this.preparedSql = preparedSql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (!name.startsWith("execute")) {
+				if (name.equals("close")) recordQuery();
+				return StatementTimingDataSource.invoke(statement, method, args);
+			}
+			String sql = (args != null && args.length > 0 && args[0] instanceof String) ? (String) args[0] : preparedSql;
+			recordQuery();  // a previous result not closed before the statement was run again
+			long start = System.nanoTime();
+			Object result;
+			try {
+				result = StatementTimingDataSource.invoke(statement, method, args);
+			} catch (Throwable ex) {
+				slowQueryLog.record(sql, System.nanoTime() - start, -1);
+				throw ex;
+			}
+			long nanos = System.nanoTime() - start;
+			if (result instanceof ResultSet) {
+				querySql = sql;
+				queryNanos = nanos;
+				queryRows = 0;
+				return Proxy.newProxyInstance(StatementTimingDataSource.class.getClassLoader(),
+					new Class<?>[] {ResultSet.class}, new ResultSetHandler((ResultSet) result, this));
+			}
+			slowQueryLog.record(sql, nanos, rowsOf(result));
+			return result;
+		} // end invoke
+
+		void recordQuery() {
+			if (queryRows < 0) return;
+			slowQueryLog.record(querySql, queryNanos, queryRows);
+			queryRows = -1;
+		} // end recordQuery
+
+		private long rowsOf(Object result) throws SQLException {
+			if (result instanceof Number) return ((Number) result).longValue();
+			if (result instanceof int[]) {
+				long sum = 0;
+				for (int count : (int[]) result) if (count > 0) sum += count;
+				return sum;
+			}
+			if (result instanceof long[]) {
+				long sum = 0;
+				for (long count : (long[]) result) if (count > 0) sum += count;
+				return sum;
+			}
+			if (Boolean.FALSE.equals(result)) return Math.max(0, statement.getUpdateCount());
+			return 0;  // execute that returned a result set, read with getResultSet
+		} // end rowsOf
+	} // end class StatementHandler
+
+	/**
+	 * Counts the rows read from a query result.
+	 */
+	private static class ResultSetHandler implements InvocationHandler {
+		private final ResultSet resultSet;
+		private final StatementHandler owner;
+
+		ResultSetHandler(ResultSet resultSet, StatementHandler owner) {
+			this.resultSet = resultSet;
+			this.owner = owner;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Object result = StatementTimingDataSource.invoke(resultSet, method, args);
+			String name = method.getName();
+			if (name.equals("next")) {
+				if (Boolean.TRUE.equals(result) && owner.queryRows >= 0) owner.queryRows++;
+			} else if (name.equals("close")) {
+				owner.recordQuery();
+			}
+			return result;
+		} // end invoke
+	} // end class ResultSetHandler
+
+} // end class StatementTimingDataSource
@@ -0,0 +1,128 @@
+package coalcamps.routing;
+
+import java.util.function.Supplier;
+
+/** 
+ * Thread bound routing state read by the {@link ReadWriteRoutingDataSource}.  DAO read 
+ * routines mark the current thread as reading before their session gets a connection, 
+ * so the connection comes from a replica.  Every other connection comes from the primary 
+ * and is remembered as a write, and reads on the same thread shortly after a write also 
+ * use the primary so they see the write even if the replica lags behind.
+ * <p>
+ * Callers that must see the latest data, for example before an update, can use 
+ * {@link #onPrimary(Supplier)}.
+ * 
+ * @author Mike Sheliga 
+ */
+public final class ReadRouting {
+
+	private static final ThreadLocal<int[]> readDepth = ThreadLocal.withInitial(() -> new int[1]);
+	private static final ThreadLocal<int[]> primaryDepth = ThreadLocal.withInitial(() -> new int[1]);
+	private static final ThreadLocal<long[]> lastWriteNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+	private ReadRouting() { }
+	
+	// ------ Read only routines ------
+	/**
+	 * Marks the current thread as running a read only routine.  Must be paired with exitRead.
+	 */
+	public static void enterRead() {readDepth.get()[0]++;}
+
+	/**
+	 * Ends a read only routine started with enterRead.
+	 */
+	public static void exitRead() {
+		int[] depth = readDepth.get();
+		if (depth[0] > 0) depth[0]--;
+	}
+
+	/**
+	 * Returns true if the current thread is running a read only routine.
+	 * 
+	 * @return true if a connection requested now may come from a replica.
+	 */
+	public static boolean isReadOnly() {return readDepth.get()[0] > 0;}
+
+	// ------ Read your writes ------
+	/**
+	 * Records that the current thread took a connection from the primary, which may write.
+	 */
+	public static void markWrite() {lastWriteNanos.get()[0] = System.nanoTime();}
+
+	/**
+	 * Returns true if the current thread took a primary connection within the last millis.
+	 * 
+	 * @param millis  the read your writes window, normally longer than the replica lag
+	 * @return true if a read now might not yet see the thread's own write on a replica.
+	 */
+	public static boolean wroteWithin(long millis) {
+		long last = lastWriteNanos.get()[0];
+		return last != 0 && System.nanoTime() - last < millis * 1000000;
+	}
+
+	/**
+	 * Returns the routing state of the current thread, to hand to work run on another thread.
+	 * 
+	 * @return the time of the thread's last primary connection and whether it is in onPrimary
+	 */
+	public static Snapshot capture() {
+		return new Snapshot(lastWriteNanos.get()[0], isPrimaryForced());
+	}
+
+	/**
+	 * Runs work on the current thread with the routing state of the thread that captured it, 
+	 * so an async read sees writes its caller just made.  The current thread's own state is 
+	 * restored afterward.
+	 * 
+	 * @param state  from capture, on the calling thread
+	 * @param work   routines to run
+	 * @return the result of work
+	 */
+	public static <R> R runAs(Snapshot state, Supplier<R> work) {
+		long[] last = lastWriteNanos.get();
+		long own = last[0];
+		if (state.lastWriteNanos != 0 && (own == 0 || state.lastWriteNanos - own > 0)) last[0] = state.lastWriteNanos;
+		try {
+			return state.primaryForced ? onPrimary(work) : work.get();
+		} finally {
+			last[0] = own;
+		} // end try-finally
+	} // end runAs
+
+	/**
+	 * Routing state of one thread, from capture.
+	 */
+	public static final class Snapshot {
+		private final long lastWriteNanos;
+		private final boolean primaryForced;
+
+		private Snapshot(long lastWriteNanos, boolean primaryForced) {
+			this.lastWriteNanos = lastWriteNanos;
+			this.primaryForced = primaryForced;
+		}
+	} // end class Snapshot
+
+	/**
+	 * Runs work with every connection, including reads, taken from the primary.
+	 * 
+	 * @param work  routines that must read the latest committed data
+	 * @return the result of work
+	 */
+	public static <R> R onPrimary(Supplier<R> work) {
+		int[] depth = primaryDepth.get();
+		depth[0]++;
+		try {
+			return work.get();
+		} finally {
+			depth[0]--;
+		} // end try-finally
+	} // end onPrimary
+
+	/**
+	 * Returns true if the current thread is running inside onPrimary.
+	 * 
+	 * @return true if reads must use the primary.
+	 */
+	public static boolean isPrimaryForced() {return primaryDepth.get()[0] > 0;}
+	
+} // end class ReadRouting
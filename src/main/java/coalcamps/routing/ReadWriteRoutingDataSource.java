@@ -0,0 +1,180 @@
+package coalcamps.routing;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/** 
+ * DataSource that sends read only DAO routines to replica databases and everything else 
+ * to the primary.  A read goes to the primary instead when:
+ * <ul>
+ * <li>no replica is configured or every replica is marked down,</li>
+ * <li>the thread took a primary connection within readYourWritesMillis, or</li>
+ * <li>the read runs inside ReadRouting.onPrimary.</li>
+ * </ul>
+ * A replica whose connection fails is marked down for retryMillis and the read falls 
+ * back to the next replica or the primary.  Replica pools copy the settings of the 
+ * primary pool and are started on first use, so a replica that is down at startup 
+ * does not stop the application.
+ * <p>
+ * Replication lag is not measured.  A replica that accepts connections but is behind 
+ * the primary keeps serving reads, so a thread only reads its own writes if they 
+ * reached the replicas within readYourWritesMillis, and reads of other threads' writes 
+ * may be as stale as the replica is behind.  Set readYourWritesMillis above the usual 
+ * lag, and use ReadRouting.onPrimary for reads that must be current.
+ * 
+ * @author Mike Sheliga 
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements InitializingBean, DisposableBean {
+
+	// ============ Instance variables and getter-setters ============
+	/**
+	 *  Primary (read-write) pool bean from applicationContext.xml.  Set via dependency injection.
+	 */
+	private HikariDataSource primary;
+	private String replicaUrls = "";
+	private long readYourWritesMillis = 1000;
+	private long retryMillis = 30000;
+	private long replicaConnectionTimeoutMillis = 2000;
+
+	private final List<Replica> replicas = new ArrayList<>();
+	private final AtomicInteger next = new AtomicInteger();
+	private final LongAdder primaryReads = new LongAdder();
+	private final LongAdder primaryWrites = new LongAdder();
+
+	public void setPrimary(HikariDataSource primary) {this.primary = primary;}
+	public HikariDataSource getPrimary() {return primary;}
+	/** Comma separated jdbc urls of the replicas.  Blank for none. */
+	public void setReplicaUrls(String replicaUrls) {this.replicaUrls = (replicaUrls == null ? "" : replicaUrls);}
+	public String getReplicaUrls() {return replicaUrls;}
+	public void setReadYourWritesMillis(long readYourWritesMillis) {this.readYourWritesMillis = readYourWritesMillis;}
+	public long getReadYourWritesMillis() {return readYourWritesMillis;}
+	public void setRetryMillis(long retryMillis) {this.retryMillis = retryMillis;}
+	public long getRetryMillis() {return retryMillis;}
+	public void setReplicaConnectionTimeoutMillis(long millis) {this.replicaConnectionTimeoutMillis = millis;}
+	public long getReplicaConnectionTimeoutMillis() {return replicaConnectionTimeoutMillis;}
+
+	/**
+	 * A replica pool and the time until which it is considered down.
+	 */
+	private static class Replica {
+		final HikariDataSource dataSource;
+		final LongAdder reads = new LongAdder();
+		volatile long downUntilMillis;
+		Replica(HikariDataSource dataSource) {this.dataSource = dataSource;}
+	}
+
+	// ------ Bean lifecycle ------
+	/**
+	 * Creates a pool for each replica url using the settings of the primary pool.
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		if (primary == null) throw new IllegalStateException("ReadWriteRoutingDataSource requires a primary dataSource");
+		int count = 0;
+		for (String url : replicaUrls.split(",")) {
+			if (url.trim().isEmpty()) continue;
+			HikariDataSource replica = new HikariDataSource();
+			replica.setPoolName(primary.getPoolName() + "-replica" + (++count));
+			replica.setJdbcUrl(url.trim());
+			replica.setDriverClassName(primary.getDriverClassName());
+			replica.setUsername(primary.getUsername());
+			replica.setPassword(primary.getPassword());
+			if (primary.getMinimumIdle() >= 0) replica.setMinimumIdle(primary.getMinimumIdle());  // -1 until set or the pool starts
+			replica.setMaximumPoolSize(primary.getMaximumPoolSize());
+			replica.setIdleTimeout(primary.getIdleTimeout());
+			replica.setLeakDetectionThreshold(primary.getLeakDetectionThreshold());
+			replica.setDataSourceProperties(primary.getDataSourceProperties());
+			replica.setConnectionTimeout(replicaConnectionTimeoutMillis);
+			replica.setReadOnly(true);
+			replicas.add(new Replica(replica));
+		} // end for
+	} // end afterPropertiesSet
+
+	/**
+	 * Closes the replica pools.  The primary pool is closed by its own bean.
+	 */
+	@Override
+	public void destroy() {
+		for (Replica replica : replicas) replica.dataSource.close();
+	}
+
+	// ------ DataSource ------
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (ReadRouting.isReadOnly()) {
+			if (!ReadRouting.isPrimaryForced() && !ReadRouting.wroteWithin(readYourWritesMillis)) {
+				Connection connection = getReplicaConnection();
+				if (connection != null) return connection;
+			}
+			primaryReads.increment();
+		} else {
+			ReadRouting.markWrite();
+			primaryWrites.increment();
+		}
+		return primary.getConnection();
+	} // end getConnection
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		throw new SQLException("ReadWriteRoutingDataSource uses the username and password of its pools");
+	}
+
+	/**
+	 * Returns a connection from the next healthy replica in turn, marking down any 
+	 * replica whose connection fails.
+	 * 
+	 * @return a replica connection, or null if no replica is available.
+	 */
+	private Connection getReplicaConnection() {
+		int size = replicas.size();
+		int start = (size == 0 ? 0 : Math.floorMod(next.getAndIncrement(), size));
+		for (int i = 0; i < size; i++) {
+			Replica replica = replicas.get((start + i) % size);
+			long now = System.currentTimeMillis();
+			if (replica.downUntilMillis > now) continue;
+			try {
+				Connection connection = replica.dataSource.getConnection();
+				replica.reads.increment();
+				return connection;
+			} catch (Exception ex) {
+				replica.downUntilMillis = now + retryMillis;
+				System.out.println("Replica " + replica.dataSource.getJdbcUrl() + " is down for " + retryMillis + 
+					"ms. ---- Exception Name ---- " + ex.toString() + " " + ex.getMessage() );
+			} // end try-catch
+		} // end for
+		return null;
+	} // end getReplicaConnection
+
+	// ------ Statistics ------
+	public long getPrimaryReads() {return primaryReads.sum();}
+	public long getPrimaryWrites() {return primaryWrites.sum();}
+	public long getReplicaReads() {
+		long sum = 0;
+		for (Replica replica : replicas) sum += replica.reads.sum();
+		return sum;
+	}
+	public int getReplicaCount() {return replicas.size();}
+	public int getHealthyReplicaCount() {
+		long now = System.currentTimeMillis();
+		int count = 0;
+		for (Replica replica : replicas) if (replica.downUntilMillis <= now) count++;
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return "Routing: replicas=" + getHealthyReplicaCount() + "/" + getReplicaCount() + " replicaReads=" + 
+			getReplicaReads() + " primaryReads=" + getPrimaryReads() + " primaryWrites=" + getPrimaryWrites();
+	}
+	
+} // end class ReadWriteRoutingDataSource
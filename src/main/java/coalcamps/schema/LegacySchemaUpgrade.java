@@ -0,0 +1,174 @@
+package coalcamps.schema;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Brings tables created by hbm2ddl.auto=update, before the migrations were added, up to
+ * the V1 baseline so the later migrations can run on them.  V1 uses CREATE TABLE IF NOT
+ * EXISTS, so on such a database it leaves the old tables as they were: MyISAM (which has
+ * no transactions, so units of work could not roll back), without the version and name
+ * key columns that V3 fills, and without the name key indexes or foreign keys.
+ * <p>
+ * SchemaMigrator runs this before the migrations until V3 is applied.  Every change is
+ * made only if the database lacks it, found from the table metadata, so running it a 
+ * second time changes nothing.  In order it
+ * <ul>
+ *   <li>converts MyISAM tables to InnoDB (MySQL only)</li>
+ *   <li>adds the version and name key columns and the name key indexes</li>
+ *   <li>adds the V1 foreign keys, unless the column already has one</li>
+ *   <li>seeds cc_id_sequences with MAX(id) plus the allocation size for each table without
+ *       a row, so pooled ids do not repeat the auto increment ids (see db/pooled-id-migration.sql)</li>
+ * </ul>
+ * A foreign key that can not be added, because MyISAM let rows refer to deleted records,
+ * is reported and skipped so startup continues.
+ *
+ * @author Mike Sheliga
+ */
+class LegacySchemaUpgrade {
+
+	private static final String[] ENTITY_TABLES = {"Coal_Company", "Coal_Camp", "Camp_Lease"};
+	private static final String SEQUENCE_TABLE = "cc_id_sequences";
+
+	// ============ Instance variables ============
+	private final Connection connection;
+	private final DatabaseMetaData metaData;
+	private final int idAllocationSize;
+	private final Map<String, String> tables = new HashMap<>();  // lower case name to name in the database
+	private int changes;
+
+	LegacySchemaUpgrade(Connection connection, int idAllocationSize) throws SQLException {
+		this.connection = connection;
+		this.metaData = connection.getMetaData();
+		this.idAllocationSize = idAllocationSize;
+		try (ResultSet rows = metaData.getTables(connection.getCatalog(), null, "%", new String[] {"TABLE"})) {
+			while (rows.next()) {
+				String name = rows.getString("TABLE_NAME");
+				tables.put(name.toLowerCase(Locale.ROOT), name);
+			}
+		}
+	} // end LegacySchemaUpgrade constructor
+
+	/**
+	 * Makes every change the existing tables need.  Tables that do not exist are skipped;
+	 * V1 creates them.
+	 *
+	 * @return the number of changes made, 0 if the tables were already up to date
+	 * @throws SQLException if a table could not be converted or a column or index added
+	 */
+	int upgrade() throws SQLException {
+		if (!tables.containsKey("coal_company")) return 0;  // a new database
+		convertToInnoDb();
+		addColumn("Coal_Company", "version", "INTEGER NOT NULL DEFAULT 0");
+		addColumn("Coal_Company", "companyNameKey", "VARCHAR(190)");
+		addIndex("Coal_Company", "ix_coal_company_name_key", "companyNameKey");
+		addColumn("Coal_Camp", "version", "INTEGER NOT NULL DEFAULT 0");
+		addColumn("Coal_Camp", "campNameKey", "VARCHAR(190)");
+		addIndex("Coal_Camp", "ix_coal_camp_name_key", "campNameKey");
+		addColumn("Camp_Lease", "version", "INTEGER NOT NULL DEFAULT 0");
+		addForeignKey("Coal_Camp", "fk_coal_camp_company", "companyBuilding_id", "Coal_Company");
+		addForeignKey("Camp_Lease", "fk_camp_lease_camp", "campLeased_id", "Coal_Camp");
+		addForeignKey("Camp_Lease", "fk_camp_lease_company", "companyLeasing_id", "Coal_Company");
+		seedIdSequences();
+		return changes;
+	} // end upgrade
+
+	// ------ Changes ------
+	/**
+	 * MySQL5Dialect created MyISAM tables.  Only MySQL has storage engines.
+	 */
+	private void convertToInnoDb() throws SQLException {
+		if (!"MySQL".equalsIgnoreCase(metaData.getDatabaseProductName())) return;
+		Set<String> myIsam = new HashSet<>();
+		try (Statement statement = connection.createStatement();
+				ResultSet rows = statement.executeQuery("SELECT table_name FROM information_schema.tables " +
+					"WHERE table_schema = DATABASE() AND engine <> 'InnoDB'")) {
+			while (rows.next()) myIsam.add(rows.getString(1).toLowerCase(Locale.ROOT));
+		}
+		for (String table : new String[] {SEQUENCE_TABLE, "Coal_Company", "Coal_Camp", "Camp_Lease"}) {
+			if (myIsam.contains(table.toLowerCase(Locale.ROOT))) {
+				execute("ALTER TABLE " + tableName(table) + " ENGINE=InnoDB");
+			}
+		}
+	} // end convertToInnoDb
+
+	private void addColumn(String table, String column, String definition) throws SQLException {
+		if (!tables.containsKey(table.toLowerCase(Locale.ROOT))) return;
+		try (ResultSet rows = metaData.getColumns(connection.getCatalog(), null, tableName(table), null)) {
+			while (rows.next()) {
+				if (column.equalsIgnoreCase(rows.getString("COLUMN_NAME"))) return;
+			}
+		}
+		execute("ALTER TABLE " + tableName(table) + " ADD COLUMN " + column + " " + definition);
+	} // end addColumn
+
+	private void addIndex(String table, String index, String column) throws SQLException {
+		if (!tables.containsKey(table.toLowerCase(Locale.ROOT))) return;
+		try (ResultSet rows = metaData.getIndexInfo(connection.getCatalog(), null, tableName(table), false, true)) {
+			while (rows.next()) {
+				if (index.equalsIgnoreCase(rows.getString("INDEX_NAME"))) return;
+			}
+		}
+		execute("CREATE INDEX " + index + " ON " + tableName(table) + " (" + column + ")");
+	} // end addIndex
+
+	private void addForeignKey(String table, String name, String column, String referenced) throws SQLException {
+		if (!tables.containsKey(table.toLowerCase(Locale.ROOT))) return;
+		try (ResultSet rows = metaData.getImportedKeys(connection.getCatalog(), null, tableName(table))) {
+			while (rows.next()) {
+				if (column.equalsIgnoreCase(rows.getString("FKCOLUMN_NAME"))) return;
+			}
+		}
+		try {
+			execute("ALTER TABLE " + tableName(table) + " ADD CONSTRAINT " + name + " FOREIGN KEY (" +
+				column + ") REFERENCES " + tableName(referenced) + " (id)");
+		} catch (SQLException ex) {
+			System.out.println("Could not add foreign key " + name + ". Some " + table + " rows may refer to " +
+				"deleted " + referenced + " rows. ---- Exception Name ---- " + ex.toString());
+		}
+	} // end addForeignKey
+
+	/**
+	 * The pooled optimizer treats the stored value as the top of the next block of ids.
+	 */
+	private void seedIdSequences() throws SQLException {
+		if (!tables.containsKey(SEQUENCE_TABLE)) {
+			execute("CREATE TABLE " + SEQUENCE_TABLE + " (sequence_name VARCHAR(255) NOT NULL, " +
+				"next_val BIGINT, PRIMARY KEY (sequence_name)) ENGINE=InnoDB");
+			tables.put(SEQUENCE_TABLE, SEQUENCE_TABLE);
+		}
+		for (String table : ENTITY_TABLES) {
+			if (!tables.containsKey(table.toLowerCase(Locale.ROOT))) continue;
+			try (Statement statement = connection.createStatement();
+					ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM " + tableName(SEQUENCE_TABLE) +
+						" WHERE sequence_name = '" + table + "'")) {
+				rows.next();
+				if (rows.getLong(1) > 0) continue;
+			}
+			execute("INSERT INTO " + tableName(SEQUENCE_TABLE) + " (sequence_name, next_val) SELECT '" + table +
+				"', COALESCE(MAX(id), 0) + " + idAllocationSize + " FROM " + tableName(table));
+		} // end for
+	} // end seedIdSequences
+
+	// ------ Helpers ------
+	private String tableName(String table) {
+		return tables.getOrDefault(table.toLowerCase(Locale.ROOT), table);
+	}
+
+	private void execute(String sql) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(sql);
+		}
+		System.out.println("Upgraded hbm2ddl schema: " + sql);
+		changes++;
+	} // end execute
+
+} // end class LegacySchemaUpgrade
@@ -0,0 +1,220 @@
+package coalcamps.schema;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Brings the database schema up to date before the SessionFactory is built, replacing
+ * hbm2ddl.auto=update.  Each script in the migration location is named V&lt;version&gt;__&lt;description&gt;.sql
+ * and runs once, in version order.  Applied versions are recorded with a checksum in
+ * the cc_schema_version table, so a script that is edited after it was applied stops
+ * startup instead of leaving the databases different.  Add a new version for every
+ * schema change rather than editing an applied script.
+ *
+ * Migrations run on their own connection from the primary pool.  MySQL commits each
+ * DDL statement as it runs, so a failed script is not recorded and must be fixed (and
+ * anything it already changed undone) before the next start.
+ *
+ * A database created by hbm2ddl before the migrations were added is first brought up to
+ * the V1 baseline by LegacySchemaUpgrade, which runs until V3 (the first script needing
+ * the V1 columns) is applied.
+ *
+ * @author Mike Sheliga
+ */
+public class SchemaMigrator implements InitializingBean {
+
+	private static final String HISTORY_TABLE = "cc_schema_version";
+	private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+	private static final int LEGACY_UPGRADE_UNTIL = 3;  // hbm2ddl tables are upgraded until V3 is applied
+
+	// ============ Instance variables and getter-setters ============
+	/**
+	 *  Primary (read-write) pool bean from spring4.xml.  Set via dependency injection.
+	 */
+	private DataSource dataSource;
+	private String locations = "classpath:db/migration/V*__*.sql";
+	private boolean enabled = true;
+	private int idAllocationSize = 50;
+
+	public void setDataSource(DataSource dataSource) {this.dataSource = dataSource;}
+	public DataSource getDataSource() {return dataSource;}
+	/** Resource pattern of the migration scripts. */
+	public void setLocations(String locations) {this.locations = locations;}
+	public String getLocations() {return locations;}
+	/** False leaves the schema alone, ie. when the migrations are run by a dba. */
+	public void setEnabled(boolean enabled) {this.enabled = enabled;}
+	public boolean isEnabled() {return enabled;}
+	/** Ids reserved per trip to cc_id_sequences, used to seed it for hbm2ddl tables. */
+	public void setIdAllocationSize(int idAllocationSize) {this.idAllocationSize = idAllocationSize;}
+	public int getIdAllocationSize() {return idAllocationSize;}
+
+	/**
+	 * A migration script and its version.
+	 */
+	private static class Migration {
+		final int version;
+		final String description;
+		final Resource script;
+		final long checksum;
+		Migration(int version, String description, Resource script, long checksum) {
+			this.version = version;
+			this.description = description;
+			this.script = script;
+			this.checksum = checksum;
+		}
+	}
+
+	// ------ Bean lifecycle ------
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		if (!enabled) return;
+		if (dataSource == null) throw new IllegalStateException("SchemaMigrator requires a dataSource");
+		long start = System.nanoTime();
+		int applied = migrate();
+		System.out.println("Schema migrations: " + applied + " applied in " +
+				(System.nanoTime() - start) / 1000000 + "ms");
+	} // end afterPropertiesSet
+
+	// ------ Migrate ------
+	/**
+	 * Runs every migration script whose version is not yet in the history table.
+	 *
+	 * @return the number of scripts run
+	 * @throws IllegalStateException if an applied script has changed
+	 * @throws SQLException if a script fails
+	 */
+	public int migrate() throws SQLException, IOException {
+		Map<Integer, Migration> migrations = findMigrations();
+		int count = 0;
+		try (Connection connection = dataSource.getConnection()) {
+			connection.setAutoCommit(true);
+			createHistoryTable(connection);
+			Map<Integer, Long> appliedChecksums = getAppliedChecksums(connection);
+			if (!appliedChecksums.containsKey(LEGACY_UPGRADE_UNTIL)) {
+				int changes = new LegacySchemaUpgrade(connection, idAllocationSize).upgrade();
+				if (changes > 0) System.out.println("Upgraded hbm2ddl schema with " + changes + " changes");
+			}
+			for (Migration migration : migrations.values()) {
+				Long checksum = appliedChecksums.get(migration.version);
+				if (checksum != null) {
+					if (checksum != migration.checksum) {
+						throw new IllegalStateException("Migration V" + migration.version + " " +
+								migration.script.getFilename() + " was changed after it was applied");
+					}
+					continue;
+				}
+				long start = System.nanoTime();
+				try {
+					ScriptUtils.executeSqlScript(connection, new EncodedResource(migration.script, StandardCharsets.UTF_8));
+				} catch (RuntimeException ex) {
+					System.out.println("Migration V" + migration.version + " " + migration.script.getFilename() +
+							" failed. " + ex.getMessage());
+					throw ex;
+				}
+				int millis = (int) ((System.nanoTime() - start) / 1000000);
+				recordMigration(connection, migration, millis);
+				System.out.println("Applied migration V" + migration.version + " " + migration.description +
+						" in " + millis + "ms");
+				count++;
+			} // end for
+		}
+		return count;
+	} // end migrate
+
+	/**
+	 * @return the latest version recorded in the history table, 0 if none
+	 */
+	public int getCurrentVersion() {
+		try (Connection connection = dataSource.getConnection()) {
+			int version = 0;
+			for (int applied : getAppliedChecksums(connection).keySet()) version = Math.max(version, applied);
+			return version;
+		} catch (SQLException ex) {
+			System.out.println("Error reading " + HISTORY_TABLE + ". " + ex.getMessage());
+			return -1;
+		}
+	} // end getCurrentVersion
+
+	// ------ Helpers ------
+	private Map<Integer, Migration> findMigrations() throws IOException {
+		Map<Integer, Migration> migrations = new TreeMap<>();
+		for (Resource script : new PathMatchingResourcePatternResolver().getResources(locations)) {
+			Matcher matcher = SCRIPT_NAME.matcher(script.getFilename());
+			if (!matcher.matches()) continue;
+			int version = Integer.parseInt(matcher.group(1));
+			Migration migration = new Migration(version, matcher.group(2).replace('_', ' '), script, checksumOf(script));
+			Migration duplicate = migrations.put(version, migration);
+			if (duplicate != null) {
+				throw new IllegalStateException("Migration version " + version + " is used by " +
+						duplicate.script.getFilename() + " and " + script.getFilename());
+			}
+		} // end for
+		return migrations;
+	} // end findMigrations
+
+	/**
+	 * CRC32 of the script ignoring line endings, so checking out on another os does not change it.
+	 */
+	private static long checksumOf(Resource script) throws IOException {
+		try (InputStream in = script.getInputStream()) {
+			String text = StreamUtils.copyToString(in, StandardCharsets.UTF_8).replace("\r\n", "\n");
+			CRC32 crc = new CRC32();
+			crc.update(text.getBytes(StandardCharsets.UTF_8));
+			return crc.getValue();
+		}
+	} // end checksumOf
+
+	private static void createHistoryTable(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE IF NOT EXISTS " + HISTORY_TABLE + " (" +
+					"version INTEGER NOT NULL, description VARCHAR(200) NOT NULL, " +
+					"script VARCHAR(255) NOT NULL, checksum BIGINT NOT NULL, " +
+					"installed_on TIMESTAMP NOT NULL, execution_millis INTEGER NOT NULL, " +
+					"PRIMARY KEY (version))");
+		}
+	} // end createHistoryTable
+
+	private static Map<Integer, Long> getAppliedChecksums(Connection connection) throws SQLException {
+		Map<Integer, Long> checksums = new TreeMap<>();
+		try (Statement statement = connection.createStatement();
+				ResultSet rows = statement.executeQuery("SELECT version, checksum FROM " + HISTORY_TABLE)) {
+			while (rows.next()) checksums.put(rows.getInt(1), rows.getLong(2));
+		}
+		return checksums;
+	} // end getAppliedChecksums
+
+	private static void recordMigration(Connection connection, Migration migration, int millis) throws SQLException {
+		try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + HISTORY_TABLE +
+				" (version, description, script, checksum, installed_on, execution_millis) VALUES (?, ?, ?, ?, ?, ?)")) {
+			insert.setInt(1, migration.version);
+			insert.setString(2, migration.description);
+			insert.setString(3, migration.script.getFilename());
+			insert.setLong(4, migration.checksum);
+			insert.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+			insert.setInt(6, millis);
+			insert.executeUpdate();
+		}
+	} // end recordMigration
+
+} // end class SchemaMigrator
@@ -0,0 +1,51 @@
+-- Baseline schema, the tables hbm2ddl.auto=update created for CoalCompany, CoalCamp and 
+-- CampLease.  IF NOT EXISTS lets this run against a database that was created by 
+-- hbm2ddl before migrations were added, which keeps its existing tables.  SchemaMigrator 
+-- first brings those tables up to this baseline (see LegacySchemaUpgrade), including 
+-- seeding cc_id_sequences above the ids of a database still using auto increment ids.
+
+CREATE TABLE IF NOT EXISTS cc_id_sequences (
+	sequence_name VARCHAR(255) NOT NULL,
+	next_val BIGINT,
+	PRIMARY KEY (sequence_name)
+) ENGINE=InnoDB;
+
+CREATE TABLE IF NOT EXISTS Coal_Company (
+	id INTEGER NOT NULL,
+	dateCreated DATETIME,
+	dateModified DATETIME,
+	version INTEGER NOT NULL DEFAULT 0,
+	companyName VARCHAR(255),
+	companyNameKey VARCHAR(190),
+	yearFounded INTEGER NOT NULL,
+	PRIMARY KEY (id),
+	INDEX ix_coal_company_name_key (companyNameKey)
+) ENGINE=InnoDB;
+
+CREATE TABLE IF NOT EXISTS Coal_Camp (
+	id INTEGER NOT NULL,
+	dateCreated DATETIME,
+	dateModified DATETIME,
+	version INTEGER NOT NULL DEFAULT 0,
+	campName VARCHAR(255),
+	campNameKey VARCHAR(190),
+	yearBuilt INTEGER NOT NULL,
+	companyBuilding_id INTEGER NOT NULL,
+	PRIMARY KEY (id),
+	INDEX ix_coal_camp_name_key (campNameKey),
+	CONSTRAINT fk_coal_camp_company FOREIGN KEY (companyBuilding_id) REFERENCES Coal_Company (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE IF NOT EXISTS Camp_Lease (
+	id INTEGER NOT NULL,
+	dateCreated DATETIME,
+	dateModified DATETIME,
+	version INTEGER NOT NULL DEFAULT 0,
+	beginYear INTEGER,
+	endYear INTEGER NOT NULL,
+	campLeased_id INTEGER NOT NULL,
+	companyLeasing_id INTEGER NOT NULL,
+	PRIMARY KEY (id),
+	CONSTRAINT fk_camp_lease_camp FOREIGN KEY (campLeased_id) REFERENCES Coal_Camp (id),
+	CONSTRAINT fk_camp_lease_company FOREIGN KEY (companyLeasing_id) REFERENCES Coal_Company (id)
+) ENGINE=InnoDB;
@@ -0,0 +1,16 @@
+-- Indexes for the joins and year searches of the DAO queries.  hbm2ddl created none of 
+-- these (MySQL5Dialect tables are MyISAM, which does not index foreign keys).
+--
+-- Camps of a company, and the camp join of getCoalCamps(true) and the summaries, 
+-- in year built order
+CREATE INDEX ix_coal_camp_company_year ON Coal_Camp (companyBuilding_id, yearBuilt);
+
+-- Leases of a camp overlapping a span of years (getLeasesInYear, getLeasesOverlapping).
+-- Covers the whole where clause, so only matching leases are read.
+CREATE INDEX ix_camp_lease_camp_years ON Camp_Lease (campLeased_id, beginYear, endYear);
+
+-- Leases taken by a company, and the company join of getCampLeases(true)
+CREATE INDEX ix_camp_lease_company_years ON Camp_Lease (companyLeasing_id, beginYear);
+
+-- Bulk updates and deletes of expired leases, ie. "e.endYear < :year"
+CREATE INDEX ix_camp_lease_end_year ON Camp_Lease (endYear);
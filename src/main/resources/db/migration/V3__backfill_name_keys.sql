@@ -0,0 +1,7 @@
+-- Fills the normalized name key columns used by the camp and company name searches 
+-- (see BaseCCObject.normalizeName) for rows saved before the columns were added. 
+-- Keys of names containing accented letters should be refreshed by updating those 
+-- records from the application, which also removes accents.
+
+UPDATE Coal_Camp SET campNameKey = LOWER(TRIM(campName)) WHERE campNameKey IS NULL;
+UPDATE Coal_Company SET companyNameKey = LOWER(TRIM(companyName)) WHERE companyNameKey IS NULL;
@@ -0,0 +1,21 @@
+-- Change feed (BaseDAO.getModifiedSince).  modStamp is set by the application on every 
+-- insert and update; existing rows keep 0, so a first sync from the start returns them 
+-- in id order.  The (modStamp, id) indexes match the change cursor order.
+
+ALTER TABLE Coal_Company ADD COLUMN modStamp BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE Coal_Camp ADD COLUMN modStamp BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE Camp_Lease ADD COLUMN modStamp BIGINT NOT NULL DEFAULT 0;
+
+CREATE INDEX ix_coal_company_mod_stamp ON Coal_Company (modStamp, id);
+CREATE INDEX ix_coal_camp_mod_stamp ON Coal_Camp (modStamp, id);
+CREATE INDEX ix_camp_lease_mod_stamp ON Camp_Lease (modStamp, id);
+
+-- Tombstones of deleted records, written in the same transaction as the delete
+CREATE TABLE cc_deleted_record (
+	id BIGINT NOT NULL AUTO_INCREMENT,
+	entityName VARCHAR(64) NOT NULL,
+	entityId INTEGER NOT NULL,
+	modStamp BIGINT NOT NULL,
+	PRIMARY KEY (id),
+	INDEX ix_deleted_record_entity_stamp (entityName, modStamp, entityId)
+) ENGINE=InnoDB;
@@ -0,0 +1,26 @@
+-- Migrates an existing database from auto increment ids to the pooled table id generator 
+-- (see coalcamps.classes.PooledIdGenerator). Run once before starting the new version.
+-- SchemaMigrator seeds cc_id_sequences itself (see LegacySchemaUpgrade), so this script 
+-- is only needed when db.schema.migrate is false.  Auto increment ids do no harm.
+--
+-- The pooled optimizer treats the stored value as the top of the next block of ids, so 
+-- each entity row is seeded with MAX(id) + allocation size. Change 50 below if 
+-- coalcamps.id.allocation_size (database.properties) has been changed.
+
+CREATE TABLE IF NOT EXISTS cc_id_sequences (
+	sequence_name VARCHAR(255) NOT NULL,
+	next_val BIGINT,
+	PRIMARY KEY (sequence_name)
+) ENGINE=InnoDB;
+
+INSERT INTO cc_id_sequences (sequence_name, next_val)
+	SELECT 'Coal_Company', COALESCE(MAX(id), 0) + 50 FROM Coal_Company;
+INSERT INTO cc_id_sequences (sequence_name, next_val)
+	SELECT 'Coal_Camp', COALESCE(MAX(id), 0) + 50 FROM Coal_Camp;
+INSERT INTO cc_id_sequences (sequence_name, next_val)
+	SELECT 'Camp_Lease', COALESCE(MAX(id), 0) + 50 FROM Camp_Lease;
+
+-- The id columns no longer need to be auto increment
+ALTER TABLE Coal_Company MODIFY id INTEGER NOT NULL;
+ALTER TABLE Coal_Camp MODIFY id INTEGER NOT NULL;
+ALTER TABLE Camp_Lease MODIFY id INTEGER NOT NULL;
@@ -0,0 +1,96 @@
+package coalcamps.dao.hibernateImpls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import coalcamps.classes.BaseCCObject;
+import coalcamps.classes.CampLease;
+import coalcamps.classes.CoalCamp;
+import coalcamps.classes.CoalCompany;
+import coalcamps.dao.CampLeaseDAO;
+
+/**
+ * Saves and updates camp leases through the leaseDaoBean on the in memory H2 database
+ * configured for the tests, checking that overlapping leases of a camp are refused.
+ *
+ * @author Mike Sheliga
+ */
+public class CampLeaseDAOImplTest {
+
+	private CampLeaseDAO leaseDao;
+	private CoalCompany company;
+	private CoalCamp camp;
+
+	@Before
+	public void setUp() {
+		leaseDao = BaseCCObject.getApplicationContext().getBean("leaseDaoBean", CampLeaseDAO.class);
+		company = new CoalCompany("Overlap Test Coal", 1900);
+		company.save();
+		camp = new CoalCamp("Overlap Test Camp " + System.nanoTime(), 1905, company);
+		camp.save();
+	}
+
+	@Test
+	public void overlappingLeasesInOneUnitOfWorkAreNotBothSaved() {
+		int[] ids = new int[2];
+		boolean committed = BaseCCObject.inUnitOfWork(() -> {
+			ids[0] = leaseDao.save(new CampLease(camp, company, 1990, 1995));
+			ids[1] = leaseDao.save(new CampLease(camp, company, 1992, 1998));
+		});
+		assertTrue("the refused lease does not roll back the unit of work", committed);
+		assertTrue(ids[0] > 0);
+		assertEquals(0, ids[1]);
+		assertEquals(1, leasesOfCamp().size());
+	}
+
+	@Test
+	public void leasesOfDifferentYearsAreSaved() {
+		assertTrue(leaseDao.save(new CampLease(camp, company, 1910, 1919)) > 0);
+		assertTrue(leaseDao.save(new CampLease(camp, company, 1920, 1929)) > 0);
+		assertEquals(2, leasesOfCamp().size());
+	}
+
+	@Test
+	public void updateIntoAnotherLeasesYearsIsRefused() {
+		CampLease early = new CampLease(camp, company, 1930, 1939);
+		CampLease late = new CampLease(camp, company, 1940, 1949);
+		leaseDao.save(early);
+		leaseDao.save(late);
+		late.setBeginYear(1935);
+		assertFalse(leaseDao.updateIfCurrent(late));
+		late.setBeginYear(1941);
+		assertTrue("a lease does not overlap itself", leaseDao.updateIfCurrent(late));
+	}
+
+	@Test
+	public void saveAllLeavesTheBatchSizeOfAJoinedSession() {
+		Session[] session = new Session[1];
+		Integer[] batchSize = new Integer[1];
+		assertTrue(BaseCCObject.inUnitOfWork(() -> {
+			session[0] = BaseCCObject.getApplicationContext()
+				.getBean("hibernate5AnnotatedSessionFactory", SessionFactory.class).getCurrentSession();
+			session[0].setJdbcBatchSize(7);
+			leaseDao.saveAll(Arrays.asList(new CampLease(camp, company, 1950, 1959), new CampLease(camp, company, 1960, 1969)));
+			batchSize[0] = session[0].getJdbcBatchSize();
+		}));
+		assertEquals(Integer.valueOf(7), batchSize[0]);
+		assertEquals(2, leasesOfCamp().size());
+	}
+
+	private List<CampLease> leasesOfCamp() {
+		return leaseDao.getCampLeases().stream()
+			.filter(lease -> BaseCCObject.idOf(lease.getCampLeased()) == camp.getId())
+			.collect(Collectors.toList());
+	}
+
+} // end class CampLeaseDAOImplTest
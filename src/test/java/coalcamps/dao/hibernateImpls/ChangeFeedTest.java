@@ -0,0 +1,144 @@
+package coalcamps.dao.hibernateImpls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.Advised;
+
+import coalcamps.classes.BaseCCObject;
+import coalcamps.classes.CoalCompany;
+import coalcamps.dao.ChangeCursor;
+import coalcamps.dao.ChangeSet;
+import coalcamps.dao.CoalCompanyDAO;
+import coalcamps.loader.CsvBulkLoader;
+
+/**
+ * Writes coal companies through the compDaoBean and the csvLoaderBean on the in memory H2 
+ * database configured for the tests, checking that records are stamped when their 
+ * transaction commits and that old tombstones are purged.
+ *
+ * @author Mike Sheliga
+ */
+public class ChangeFeedTest {
+
+	private CoalCompanyDAO companyDao;
+	private CoalCompanyDAOImpl companyDaoImpl;  // the target of the metrics proxy
+	private SessionFactory sessionFactory;
+	private long settleMillis;
+
+	@Before
+	public void setUp() throws Exception {
+		companyDao = BaseCCObject.getApplicationContext().getBean("compDaoBean", CoalCompanyDAO.class);
+		companyDaoImpl = (CoalCompanyDAOImpl) ((Advised) companyDao).getTargetSource().getTarget();
+		sessionFactory = BaseCCObject.getApplicationContext().getBean("hibernate5AnnotatedSessionFactory", SessionFactory.class);
+		settleMillis = companyDaoImpl.getChangeFeedSettleMillis();
+		companyDaoImpl.setChangeFeedSettleMillis(0);
+	}
+
+	@After
+	public void restoreSettleMillis() {
+		companyDaoImpl.setChangeFeedSettleMillis(settleMillis);
+	}
+
+	@Test
+	public void recordsFlushedEarlyInAUnitOfWorkAreStampedAtCommit() throws Exception {
+		CoalCompany company = new CoalCompany("Feed Slow Coal", 1900);
+		long[] lastWrite = new long[1];
+		assertTrue(BaseCCObject.inUnitOfWork(() -> {
+			companyDao.saveAll(Collections.singletonList(company));  // flushed here
+			sleep(50);
+			lastWrite[0] = System.currentTimeMillis();
+		}));
+		long stamp = stampOf("Coal_Company", company.getId());
+		assertTrue("stamped " + stamp + " before the commit at " + lastWrite[0], stamp >= lastWrite[0]);
+
+		ChangeSet<CoalCompany> changes = companyDao.getModifiedSince(new ChangeCursor(lastWrite[0], 0), 100);
+		assertTrue(changes.getChanged().stream().anyMatch(c -> c.getId() == company.getId()));
+		assertEquals(0, negativeStamps());
+	}
+
+	@Test
+	public void savesBulkWritesAndLoadedRowsAreNotLeftPending() throws Exception {
+		long before = System.currentTimeMillis();
+		CoalCompany saved = new CoalCompany("Feed Saved Coal", 1901);
+		companyDao.save(saved);
+		List<Integer> ids = companyDao.saveAll(Arrays.asList(new CoalCompany("Feed Batch Coal", 1902), 
+			new CoalCompany("Feed Batch Fuel", 1903)));
+		assertEquals(2, ids.size());
+		assertEquals(1, companyDao.updateWhere("e.yearFounded = 1904", "e.companyName = :name", 
+			Collections.singletonMap("name", "Feed Batch Fuel")));
+		assertEquals(1, companyDao.deleteWhere("e.companyName = :name", Collections.singletonMap("name", "Feed Batch Coal")));
+		CsvBulkLoader loader = BaseCCObject.getApplicationContext().getBean("csvLoaderBean", CsvBulkLoader.class);
+		assertTrue(!loader.loadCompanies(csv("companyName,yearFounded", "Feed Loaded Coal,1905")).isFailed());
+
+		assertEquals(0, negativeStamps());
+		ChangeSet<CoalCompany> changes = companyDao.getModifiedSince(new ChangeCursor(before, 0), 1000);
+		assertTrue(changes.getChanged().stream().anyMatch(c -> c.getId() == saved.getId()));
+		assertTrue(changes.getChanged().stream().anyMatch(c -> c.getId() == ids.get(1)));
+		assertTrue(changes.getChanged().stream().anyMatch(c -> "Feed Loaded Coal".equals(c.getCompanyName())));
+		assertTrue(changes.getDeletedIds().contains(ids.get(0)));
+	}
+
+	@Test
+	public void onlyTombstonesBeforeTheStampArePurged() throws Exception {
+		CoalCompany old = new CoalCompany("Feed Purged Coal", 1906);
+		companyDao.save(old);
+		companyDao.delete(old);
+		sleep(5);
+		long purgeBefore = System.currentTimeMillis();
+		sleep(5);
+		CoalCompany recent = new CoalCompany("Feed Kept Coal", 1907);
+		companyDao.save(recent);
+		companyDao.delete(recent);
+
+		assertTrue(companyDao.purgeTombstonesBefore(purgeBefore) >= 1);
+		ChangeSet<CoalCompany> changes = companyDao.getModifiedSince(ChangeCursor.START, 100000);
+		assertTrue(!changes.getDeletedIds().contains(old.getId()));
+		assertTrue(changes.getDeletedIds().contains(recent.getId()));
+	}
+
+	private long stampOf(String table, int id) {
+		try (Session session = sessionFactory.openSession()) {
+			return ((Number) session.createNativeQuery("SELECT modStamp FROM " + table + " WHERE id = " + id)
+				.getSingleResult()).longValue();
+		}
+	}
+
+	private long negativeStamps() {
+		long count = 0;
+		try (Session session = sessionFactory.openSession()) {
+			for (String table : new String[] {"Coal_Company", "Coal_Camp", "Camp_Lease", "cc_deleted_record"}) {
+				count += ((Number) session.createNativeQuery("SELECT COUNT(*) FROM " + table + " WHERE modStamp < 0")
+					.getSingleResult()).longValue();
+			}
+		}
+		return count;
+	}
+
+	private static Path csv(String... lines) throws Exception {
+		Path file = Files.createTempFile("changefeed", ".csv");
+		file.toFile().deleteOnExit();
+		return Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+} // end class ChangeFeedTest
@@ -0,0 +1,100 @@
+package coalcamps.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares IntMap with a HashMap over random changes, checking that every earlier map
+ * is left unchanged by the copies made from it.
+ *
+ * @author Mike Sheliga
+ */
+public class IntMapTest {
+
+	@Test
+	public void copiesMatchAHashMapAndLeaveEarlierMapsUnchanged() {
+		Random random = new Random(42);
+		IntMap<String> map = IntMap.empty();
+		Map<Integer, String> expected = new HashMap<>();
+		List<IntMap<String>> maps = new ArrayList<>();
+		List<Map<Integer, String>> expectedMaps = new ArrayList<>();
+		for (int i = 0; i < 20000; i++) {
+			int key = 1 + random.nextInt(3000);
+			if (random.nextInt(3) == 0) {
+				map = map.without(key);
+				expected.remove(key);
+			} else {
+				map = map.with(key, "v" + i);
+				expected.put(key, "v" + i);
+			}
+			if (i % 1000 == 0) {
+				maps.add(map);
+				expectedMaps.add(new HashMap<>(expected));
+			}
+		} // end for
+		maps.add(map);
+		expectedMaps.add(expected);
+		for (int i = 0; i < maps.size(); i++) assertMatches(expectedMaps.get(i), maps.get(i));
+	}
+
+	@Test
+	public void builderMatchesAHashMapAndDoesNotChangeBuiltMaps() {
+		Random random = new Random(7);
+		IntMap.Builder<Integer> builder = new IntMap.Builder<>();
+		Map<Integer, Integer> expected = new HashMap<>();
+		for (int i = 0; i < 50000; i++) {
+			int key = 1 + random.nextInt(Integer.MAX_VALUE - 1);
+			builder.put(key, i);
+			expected.put(key, i);
+			if (i % 5 == 0) {
+				builder.remove(key);
+				expected.remove(key);
+			}
+		}
+		IntMap<Integer> built = builder.build();
+		assertMatches(expected, built);
+
+		Map<Integer, Integer> changed = new HashMap<>(expected);
+		IntMap<Integer> copy = built;
+		for (int key : expected.keySet()) {
+			if (key % 2 == 0) {
+				copy = copy.without(key);
+				changed.remove(key);
+			} else {
+				copy = copy.with(key, -1);
+				changed.put(key, -1);
+			}
+		}
+		assertMatches(changed, copy);
+		assertMatches(expected, built);
+	}
+
+	@Test
+	public void unchangedMapsAreReturned() {
+		IntMap<String> map = IntMap.<String>empty().with(5, "five");
+		assertSame(map, map.without(6));
+		assertSame(map, map.with(5, map.get(5)));
+		assertNull(map.get(0));
+		assertNull(map.without(5).get(5));
+	}
+
+	private static <V> void assertMatches(Map<Integer, V> expected, IntMap<V> map) {
+		assertEquals(expected.size(), map.size());
+		for (Map.Entry<Integer, V> entry : expected.entrySet()) {
+			assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+		Map<Integer, V> visited = new HashMap<>();
+		map.forEach(visited::put);
+		assertEquals(expected, visited);
+	}
+
+} // end class IntMapTest
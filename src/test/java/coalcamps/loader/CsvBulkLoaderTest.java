@@ -0,0 +1,120 @@
+package coalcamps.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+
+import coalcamps.classes.BaseCCObject;
+import coalcamps.classes.CampLease;
+import coalcamps.classes.CoalCamp;
+import coalcamps.classes.CoalCompany;
+import coalcamps.classes.LeaseOccupancy;
+import coalcamps.dao.CampLeaseDAO;
+
+/**
+ * Loads csv files through the csvLoaderBean on the in memory H2 database configured for
+ * the tests, checking that indexes loaded before the load see the loaded rows.
+ *
+ * @author Mike Sheliga
+ */
+public class CsvBulkLoaderTest {
+
+	@Test
+	public void loadedRowsReachTheIndexesOfTheDaos() throws Exception {
+		// load the indexes before the csv rows exist
+		assertTrue(CoalCompany.suggestNames("csvtest", 10).isEmpty());
+		assertTrue(CoalCamp.suggestNames("csvtest", 10).isEmpty());
+		CoalCamp unsaved = new CoalCamp();
+		assertTrue(CampLease.getLeasesInYear(unsaved, 1920).isEmpty());
+
+		CsvBulkLoader loader = BaseCCObject.getApplicationContext().getBean("csvLoaderBean", CsvBulkLoader.class);
+		loader.setCommitSize(2);  // several commits per file
+		List<CsvBulkLoader.LoadReport> reports = loader.loadAll(
+			csv("companyName,yearFounded", "CsvTest Coal,1900", "CsvTest Fuel,1905", "CsvTest Coke,1910"),
+			csv("campName,yearBuilt,companyName", "CsvTest Hollow,1912,CsvTest Coal"),
+			csv("campName,companyName,beginYear,endYear", "CsvTest Hollow,CsvTest Fuel,1915,1925"));
+		for (CsvBulkLoader.LoadReport report : reports) assertTrue(report.toString(), !report.isFailed());
+
+		assertEquals(3, CoalCompany.suggestNames("csvtest", 10).size());
+		List<CoalCamp> camps = CoalCamp.searchByName("CsvTest Hollow");
+		assertEquals(1, camps.size());
+		assertEquals(1, CoalCamp.suggestNames("csvtest", 10).size());
+		assertEquals(1, CampLease.getLeasesInYear(camps.get(0), 1920).size());
+	}
+
+	@Test
+	public void overlappingLeasesAreSkipped() throws Exception {
+		CsvBulkLoader loader = BaseCCObject.getApplicationContext().getBean("csvLoaderBean", CsvBulkLoader.class);
+		loader.loadCompanies(csv("companyName,yearFounded", "CsvOverlap Coal,1900"));
+		loader.loadCamps(csv("campName,yearBuilt,companyName", "CsvOverlap Hollow,1901,CsvOverlap Coal"));
+		CoalCamp camp = CoalCamp.searchByName("CsvOverlap Hollow").get(0);
+		new CampLease(camp, CoalCompany.searchByName("CsvOverlap Coal").get(0), 1930, 1939).save();
+
+		CsvBulkLoader.LoadReport report = loader.loadLeases(csv("campName,companyName,beginYear,endYear", 
+			"CsvOverlap Hollow,CsvOverlap Coal,1910,1919",
+			"CsvOverlap Hollow,CsvOverlap Coal,1915,1925",     // overlaps the row before
+			"CsvOverlap Hollow,CsvOverlap Coal,1925,1935",     // overlaps the saved lease
+			"CsvOverlap Hollow,CsvOverlap Coal,1920,1929"));
+		assertTrue(report.toString(), !report.isFailed());
+		assertEquals(2, report.getInserted());
+		assertEquals(2, report.getSkipped());
+		List<LeaseOccupancy> leases = BaseCCObject.getApplicationContext().getBean("leaseDaoBean", CampLeaseDAO.class)
+			.getLeasesOverlapping(camp.getId(), 1900, 1999);
+		assertEquals(3, leases.size());
+		assertEquals(1910, leases.get(0).getBeginYear());
+		assertEquals(1920, leases.get(1).getBeginYear());
+		assertEquals(1930, leases.get(2).getBeginYear());
+	}
+
+	@Test
+	public void badRowsAreSkippedButDatabaseErrorsFailTheLoad() throws Exception {
+		CsvBulkLoader loader = new CsvBulkLoader();
+		loader.setSessionFactory(BaseCCObject.getApplicationContext().getBean("hibernate5AnnotatedSessionFactory", SessionFactory.class));
+		CsvBulkLoader.LoadReport report = loader.loadCompanies(csv("companyName,yearFounded", "CsvBad Coal,19x0", "CsvBad Fuel"));
+		assertTrue(report.toString(), !report.isFailed());
+		assertEquals(0, report.getInserted());
+		assertEquals(2, report.getSkipped());
+
+		// the session inserting the rows opens, the one reading the camp names does not
+		loader = new CsvBulkLoader();
+		loader.setSessionFactory(failAfterFirstSession());
+		report = loader.loadCamps(csv("campName,yearBuilt,companyName", "CsvBad Hollow,1912,CsvTest Coal"));
+		assertTrue(report.toString(), report.isFailed());
+		assertEquals(0, report.getSkipped());
+	}
+
+	private static SessionFactory failAfterFirstSession() {
+		SessionFactory sessionFactory = BaseCCObject.getApplicationContext().getBean("hibernate5AnnotatedSessionFactory", SessionFactory.class);
+		AtomicInteger sessions = new AtomicInteger();
+		return (SessionFactory) Proxy.newProxyInstance(SessionFactory.class.getClassLoader(), new Class<?>[] {SessionFactory.class},
+			(proxy, method, args) -> {
+				if (method.getName().equals("openStatelessSession") && sessions.incrementAndGet() > 1) {
+					throw new HibernateException("connection refused");
+				}
+				try {
+					return method.invoke(sessionFactory, args);
+				} catch (InvocationTargetException ex) {
+					throw ex.getCause();
+				}
+			});
+	}
+
+	private static Path csv(String... lines) throws Exception {
+		Path file = Files.createTempFile("csvtest", ".csv");
+		file.toFile().deleteOnExit();
+		return Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+	}
+
+} // end class CsvBulkLoaderTest
@@ -0,0 +1,136 @@
+package coalcamps.monitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+
+/**
+ * Counts the calls and errors of a stand in DAO proxied by DaoMetrics, the way the
+ * BeanNameAutoProxyCreator in spring4.xml proxies the DAO beans.
+ *
+ * @author Mike Sheliga
+ */
+public class DaoMetricsTest {
+
+	/** The kinds of routine a DAO has. */
+	public interface TestDAO {
+		int save(String name);
+		List<String> getAll();
+		void delete(String name);
+		String getById(int id);
+	}
+
+	/** Fails by catching the exception the way the hibernate DAOs do, unless told not to. */
+	public static class TestDAOImpl implements TestDAO {
+		boolean fail;
+		TestDAO other;  // another proxied DAO, called from getById
+
+		@Override
+		public int save(String name) {
+			return fail ? 0 : 1;  // no catch block, only the failure value
+		}
+		@Override
+		public List<String> getAll() {
+			return fail ? null : java.util.Collections.emptyList();
+		}
+		@Override
+		public void delete(String name) {
+			try {
+				if (fail) throw new IllegalStateException("cannot delete " + name);
+			} catch (Exception ex) {
+				DaoMetrics.markFailure();
+			}
+		}
+		@Override
+		public String getById(int id) {
+			if (other != null) other.delete("nested");
+			if (fail && other == null) throw new IllegalStateException("not found");
+			return fail ? null : "record " + id;
+		}
+	} // end class TestDAOImpl
+
+	private DaoMetrics metrics;
+	private TestDAOImpl target;
+	private TestDAO dao;
+
+	@Before
+	public void setUp() {
+		metrics = new DaoMetrics();
+		metrics.setExportIntervalSeconds(0);
+		target = new TestDAOImpl();
+		dao = proxy(target);
+	}
+
+	@Test
+	public void successfulCallsAreNotErrors() {
+		dao.save("a");
+		dao.getAll();
+		dao.delete("a");
+		dao.getById(1);
+		long calls = 0, errors = 0;
+		for (LatencyHistogram.Snapshot snapshot : metrics.getSnapshots().values()) {
+			calls += snapshot.getCount();
+			errors += snapshot.getErrors();
+		}
+		assertEquals(4, calls);
+		assertEquals(0, errors);
+	}
+
+	@Test
+	public void failuresCaughtByTheDaoAreErrors() {
+		target.fail = true;
+		dao.delete("a");
+		dao.delete("b");
+		assertEquals(2, errors("delete(String)"));
+		target.fail = false;
+		dao.delete("c");
+		assertEquals("the mark does not carry over to the next call", 2, errors("delete(String)"));
+	}
+
+	@Test
+	public void failureValuesAreErrors() {
+		target.fail = true;
+		dao.save("a");
+		dao.getAll();
+		assertEquals(1, errors("save(String)"));
+		assertEquals(1, errors("getAll()"));
+	}
+
+	@Test
+	public void thrownExceptionsAreErrors() {
+		target.fail = true;
+		try {
+			dao.getById(1);
+			fail("expected an exception");
+		} catch (IllegalStateException expected) { }
+		assertEquals(1, errors("getById(int)"));
+	}
+
+	@Test
+	public void aFailedNestedCallIsOnlyAnErrorOfItself() {
+		TestDAOImpl otherTarget = new TestDAOImpl();
+		otherTarget.fail = true;
+		target.other = proxy(otherTarget);
+		dao.getById(1);
+		assertEquals(1, errors("delete(String)"));
+		assertEquals(0, errors("getById(int)"));
+	}
+
+	private TestDAO proxy(TestDAO dao) {
+		ProxyFactory factory = new ProxyFactory(dao);
+		factory.addInterface(TestDAO.class);
+		factory.addAdvice(metrics);
+		return (TestDAO) factory.getProxy();
+	}
+
+	private long errors(String method) {
+		LatencyHistogram.Snapshot snapshot = metrics.getSnapshots().get("TestDAOImpl." + method);
+		return snapshot == null ? 0 : snapshot.getErrors();
+	}
+
+} // end class DaoMetricsTest
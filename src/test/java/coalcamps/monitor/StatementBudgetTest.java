@@ -0,0 +1,90 @@
+package coalcamps.monitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.hibernate.Hibernate;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import coalcamps.classes.BaseCCObject;
+import coalcamps.classes.CampLease;
+import coalcamps.classes.CoalCamp;
+import coalcamps.classes.CoalCompany;
+
+/**
+ * Counts the statements of the DAO routines on the in memory H2 database configured for
+ * the tests, with the second level cache off so every load reaches the database.
+ *
+ * @author Mike Sheliga
+ */
+public class StatementBudgetTest {
+
+	private static final int COMPANIES = 6;
+
+	private final int warnThreshold = StatementBudget.getWarnThreshold();
+
+	@BeforeClass
+	public static void addData() {
+		assertTrue(BaseCCObject.inUnitOfWork(() -> {
+			for (int i = 0; i < COMPANIES; i++) {
+				CoalCompany company = new CoalCompany("Budget Coal " + i, 1900 + i);
+				company.save();
+				CoalCamp camp = new CoalCamp("Budget Camp " + i, 1910 + i, company);
+				camp.save();
+				new CampLease(camp, company, 1920, 1929).save();
+			}
+		}));
+	}
+
+	@After
+	public void restoreThreshold() {
+		StatementBudget.setWarnThreshold(warnThreshold);
+	}
+
+	@Test
+	public void eagerLeasesAreOneJoinFetchQuery() {
+		List<CampLease> leases = StatementBudget.assertExactly(1, () -> CampLease.getCampLeases(true));
+		assertEquals(COMPANIES, leases.size());
+		for (CampLease lease : leases) {
+			assertTrue(Hibernate.isInitialized(lease.getCampLeased()));
+			assertTrue(Hibernate.isInitialized(lease.getCompanyLeasing()));
+		}
+	}
+
+	@Test
+	public void lazyCompaniesInALoopAreReportedAsNPlusOne() {
+		StatementBudget.setWarnThreshold(COMPANIES - 1);
+		long overBudget = StatementBudget.getOverBudgetCount();
+		String output = captureOutput(() -> BaseCCObject.inUnitOfWork(() ->
+			CoalCamp.getCoalCamps(false).forEach(camp -> camp.getCompanyBuilding().getCompanyName())));
+		assertEquals(overBudget + 1, StatementBudget.getOverBudgetCount());
+		assertTrue(output, output.contains("Warning: possible N+1 queries. " + (COMPANIES + 1) + " statements"));
+	}
+
+	@Test
+	public void requestsWithinTheThresholdAreNotReported() {
+		StatementBudget.setWarnThreshold(COMPANIES - 1);
+		long overBudget = StatementBudget.getOverBudgetCount();
+		BaseCCObject.inUnitOfWork(() -> CoalCamp.getCoalCamps(true).forEach(camp -> camp.getCompanyBuilding().getCompanyName()));
+		assertEquals(overBudget, StatementBudget.getOverBudgetCount());
+	}
+
+	private static String captureOutput(Runnable work) {
+		PrintStream out = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(bytes, true));
+		try {
+			work.run();
+		} finally {
+			System.setOut(out);
+		}
+		return bytes.toString();
+	}
+
+} // end class StatementBudgetTest
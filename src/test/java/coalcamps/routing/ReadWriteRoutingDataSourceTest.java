@@ -0,0 +1,105 @@
+package coalcamps.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Routes connections between two in memory H2 databases, a primary and a replica, with a
+ * second replica url that cannot be reached.
+ *
+ * @author Mike Sheliga
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+	private static final String PRIMARY_URL = "jdbc:h2:mem:routing_primary";
+	private static final String REPLICA_URL = "jdbc:h2:mem:routing_replica";
+	private static final String DOWN_URL = "jdbc:h2:tcp://localhost:1/mem:routing_down";
+
+	private HikariDataSource primary;
+	private ReadWriteRoutingDataSource routing;
+
+	@Before
+	public void setUp() throws Exception {
+		Thread.sleep(600);  // past the read your writes window of the previous test's writes
+		primary = new HikariDataSource();
+		primary.setPoolName("routingTestPool");
+		primary.setDriverClassName("org.h2.Driver");
+		primary.setJdbcUrl(PRIMARY_URL + ";DB_CLOSE_DELAY=-1");
+		primary.setUsername("sa");
+		primary.setMaximumPoolSize(2);
+		primary.getConnection().close();  // start the pool, so the first routed write is quick
+		routing = new ReadWriteRoutingDataSource();
+		routing.setPrimary(primary);
+		routing.setReplicaUrls(DOWN_URL + "," + REPLICA_URL + ";DB_CLOSE_DELAY=-1");
+		routing.setReadYourWritesMillis(500);
+		routing.setReplicaConnectionTimeoutMillis(250);
+		routing.afterPropertiesSet();
+	}
+
+	@After
+	public void tearDown() {
+		routing.destroy();
+		primary.close();
+	}
+
+	@Test
+	public void readsGoToTheReachableReplica() throws Exception {
+		assertEquals(REPLICA_URL, read());
+		assertEquals(REPLICA_URL, read());
+		assertEquals("the unreachable replica is marked down", 1, routing.getHealthyReplicaCount());
+		assertEquals(2, routing.getReplicaReads());
+		assertEquals(0, routing.getPrimaryReads());
+	}
+
+	@Test
+	public void writesGoToThePrimary() throws Exception {
+		assertEquals(PRIMARY_URL, urlOf(routing));
+		assertEquals(1, routing.getPrimaryWrites());
+	}
+
+	@Test
+	public void readsShortlyAfterAWriteGoToThePrimary() throws Exception {
+		urlOf(routing);
+		assertEquals(PRIMARY_URL, read());
+		Thread.sleep(600);
+		assertEquals(REPLICA_URL, read());
+	}
+
+	@Test
+	public void onPrimaryForcesReadsToThePrimary() throws Exception {
+		String url = ReadRouting.onPrimary(() -> {
+			try {
+				return read();
+			} catch (SQLException ex) {
+				throw new IllegalStateException(ex);
+			}
+		});
+		assertEquals(PRIMARY_URL, url);
+		assertTrue(routing.getPrimaryReads() == 1 && routing.getReplicaReads() == 0);
+	}
+
+	private String read() throws SQLException {
+		ReadRouting.enterRead();
+		try {
+			return urlOf(routing);
+		} finally {
+			ReadRouting.exitRead();
+		}
+	} // end read
+
+	private static String urlOf(ReadWriteRoutingDataSource dataSource) throws SQLException {
+		try (Connection connection = dataSource.getConnection()) {
+			return connection.getMetaData().getURL();
+		}
+	}
+
+} // end class ReadWriteRoutingDataSourceTest
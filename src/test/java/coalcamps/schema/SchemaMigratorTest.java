@@ -0,0 +1,103 @@
+package coalcamps.schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Runs the migrations against in memory H2 databases: one holding the tables hbm2ddl
+ * created before the migrations were added, and a new empty one.
+ *
+ * @author Mike Sheliga
+ */
+public class SchemaMigratorTest {
+
+	private SingleConnectionDataSource dataSource;
+	private SchemaMigrator migrator;
+
+	@Before
+	public void setUp() {
+		dataSource = new SingleConnectionDataSource("jdbc:h2:mem:migrator" + System.nanoTime() + ";MODE=MySQL", "sa", "", true);
+		migrator = new SchemaMigrator();
+		migrator.setDataSource(dataSource);
+	}
+
+	@After
+	public void tearDown() {
+		dataSource.destroy();
+	}
+
+	@Test
+	public void hbm2ddlTablesAreUpgradedAndMigrated() throws Exception {
+		// the tables and rows of a database created by hbm2ddl.auto=update with auto increment ids
+		execute("CREATE TABLE Coal_Company (id INTEGER NOT NULL AUTO_INCREMENT, dateCreated DATETIME, " +
+			"dateModified DATETIME, companyName VARCHAR(255), yearFounded INTEGER NOT NULL, PRIMARY KEY (id))");
+		execute("CREATE TABLE Coal_Camp (id INTEGER NOT NULL AUTO_INCREMENT, dateCreated DATETIME, " +
+			"dateModified DATETIME, campName VARCHAR(255), yearBuilt INTEGER NOT NULL, " +
+			"companyBuilding_id INTEGER NOT NULL, PRIMARY KEY (id))");
+		execute("CREATE TABLE Camp_Lease (id INTEGER NOT NULL AUTO_INCREMENT, dateCreated DATETIME, " +
+			"dateModified DATETIME, beginYear INTEGER NOT NULL, endYear INTEGER NOT NULL, " +
+			"campLeased_id INTEGER NOT NULL, companyLeasing_id INTEGER NOT NULL, PRIMARY KEY (id))");
+		execute("INSERT INTO Coal_Company (companyName, yearFounded) VALUES ('Consolidation', 1864)");
+		execute("INSERT INTO Coal_Camp (campName, yearBuilt, companyBuilding_id) VALUES (' SLICKville', 1918, 1)");
+		execute("INSERT INTO Camp_Lease (beginYear, endYear, campLeased_id, companyLeasing_id) VALUES (1920, 1930, 1, 1)");
+
+		assertEquals(4, migrator.migrate());
+		assertEquals(4, migrator.getCurrentVersion());
+		assertEquals("slickville", query("SELECT campNameKey FROM Coal_Camp WHERE id = 1"));
+		assertEquals("consolidation", query("SELECT companyNameKey FROM Coal_Company WHERE id = 1"));
+		assertEquals("0", query("SELECT version FROM Camp_Lease WHERE id = 1"));
+		assertEquals("NO", versionNullable("CAMP_LEASE"));
+		assertEquals("0", query("SELECT modStamp FROM Coal_Camp WHERE id = 1"));
+		assertEquals("51", query("SELECT next_val FROM cc_id_sequences WHERE sequence_name = 'Coal_Camp'"));
+		assertEquals("1", query("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES " +
+			"WHERE INDEX_NAME = 'IX_COAL_CAMP_NAME_KEY' AND ORDINAL_POSITION = 1"));
+		try {
+			execute("INSERT INTO Camp_Lease (beginYear, endYear, campLeased_id, companyLeasing_id) VALUES (1931, 1940, 99, 1)");
+			fail("fk_camp_lease_camp was not added");
+		} catch (SQLException expected) { }
+
+		try (Connection connection = dataSource.getConnection()) {
+			assertEquals("a second upgrade changes nothing", 0, new LegacySchemaUpgrade(connection, 50).upgrade());
+		}
+		assertEquals(0, migrator.migrate());
+	}
+
+	@Test
+	public void newDatabaseIsCreatedByTheMigrations() throws Exception {
+		assertEquals(4, migrator.migrate());
+		assertEquals("0", query("SELECT COUNT(*) FROM cc_id_sequences"));
+		assertTrue(query("SELECT COUNT(*) FROM Coal_Company") != null);
+		assertEquals("NO", versionNullable("COAL_COMPANY"));
+		assertEquals(0, migrator.migrate());
+	}
+
+	private String versionNullable(String table) throws SQLException {
+		return query("SELECT IS_NULLABLE FROM INFORMATION_SCHEMA.COLUMNS " + 
+			"WHERE UPPER(TABLE_NAME) = '" + table + "' AND UPPER(COLUMN_NAME) = 'VERSION'");
+	}
+
+	private void execute(String sql) throws SQLException {
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			statement.execute(sql);
+		}
+	}
+
+	private String query(String sql) throws SQLException {
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+				ResultSet rows = statement.executeQuery(sql)) {
+			return rows.next() ? rows.getString(1) : null;
+		}
+	}
+
+} // end class SchemaMigratorTest